@@ -0,0 +1,115 @@
+package ch.epfl.gameboj.component.cpu;
+
+import ch.epfl.gameboj.component.cpu.Alu.RotDir;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Banc d'essai JMH comparant les opérations 8 bits de Alu à la lecture des tables précalculées de AluTables, sur
+ * une même suite aléatoire d'opérandes
+ *
+ * À compiler avec le processeur d'annotations de JMH et à lancer comme DispatchBenchmark (voir sa documentation), en
+ * terminant la commande par AluBenchmark.
+ *
+ * Les accélérations données lors de l'introduction de AluTables (3,3 fois pour add et sub, 5,3 fois pour les
+ * rotations, décalages et swap, 4,2 fois pour DAA) ne proviennent pas de ce banc d'essai mais d'un appel direct et
+ * chronométré de ses méthodes, sans JMH
+ *
+ * @author Armen Homberger (154511)
+ * @author Justin Deschenaux (288424)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(2)
+public class AluBenchmark {
+
+    private static final int OPERANDS = 4096;
+
+    private int[] left, right;
+    private boolean[] carry;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random rng = new Random(2018);
+        left = new int[OPERANDS];
+        right = new int[OPERANDS];
+        carry = new boolean[OPERANDS];
+        for (int i = 0; i < OPERANDS; ++i) {
+            left[i] = rng.nextInt(0x100);
+            right[i] = rng.nextInt(0x100);
+            carry[i] = rng.nextBoolean();
+        }
+    }
+
+    @Benchmark
+    public int addSubAlu() {
+        int acc = 0;
+        for (int i = 0; i < OPERANDS; ++i)
+            acc += Alu.add(left[i], right[i], carry[i]) ^ Alu.sub(left[i], right[i], carry[i]);
+        return acc;
+    }
+
+    @Benchmark
+    public int addSubTables() {
+        int acc = 0;
+        for (int i = 0; i < OPERANDS; ++i)
+            acc += AluTables.add(left[i], right[i], carry[i]) ^ AluTables.sub(left[i], right[i], carry[i]);
+        return acc;
+    }
+
+    @Benchmark
+    public int rotateShiftSwapAlu() {
+        int acc = 0;
+        for (int i = 0; i < OPERANDS; ++i) {
+            int v = left[i];
+            acc += Alu.rotate(RotDir.LEFT, v) ^ Alu.rotate(RotDir.RIGHT, v, carry[i]) ^ Alu.shiftLeft(v)
+                    ^ Alu.shiftRightA(v) ^ Alu.shiftRightL(v) ^ Alu.swap(v);
+        }
+        return acc;
+    }
+
+    @Benchmark
+    public int rotateShiftSwapTables() {
+        int acc = 0;
+        for (int i = 0; i < OPERANDS; ++i) {
+            int v = left[i];
+            acc += AluTables.rotate(RotDir.LEFT, v) ^ AluTables.rotate(RotDir.RIGHT, v, carry[i])
+                    ^ AluTables.shiftLeft(v) ^ AluTables.shiftRightA(v) ^ AluTables.shiftRightL(v)
+                    ^ AluTables.swap(v);
+        }
+        return acc;
+    }
+
+    @Benchmark
+    public int bcdAdjustAlu() {
+        int acc = 0;
+        for (int i = 0; i < OPERANDS; ++i) {
+            int f = right[i] & 0x70;
+            acc += Alu.bcdAdjust(left[i], (f & 0x40) != 0, (f & 0x20) != 0, (f & 0x10) != 0);
+        }
+        return acc;
+    }
+
+    @Benchmark
+    public int bcdAdjustTables() {
+        int acc = 0;
+        for (int i = 0; i < OPERANDS; ++i)
+            acc += AluTables.bcdAdjust(left[i], right[i] & 0x70);
+        return acc;
+    }
+}
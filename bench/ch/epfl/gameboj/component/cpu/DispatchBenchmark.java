@@ -0,0 +1,73 @@
+package ch.epfl.gameboj.component.cpu;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Banc d'essai JMH comparant l'exécution des instructions par la table des 512 instructions spécialisées et par le
+ * switch sur la famille de l'opcode, en simulant une seconde de jeu des ROMs fournies
+ *
+ * Le répertoire bench n'appartient à aucun module du projet : ses bancs d'essai doivent être compilés avec le
+ * processeur d'annotations de JMH, qui génère leur code d'exécution et la liste lue par org.openjdk.jmh.Main (sans
+ * lui, aucun banc d'essai n'est trouvé). Depuis la racine du projet, où se trouvent les ROMs, avec les jars de JMH
+ * 1.37 et de ses dépendances dans ce même répertoire :
+ *
+ * JMH=jmh-core-1.37.jar:jopt-simple-5.0.4.jar:commons-math3-3.6.1.jar
+ * javac -cp $JMH:jmh-generator-annprocess-1.37.jar -processor org.openjdk.jmh.generators.BenchmarkProcessor \
+ *     -d bench-bin $(find src bench -name "*.java" | grep -v /gui/)
+ * java -cp bench-bin:$JMH org.openjdk.jmh.Main DispatchBenchmark
+ *
+ * Aucun résultat de ce banc d'essai n'a encore été relevé : la comparaison donnée lors de l'introduction de la
+ * table (deux chemins à égalité, au bruit près) provient d'une boucle chronométrée ad hoc, hors JMH
+ *
+ * @author Armen Homberger (154511)
+ * @author Justin Deschenaux (288424)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(2)
+public class DispatchBenchmark {
+
+    //Une seconde de jeu est simulée après une seconde de démarrage (écran de la ROM de démarrage)
+    private static final long SIMULATED_CYCLES = GameBoy.CYCLES_PER_SECOND;
+
+    @Param({"Tetris.gb", "superMarioLand.gb", "zelda.gb", "DonkeyKong.gb", "flappyboy.gb", "instr_timing.gb"})
+    public String rom;
+
+    @Param({"table", "switch"})
+    public String dispatch;
+
+    private GameBoy gameBoy;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        gameBoy = new GameBoy(Cartridge.ofFile(new File(rom)));
+        gameBoy.cpu().setReferenceDispatch(dispatch.equals("switch"));
+        gameBoy.runUntil(SIMULATED_CYCLES);
+    }
+
+    @Benchmark
+    public long runOneSecond() {
+        gameBoy.runUntil(gameBoy.cycles() + SIMULATED_CYCLES);
+        return gameBoy.cycles();
+    }
+}
@@ -2,36 +2,76 @@ package ch.epfl.gameboj;
 
 import ch.epfl.gameboj.component.Component;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Objects;
 
+import static ch.epfl.gameboj.AddressMap.ADDRESS_SPACE_END;
+import static ch.epfl.gameboj.Preconditions.checkArgument;
 import static ch.epfl.gameboj.Preconditions.checkBits16;
 import static ch.epfl.gameboj.Preconditions.checkBits8;
 
 /**
  * Classe représentant un bus
  *
+ * Les composants sont rangés dans une table de 256 pages, indexée par l'octet de poids fort de l'adresse. Chaque page
+ * contient, dans l'ordre d'attachement, les composants ayant déclaré une plage d'adresses qui la recouvre, ainsi que
+ * les composants attachés sans plage (qui figurent dans toutes les pages).
+ *
  * @author Armen Homberger (154511)
  * @author Justin Deschenaux (288424)
  */
 public final class Bus {
-    private final ArrayList<Component> components;
+
+    private static final int PAGE_COUNT = 256;
+    private static final int PAGE_BITS = 8;
+    private static final Component[] EMPTY_PAGE = new Component[0];
+
+    private final Component[][] pages;
 
     /**
      * Constructeur par défaut de la class Bus
      */
     public Bus() {
-        components = new ArrayList<>();
+        pages = new Component[PAGE_COUNT][];
+        Arrays.fill(pages, EMPTY_PAGE);
     }
 
     /**
-     * Attache le composant donné au bus
+     * Attache le composant donné au bus, pour toutes les adresses
      *
      * @param component composant à attacher au bus
      */
     public void attach(Component component) {
+        attach(component, 0, ADDRESS_SPACE_END);
+    }
+
+    /**
+     * Attache le composant donné au bus pour la plage d'adresses [startAddress, endAddress[. Le composant ne doit
+     * répondre qu'aux adresses de cette plage (et des autres plages qu'il déclare), car il ne recevra plus les accès
+     * aux pages qu'il ne recouvre pas
+     *
+     * @param component    composant à attacher au bus
+     * @param startAddress adresse de début de la plage (incluse)
+     * @param endAddress   adresse de fin de la plage (exclue)
+     * @throws NullPointerException     si le composant est "null"
+     * @throws IllegalArgumentException si la plage n'est pas valide
+     */
+    public void attach(Component component, int startAddress, int endAddress) {
         Objects.requireNonNull(component);
-        components.add(component);
+        checkArgument(startAddress >= 0 && startAddress <= endAddress && endAddress <= ADDRESS_SPACE_END);
+
+        if (startAddress == endAddress)
+            return;
+
+        int lastPage = (endAddress - 1) >>> PAGE_BITS;
+        for (int page = startAddress >>> PAGE_BITS; page <= lastPage; ++page) {
+            Component[] owners = pages[page];
+            if (!Arrays.asList(owners).contains(component)) {
+                owners = Arrays.copyOf(owners, owners.length + 1);
+                owners[owners.length - 1] = component;
+                pages[page] = owners;
+            }
+        }
     }
 
     /**
@@ -44,7 +84,15 @@ public final class Bus {
     public int read(int address) {
         checkBits16(address);
 
-        for (Component c : components) {
+        Component[] owners = pages[address >>> PAGE_BITS];
+
+        //Page appartenant à un unique composant : accès direct
+        if (owners.length == 1) {
+            int data = owners[0].read(address);
+            return data == Component.NO_DATA ? 0xFF : data;
+        }
+
+        for (Component c : owners) {
             int data = c.read(address);
 
             if (data != Component.NO_DATA)
@@ -61,7 +109,15 @@ public final class Bus {
     public void write(int address, int data) {
         checkBits16(address);
         checkBits8(data);
-        for(Component c : components)
-            c.write(address,data);
+
+        Component[] owners = pages[address >>> PAGE_BITS];
+
+        if (owners.length == 1) {
+            owners[0].write(address, data);
+            return;
+        }
+
+        for (Component c : owners)
+            c.write(address, data);
     }
 }
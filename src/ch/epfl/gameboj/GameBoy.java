@@ -1,6 +1,7 @@
 package ch.epfl.gameboj;
 
 import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.Timer;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
 import ch.epfl.gameboj.component.cpu.Cpu;
@@ -9,6 +10,7 @@ import ch.epfl.gameboj.component.memory.BootRomController;
 import ch.epfl.gameboj.component.memory.Ram;
 import ch.epfl.gameboj.component.memory.RamController;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import static ch.epfl.gameboj.AddressMap.*;
@@ -27,29 +29,68 @@ public final class GameBoy {
     private final Timer timer;
     private final LcdController lcdController;
     private final Joypad joypad;
+    private final BootRomController bootRomController;
+    private final Cartridge cartridge;
+    private final Ram workRam;
+    //Composants dont l'état forme l'instantané du GameBoy, dans l'ordre de leur sauvegarde : la cartouche précède
+    //le processeur, qui relit ses banques lors de la restauration
+    private final Stateful[] statefulComponents;
+    private boolean recompilerEnabled;
+    private boolean referenceScheduling;
+    private long skippedIdleCycles;
 
     private long nextCycleId = 0;
 
     public static final long CYCLES_PER_SECOND = 0x100000;
     public static final double CYCLES_PER_NANOSECOND = CYCLES_PER_SECOND / 1e9;
 
+    //En-tête des instantanés : identifiant du format ("GBJS"), version et taille totale
+    private static final int STATE_MAGIC = 0x47424A53;
+    private static final int STATE_VERSION = 1;
+    private static final int STATE_HEADER_SIZE = 3 * Integer.BYTES + Long.BYTES;
+
+    //Etat laissé par la mémoire de démarrage lorsqu'elle passe la main à la cartouche
+    private static final int POST_BOOT_PC = 0x0100, POST_BOOT_SP = 0xFFFE, POST_BOOT_AF = 0x01B0,
+            POST_BOOT_BC = 0x0013, POST_BOOT_DE = 0x00D8, POST_BOOT_HL = 0x014D;
+    private static final int POST_BOOT_MAIN_COUNTER = 0xABCC;
+    private static final int POST_BOOT_IF = 0x01, POST_BOOT_LCDC = 0x91, POST_BOOT_BGP = 0xFC;
+    private static final int REG_LCDC = 0xFF40, REG_BGP = 0xFF47;
+    private static final int HEADER_LOGO_START = 0x0104, HEADER_LOGO_END = 0x0134;
+    private static final int LOGO_TILES_START = 0x8010, REGISTERED_TILE_START = 0x8190;
+    private static final int LOGO_MAP_START = 0x9904, REGISTERED_MAP = 0x9910, LOGO_MAP_LINE = 0x20;
+    private static final int LOGO_TILES_PER_LINE = 12, REGISTERED_TILE = 25;
+    private static final int[] REGISTERED_ROWS = {0x3C, 0x42, 0xB9, 0xA5, 0xB9, 0xA5, 0x42, 0x3C};
+
     /**
-     * Construit un GameBoy avec la cartouche donnée
+     * Construit un GameBoy avec la cartouche donnée, qui exécute d'abord la mémoire de démarrage
      *
      * @param cartridge cartouche donnée
      * @throws NullPointerException si la cartouche donnée est "null"
      */
     public GameBoy(Cartridge cartridge) {
+        this(cartridge, false);
+    }
+
+    /**
+     * Construit un GameBoy avec la cartouche donnée, qui peut commencer directement par le code de la cartouche (à
+     * l'adresse 0x100) dans l'état que lui aurait laissé la mémoire de démarrage : registres, registres
+     * d'entrée/sortie et logo dans la mémoire vidéo, la mémoire de démarrage étant alors désactivée dès le début
+     *
+     * @param cartridge   cartouche donnée
+     * @param skipBootRom vrai pour ne pas exécuter la mémoire de démarrage
+     * @throws NullPointerException si la cartouche donnée est "null"
+     */
+    public GameBoy(Cartridge cartridge, boolean skipBootRom) {
 
-        Objects.requireNonNull(cartridge);
+        this.cartridge = Objects.requireNonNull(cartridge);
 
         cpu = new Cpu();
         bus = new Bus();
         timer = new Timer(cpu);
-        Ram workRam = new Ram(WORK_RAM_SIZE);
+        workRam = new Ram(WORK_RAM_SIZE);
         RamController workRamController = new RamController(workRam, WORK_RAM_START);
         RamController echoRamController = new RamController(workRam, ECHO_RAM_START, ECHO_RAM_END);
-        BootRomController bootRomController = new BootRomController(cartridge);
+        bootRomController = new BootRomController(cartridge);
         lcdController = new LcdController(cpu);
         joypad = new Joypad(cpu);
 
@@ -60,6 +101,140 @@ public final class GameBoy {
         lcdController.attachTo(bus);
         joypad.attachTo(bus);
         cpu.attachTo(bus);
+        if (skipBootRom)
+            setPostBootState();
+        cpu.attachDirectMemory(cartridge.rom(), bootRomController, workRam);
+        cpu.enableDecodeCache(bootRomController);
+
+        statefulComponents = new Stateful[]{bootRomController, workRam, timer, lcdController, joypad, cpu};
+    }
+
+    /**
+     * Reproduit l'état laissé par la mémoire de démarrage : registres du processeur, compteur du minuteur,
+     * interruption VBLANK en attente, écran allumé avec sa palette, logo de l'en-tête et symbole ® dans la mémoire
+     * vidéo, et désactivation de la mémoire de démarrage
+     */
+    private void setPostBootState() {
+        bus.write(REG_BOOT_ROM_DISABLE, 1);
+
+        cpu.setRegisters(POST_BOOT_PC, POST_BOOT_SP, POST_BOOT_AF, POST_BOOT_BC, POST_BOOT_DE, POST_BOOT_HL);
+        timer.setMainCounter(POST_BOOT_MAIN_COUNTER);
+
+        //Chaque quartet du logo donne deux lignes de tuile dont chaque bit est doublé (couleur 1)
+        int address = LOGO_TILES_START;
+        for (int header = HEADER_LOGO_START; header < HEADER_LOGO_END; ++header) {
+            int logo = bus.read(header);
+            for (int nibble : new int[]{logo >>> 4, logo & 0xF}) {
+                int row = 0;
+                for (int bit = 0; bit < 4; ++bit)
+                    row |= ((nibble >>> bit) & 1) * 0b11 << (2 * bit);
+                bus.write(address, row);
+                bus.write(address + 2, row);
+                address += 4;
+            }
+        }
+        for (int i = 0; i < REGISTERED_ROWS.length; ++i)
+            bus.write(REGISTERED_TILE_START + 2 * i, REGISTERED_ROWS[i]);
+
+        for (int i = 0; i < LOGO_TILES_PER_LINE; ++i) {
+            bus.write(LOGO_MAP_START + i, 1 + i);
+            bus.write(LOGO_MAP_START + LOGO_MAP_LINE + i, 1 + LOGO_TILES_PER_LINE + i);
+        }
+        bus.write(REGISTERED_MAP, REGISTERED_TILE);
+
+        bus.write(REG_BGP, POST_BOOT_BGP);
+        bus.write(REG_LCDC, POST_BOOT_LCDC);
+        bus.write(REG_IF, POST_BOOT_IF);
+    }
+
+    /**
+     * Retourne la taille des instantanés de ce GameBoy, qui dépend de la mémoire vive de sa cartouche
+     *
+     * @return taille en octets d'un instantané écrit par saveState
+     */
+    public int stateSize() {
+        int size = STATE_HEADER_SIZE;
+        for (Stateful component : statefulComponents)
+            size += component.stateSize();
+        return size;
+    }
+
+    /**
+     * Ecrit l'instantané binaire de tout l'état du GameBoy (processeur, mémoires, minuteur, contrôleur d'écran,
+     * joypad, mémoire de démarrage et contrôleur de la cartouche, y compris sa mémoire vive) à la position courante
+     * du tampon donné, qui avance de stateSize octets. Le tampon peut être réutilisé d'un instantané à l'autre
+     *
+     * @param buffer tampon de destination
+     * @throws IllegalArgumentException si le tampon n'a pas assez de place
+     */
+    public void saveState(ByteBuffer buffer) {
+        int size = stateSize();
+        checkArgument(buffer.remaining() >= size);
+
+        buffer.putInt(STATE_MAGIC).putInt(STATE_VERSION).putInt(size).putLong(nextCycleId);
+        for (Stateful component : statefulComponents)
+            component.saveState(buffer);
+    }
+
+    /**
+     * Restaure l'instantané lu à la position courante du tampon donné, qui avance de stateSize octets. L'instantané
+     * doit avoir été écrit par un GameBoy ayant la même cartouche
+     *
+     * @param buffer tampon source
+     * @throws IllegalArgumentException si le tampon ne commence pas par un instantané de la version actuelle et de la
+     *                                  taille des instantanés de ce GameBoy, auquel cas rien n'est lu
+     */
+    public void loadState(ByteBuffer buffer) {
+        int size = stateSize();
+        int start = buffer.position();
+        checkArgument(buffer.remaining() >= size
+                && buffer.getInt(start) == STATE_MAGIC
+                && buffer.getInt(start + Integer.BYTES) == STATE_VERSION
+                && buffer.getInt(start + 2 * Integer.BYTES) == size);
+
+        buffer.position(start + 3 * Integer.BYTES);
+        nextCycleId = buffer.getLong();
+        for (Stateful component : statefulComponents)
+            component.loadState(buffer);
+    }
+
+    /**
+     * Retourne un nouveau GameBoy dans le même état que celui-ci, qui évolue ensuite indépendamment de lui. Les deux
+     * GameBoy partagent la rom de la cartouche, et leurs mémoires vives partagent leurs pages jusqu'à ce que l'un des
+     * deux y écrive (voir copyStateFrom). La mémoire vive de la cartouche de la copie n'est jamais sauvegardée dans un
+     * fichier. Comme copyStateFrom, fork modifie ce GameBoy et doit donc être appelée par le fil qui le simule
+     *
+     * @return copie indépendante du GameBoy, dont le recompilateur est activé si celui de ce GameBoy l'est
+     */
+    public GameBoy fork() {
+        GameBoy copy = new GameBoy(cartridge.fork());
+        if (recompilerEnabled)
+            copy.enableRecompiler();
+        copy.referenceScheduling = referenceScheduling;
+        copy.copyStateFrom(this);
+        return copy;
+    }
+
+    /**
+     * Remplace l'état de ce GameBoy par celui du GameBoy donné, qui doit avoir la même cartouche (ou une copie de
+     * celle-ci, voir fork). Les mémoires vives partagent leurs pages plutôt que d'être copiées : seuls les registres
+     * des composants, les images de l'écran et le cache des tuiles le sont, directement d'un composant à l'autre. Un
+     * même GameBoy peut ainsi explorer successivement plusieurs suites d'un même état : la copie n'alloue rien, et
+     * seules les pages modifiées ensuite par l'un des deux GameBoy sont dupliquées (voir Ram.copyStateFrom).
+     *
+     * Le partage des pages modifie aussi le GameBoy donné, dont les mémoires vives perdent la propriété de leurs
+     * pages : la copie doit donc être faite par le fil qui simule le GameBoy donné, ou lorsque celui-ci n'est pas
+     * simulé
+     *
+     * @param source GameBoy dont l'état est repris
+     * @throws IllegalArgumentException si les instantanés des deux GameBoy n'ont pas la même taille
+     */
+    public void copyStateFrom(GameBoy source) {
+        checkArgument(source.stateSize() == stateSize());
+
+        nextCycleId = source.nextCycleId;
+        for (int i = 0; i < statefulComponents.length; ++i)
+            statefulComponents[i].copyStateFrom(source.statefulComponents[i]);
     }
 
     /**
@@ -76,9 +251,46 @@ public final class GameBoy {
         return cpu;
     }
 
+    /**
+     * Active le recompilateur dynamique du processeur, qui exécute les blocs fréquents de la ROM sous forme de classes
+     * JVM. La simulation reste exacte au cycle près, un bloc n'étant exécuté que si aucun autre composant n'a quelque
+     * chose à faire avant sa fin
+     */
+    public void enableRecompiler() {
+        cpu.enableRecompiler(bootRomController);
+        recompilerEnabled = true;
+    }
+
+    /**
+     * Choisit de simuler tous les composants à chaque cycle non-oisif, même lorsque le processeur est arrêté ou
+     * exécute une boucle d'attente (ordonnancement de référence, utilisé pour vérifier l'équivalence avec la
+     * simulation du contrôleur d'écran seul et avec le saut des boucles d'attente)
+     *
+     * @param reference vrai pour utiliser l'ordonnancement de référence
+     */
+    void setReferenceScheduling(boolean reference) {
+        referenceScheduling = reference;
+    }
+
+    /**
+     * Retourne le nombre de cycles du processeur sautés jusqu'ici avec les itérations des boucles d'attente (utilisé
+     * pour vérifier que le saut a bien lieu)
+     *
+     * @return nombre de cycles sautés
+     */
+    long skippedIdleCycles() {
+        return skippedIdleCycles;
+    }
+
     /**
      * Simule le fonctionnement du Gameboy jusqu'au cycle donné moins 1
      *
+     * Les cycles durant lesquels aucun composant n'a rien à faire sont sautés : la simulation passe directement au
+     * plus proche des prochains cycles non-oisifs des composants. Tant que le processeur est arrêté par HALT, seuls
+     * les changements de mode du contrôleur d'écran sont simulés, jusqu'à celui qui le réveille ou jusqu'au prochain
+     * dépassement de capacité du minuteur. Au retour, les registres du minuteur sont ceux de la fin du dernier cycle
+     * simulé
+     *
      * @param cycles cycle limite du fonctionnement à simuler
      */
     public void runUntil(long cycles) {
@@ -88,12 +300,95 @@ public final class GameBoy {
 
         while (nextCycleId < cycles) {
 
-            timer.cycle(nextCycleId);
-            lcdController.cycle(nextCycleId);
-            cpu.cycle(nextCycleId);
+            if (!referenceScheduling && cpu.isHalted())
+                runHalted(cycles);
+
+            long cycle = nextNonIdleCycle();
+            if (cycle >= cycles) {
+                nextCycleId = cycles;
+                break;
+            }
+
+            timer.cycle(cycle);
+            lcdController.cycle(cycle);
+            cycleCpu(cycle, cycles);
+
+            nextCycleId = cycle + 1;
+        }
+
+        //Le minuteur, paresseux, n'est pas simulé durant les cycles oisifs : il est mis à jour jusqu'au dernier cycle
+        //simulé afin que ses registres soient exacts entre deux appels
+        if (nextCycleId > 0)
+            timer.cycle(nextCycleId - 1);
+    }
+
+    /**
+     * Simule le contrôleur d'écran seul tant que le processeur est arrêté, sans calculer le prochain cycle non-oisif
+     * du minuteur ni du processeur entre deux changements de mode (le minuteur, paresseux, est simplement mis à
+     * jour). S'arrête avant le prochain cycle non-oisif du minuteur (ou le cycle limite), ou juste après le changement
+     * de mode qui lève une interruption réveillant le processeur, auquel cas celui-ci est simulé durant le même cycle,
+     * comme dans runUntil
+     *
+     * @param cycles cycle limite du fonctionnement à simuler
+     */
+    private void runHalted(long cycles) {
+        long limit = Math.min(cycles, timer.nextNonIdleCycle(nextCycleId));
+
+        long cycle;
+        while ((cycle = lcdController.nextNonIdleCycle(nextCycleId)) < limit) {
+            timer.cycle(cycle);
+            lcdController.cycle(cycle);
+            nextCycleId = cycle + 1;
 
-            nextCycleId++;
+            if (!cpu.isHalted()) {
+                cycleCpu(cycle, cycles);
+                return;
+            }
         }
+        nextCycleId = limit;
+    }
+
+    /**
+     * Simule le processeur durant le cycle donné, après avoir fixé l'horizon de ses blocs compilés si le recompilateur
+     * est activé. Si le processeur vient d'achever une itération d'une boucle d'attente, les itérations suivantes se
+     * terminant avant le prochain cycle non-oisif du minuteur et du contrôleur d'écran (ou le cycle limite) et, si
+     * elle lit DIV ou TIMA, avant le prochain changement de ceux-ci sont sautées, les registres qu'elle lit ne
+     * pouvant pas changer d'ici là
+     *
+     * @param cycle  cycle à simuler
+     * @param cycles cycle limite du fonctionnement à simuler
+     */
+    private void cycleCpu(long cycle, long cycles) {
+        if (recompilerEnabled)
+            cpu.setCycleHorizon(cycleHorizon(cycle, cycles));
+        cpu.cycle(cycle);
+
+        if (!referenceScheduling && cpu.isIdleLooping())
+            skippedIdleCycles += cpu.skipIdleLoop(cycleHorizon(cycle, cycles), timer.nextCounterChange(cycle + 1));
+    }
+
+    /**
+     * Calcule le premier cycle suivant le cycle donné durant lequel le minuteur ou le contrôleur d'écran doit agir
+     *
+     * @param cycle  cycle courant
+     * @param cycles cycle limite du fonctionnement à simuler
+     * @return le plus petit des prochains cycles non-oisifs du minuteur et du contrôleur d'écran, au plus le cycle
+     * limite
+     */
+    private long cycleHorizon(long cycle, long cycles) {
+        long horizon = Math.min(timer.nextNonIdleCycle(cycle + 1), lcdController.nextNonIdleCycle(cycle + 1));
+        return Math.min(horizon, cycles);
+    }
+
+    /**
+     * Calcule le prochain cycle durant lequel au moins un des composants cadencés doit agir
+     *
+     * @return le plus petit des prochains cycles non-oisifs des composants
+     */
+    private long nextNonIdleCycle() {
+        long cycle = timer.nextNonIdleCycle(nextCycleId);
+        cycle = Math.min(cycle, lcdController.nextNonIdleCycle(nextCycleId));
+        return Math.min(cycle, cpu.nextNonIdleCycle(nextCycleId));
     }
 
     /**
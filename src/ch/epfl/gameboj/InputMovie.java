@@ -0,0 +1,291 @@
+package ch.epfl.gameboj;
+
+import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.memory.Rom;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+import static ch.epfl.gameboj.Preconditions.checkArgument;
+
+/**
+ * Film des entrées d'une session de jeu : suite des pressions et relâchements de touches du joypad, chacun daté du
+ * cycle du GameBoy auquel il a eu lieu, depuis la mise sous tension jusqu'au cycle de fin du film. Le film contient
+ * aussi l'état initial de la cartouche, dont la mémoire vive sauvegardée par pile dépend des sessions précédentes.
+ *
+ * La simulation d'un GameBoy ne dépendant que de sa cartouche et de ces entrées, rejouer un film (voir play) redonne
+ * exactement la session enregistrée, quelle que soit la vitesse de la simulation : un film peut ainsi reproduire une
+ * session réelle, ou servir de charge de travail pour mesurer les performances de l'émulateur.
+ *
+ * Un film est écrit (voir writeTo) sous la forme d'un en-tête (identifiant du format, version, somme de contrôle de
+ * la rom, démarrage avec ou sans la mémoire de démarrage, taille et contenu de l'état initial de la cartouche, cycle de
+ * fin et nombre de changements) suivi des changements, chacun formé de son cycle (8 octets) et d'un octet donnant la
+ * touche et son état.
+ *
+ * @author Armen Homberger (154511)
+ * @author Justin Deschenaux (288424)
+ */
+public final class InputMovie {
+
+    //Identifiant du format ("GBJM") et version
+    private static final int MOVIE_MAGIC = 0x47424A4D;
+    private static final int MOVIE_VERSION = 1;
+    //Bit de l'octet d'un changement indiquant une pression de touche, les autres bits donnant la touche
+    private static final int PRESSED = 0x80;
+    private static final int KEY_MASK = 0x7F;
+    private static final Key[] KEYS = Key.values();
+
+    private final int romChecksum;
+    private final boolean skipBootRom;
+    private final byte[] cartridgeState;
+    private final long endCycle;
+    private final long[] cycles;
+    private final byte[] changes;
+
+    private InputMovie(int romChecksum, boolean skipBootRom, byte[] cartridgeState, long endCycle, long[] cycles,
+            byte[] changes) {
+        this.romChecksum = romChecksum;
+        this.skipBootRom = skipBootRom;
+        this.cartridgeState = cartridgeState;
+        this.endCycle = endCycle;
+        this.cycles = cycles;
+        this.changes = changes;
+    }
+
+    /**
+     * Enregistreur des entrées d'une session, à informer de chaque changement d'une touche au moment où il est
+     * appliqué au joypad
+     */
+    public static final class Recorder {
+        private final int romChecksum;
+        private final boolean skipBootRom;
+        private final byte[] cartridgeState;
+        private long[] cycles = new long[16];
+        private byte[] changes = new byte[16];
+        private int count;
+
+        /**
+         * Construit un enregistreur pour une session commençant à la mise sous tension d'un GameBoy, en mémorisant
+         * l'état actuel de sa cartouche : l'enregistreur doit donc être construit avant le GameBoy
+         *
+         * @param cartridge   cartouche du GameBoy
+         * @param skipBootRom vrai si le GameBoy ne commence pas par la mémoire de démarrage (voir GameBoy)
+         */
+        public Recorder(Cartridge cartridge, boolean skipBootRom) {
+            this.romChecksum = checksumOf(cartridge.rom());
+            this.skipBootRom = skipBootRom;
+            ByteBuffer state = ByteBuffer.allocate(cartridge.stateSize());
+            cartridge.saveState(state);
+            this.cartridgeState = state.array();
+        }
+
+        /**
+         * Enregistre la pression d'une touche
+         *
+         * @param cycle cycle du GameBoy au moment de la pression
+         * @param key   touche pressée
+         * @throws IllegalArgumentException si le cycle précède celui du dernier changement enregistré
+         */
+        public void keyPressed(long cycle, Key key) {
+            add(cycle, key.ordinal() | PRESSED);
+        }
+
+        /**
+         * Enregistre le relâchement d'une touche
+         *
+         * @param cycle cycle du GameBoy au moment du relâchement
+         * @param key   touche relâchée
+         * @throws IllegalArgumentException si le cycle précède celui du dernier changement enregistré
+         */
+        public void keyReleased(long cycle, Key key) {
+            add(cycle, key.ordinal());
+        }
+
+        /**
+         * Oublie les changements enregistrés à partir du cycle donné, par exemple lorsque le GameBoy est revenu à un
+         * état antérieur
+         *
+         * @param cycle premier cycle dont les changements sont oubliés
+         */
+        public void truncate(long cycle) {
+            while (count > 0 && cycles[count - 1] >= cycle)
+                --count;
+        }
+
+        /**
+         * Retourne le film des changements enregistrés
+         *
+         * @param endCycle cycle de fin du film
+         * @return film des changements enregistrés, qui n'est pas affecté par les enregistrements suivants
+         * @throws IllegalArgumentException si le cycle de fin précède le dernier changement enregistré
+         */
+        public InputMovie toMovie(long endCycle) {
+            checkArgument(count == 0 || endCycle >= cycles[count - 1]);
+            return new InputMovie(romChecksum, skipBootRom, cartridgeState, endCycle, Arrays.copyOf(cycles, count),
+                    Arrays.copyOf(changes, count));
+        }
+
+        private void add(long cycle, int change) {
+            checkArgument(cycle >= 0 && (count == 0 || cycle >= cycles[count - 1]));
+            if (count == cycles.length) {
+                cycles = Arrays.copyOf(cycles, 2 * count);
+                changes = Arrays.copyOf(changes, 2 * count);
+            }
+            cycles[count] = cycle;
+            changes[count] = (byte) change;
+            ++count;
+        }
+    }
+
+    /**
+     * Lit un film écrit par writeTo
+     *
+     * @param in flot d'entrée, qui n'est pas fermé
+     * @return film lu
+     * @throws IOException en cas d'erreur d'entrée-sortie, ou si le flot ne contient pas un film de la version
+     *                     actuelle
+     */
+    public static InputMovie readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MOVIE_MAGIC || data.readInt() != MOVIE_VERSION)
+            throw new IOException("Format de film inconnu");
+
+        int romChecksum = data.readInt();
+        boolean skipBootRom = data.readBoolean();
+        int stateSize = data.readInt();
+        if (stateSize < 0)
+            throw new IOException("Taille de l'état de la cartouche invalide : " + stateSize);
+        byte[] cartridgeState = new byte[stateSize];
+        data.readFully(cartridgeState);
+
+        long endCycle = data.readLong();
+        int count = data.readInt();
+        if (count < 0)
+            throw new IOException("Nombre de changements invalide : " + count);
+
+        long[] cycles = new long[count];
+        byte[] changes = new byte[count];
+        for (int i = 0; i < count; ++i) {
+            cycles[i] = data.readLong();
+            changes[i] = data.readByte();
+            if (cycles[i] < (i == 0 ? 0 : cycles[i - 1]) || cycles[i] > endCycle
+                    || (changes[i] & KEY_MASK) >= KEYS.length)
+                throw new IOException("Changement invalide : " + i);
+        }
+        return new InputMovie(romChecksum, skipBootRom, cartridgeState, endCycle, cycles, changes);
+    }
+
+    /**
+     * Ecrit le film dans le flot donné
+     *
+     * @param out flot de sortie, qui n'est pas fermé
+     * @throws IOException en cas d'erreur d'entrée-sortie
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MOVIE_MAGIC);
+        data.writeInt(MOVIE_VERSION);
+        data.writeInt(romChecksum);
+        data.writeBoolean(skipBootRom);
+        data.writeInt(cartridgeState.length);
+        data.write(cartridgeState);
+        data.writeLong(endCycle);
+        data.writeInt(cycles.length);
+        for (int i = 0; i < cycles.length; ++i) {
+            data.writeLong(cycles[i]);
+            data.writeByte(changes[i]);
+        }
+        data.flush();
+    }
+
+    /**
+     * Construit un GameBoy mis sous tension comme celui de la session enregistrée, avec une copie de la cartouche
+     * donnée (voir Cartridge.fork) remise dans son état initial : la cartouche donnée et son éventuel fichier de
+     * sauvegarde ne sont pas modifiés par le rejeu
+     *
+     * @param cartridge cartouche dont la rom doit être celle de la session
+     * @return nouveau GameBoy, prêt à rejouer le film
+     * @throws IllegalArgumentException si la rom ou la mémoire vive de la cartouche ne sont pas celles de la session
+     */
+    public GameBoy newGameBoy(Cartridge cartridge) {
+        checkArgument(checksumOf(cartridge.rom()) == romChecksum && cartridge.stateSize() == cartridgeState.length);
+        Cartridge initial = cartridge.fork();
+        initial.loadState(ByteBuffer.wrap(cartridgeState));
+        return new GameBoy(initial, skipBootRom);
+    }
+
+    /**
+     * Retourne le cycle de fin du film
+     *
+     * @return cycle auquel l'enregistrement s'est arrêté
+     */
+    public long endCycle() {
+        return endCycle;
+    }
+
+    /**
+     * Retourne le nombre de changements de touches du film
+     *
+     * @return nombre de changements
+     */
+    public int size() {
+        return cycles.length;
+    }
+
+    /**
+     * Simule le GameBoy donné jusqu'au cycle donné, en appliquant à son joypad, au cycle où ils ont eu lieu, les
+     * changements du film datés d'un cycle compris entre le cycle actuel du GameBoy (inclus) et le cycle donné
+     * (exclu). Le film peut ainsi être rejoué en une seule fois jusqu'à endCycle, ou par tranches quelconques
+     *
+     * @param gameBoy GameBoy rejouant le film, construit par newGameBoy
+     * @param cycle   cycle jusqu'auquel simuler le GameBoy
+     * @throws IllegalArgumentException si le cycle est déjà passé
+     */
+    public void play(GameBoy gameBoy, long cycle) {
+        checkArgument(cycle >= gameBoy.cycles());
+
+        Joypad joypad = gameBoy.joypad();
+        int i = firstChangeAt(gameBoy.cycles());
+        for (; i < cycles.length && cycles[i] < cycle; ++i) {
+            gameBoy.runUntil(cycles[i]);
+            Key key = KEYS[changes[i] & KEY_MASK];
+            if ((changes[i] & PRESSED) != 0)
+                joypad.keyPressed(key);
+            else
+                joypad.keyReleased(key);
+        }
+        gameBoy.runUntil(cycle);
+    }
+
+    /**
+     * Retourne l'index du premier changement daté du cycle donné ou d'un cycle suivant
+     */
+    private int firstChangeAt(long cycle) {
+        int low = 0, high = cycles.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cycles[middle] < cycle)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    private static int checksumOf(Rom rom) {
+        Objects.requireNonNull(rom);
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < rom.size(); ++i)
+            crc.update(rom.read(i));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,53 @@
+package ch.epfl.gameboj;
+
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Rejoue un film d'entrées (voir InputMovie) aussi vite que possible, sans interface graphique, puis affiche la durée
+ * du rejeu et une somme de contrôle de l'état final du GameBoy : deux rejeux d'un même film doivent donner la même
+ * somme, quelle que soit la façon dont la simulation est exécutée.
+ *
+ * Arguments : fichier ROM, fichier du film, et éventuellement --recompile pour activer le recompilateur.
+ *
+ * @author Armen Homberger (154511)
+ * @author Justin Deschenaux (288424)
+ */
+public final class PlaybackMain {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage : PlaybackMain <rom> <film> [--recompile]");
+            System.exit(1);
+        }
+
+        InputMovie movie;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(args[1]))) {
+            movie = InputMovie.readFrom(in);
+        }
+        GameBoy gb = movie.newGameBoy(Cartridge.ofFile(new File(args[0])));
+        if (args.length > 2 && args[2].equals("--recompile"))
+            gb.enableRecompiler();
+
+        long start = System.nanoTime();
+        movie.play(gb, movie.endCycle());
+        long elapsed = System.nanoTime() - start;
+
+        ByteBuffer state = ByteBuffer.allocate(gb.stateSize());
+        gb.saveState(state);
+        CRC32 crc = new CRC32();
+        crc.update(state.flip());
+
+        double seconds = elapsed / 1e9;
+        System.out.printf("%d changements, %d cycles en %.3f s (%.1f fois le temps réel)%n", movie.size(),
+                gb.cycles(), seconds, gb.cycles() / GameBoy.CYCLES_PER_NANOSECOND / elapsed);
+        System.out.printf("somme de contrôle de l'état final : %08x%n", crc.getValue());
+    }
+}
@@ -0,0 +1,23 @@
+package ch.epfl.gameboj.component;
+
+/**
+ * interface implémentée par les composants dont le contenu visible à une adresse dépend d'une banque sélectionnée
+ * (contrôleurs de banques des cartouches, mémoire de démarrage superposée à la cartouche)
+ *
+ * @author Armen Homberger (154511)
+ * @author Justin Deschenaux (288424)
+ */
+public interface BankedMemory {
+
+    /**
+     * retourne l'identité de la banque actuellement visible à l'adresse donnée : deux lectures d'une même adresse
+     * retournent le même octet tant que l'identité de sa banque ne change pas (et que la mémoire n'est pas écrite).
+     * Pour une adresse de la rom d'une cartouche, il s'agit de l'index de la banque de 16 Kio de la rom qui y est
+     * visible, ou de -1 si la mémoire de démarrage y est visible
+     *
+     * @param address : adresse 16 bits
+     * @return identité de la banque visible à cette adresse, supérieure ou égale à -1
+     */
+    public abstract int bankOf(int address);
+
+}
@@ -19,4 +19,17 @@ public interface Clocked {
 
     public abstract void cycle(long cycle);
 
+    /**
+     * retourne le premier cycle, supérieur ou égal au cycle donné, durant lequel le composant a quelque chose à faire.
+     * Un appel à cycle pour un cycle antérieur n'a aucun effet, ce qui permet à l'ordonnanceur de sauter directement
+     * au prochain cycle non-oisif. Par défaut, le composant doit être appelé à chaque cycle
+     *
+     * @param cycle : cycle courant
+     * @return prochain cycle non-oisif, ou Long.MAX_VALUE si le composant n'a plus rien à faire tant que son état n'est
+     * pas modifié par un autre composant
+     */
+    public default long nextNonIdleCycle(long cycle) {
+        return cycle;
+    }
+
 }
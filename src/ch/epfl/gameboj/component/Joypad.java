@@ -1,8 +1,10 @@
 package ch.epfl.gameboj.component;
 
+import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.cpu.Cpu;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import static ch.epfl.gameboj.AddressMap.REG_P1;
@@ -14,7 +16,7 @@ import static ch.epfl.gameboj.bits.Bits.complement8;
  * @author Armen Homberger (154511)
  * @author Justin Deschenaux (288424)
  */
-public final class Joypad implements Component {
+public final class Joypad implements Component, Stateful {
 
     private final Cpu belongingCpu;
     private int P1;
@@ -39,6 +41,15 @@ public final class Joypad implements Component {
         P1 = DEFAULT;
     }
 
+    /**
+     * Attache le joypad au bus, pour l'adresse du registre P1 uniquement
+     * @param bus : bus auquel attacher le joypad
+     */
+    @Override
+    public void attachTo(Bus bus) {
+        bus.attach(this, REG_P1, REG_P1 + 1);
+    }
+
     /**
      * Méthode donnant accès au registre P1
      * @param address : adresse de l'octet à retourner
@@ -77,6 +88,52 @@ public final class Joypad implements Component {
     }
 
 
+    /**
+     * Taille de l'état du joypad : registre P1 et touches pressées de chacune des deux lignes
+     *
+     * @return taille de l'état du joypad
+     */
+    @Override
+    public int stateSize() {
+        return 3 * Integer.BYTES;
+    }
+
+    /**
+     * Ecrit l'état du joypad
+     *
+     * @param buffer : tampon de destination
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.putInt(P1).putInt(line0).putInt(line1);
+    }
+
+    /**
+     * Restaure l'état du joypad, y compris les touches pressées au moment de la sauvegarde
+     *
+     * @param buffer : tampon source
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        P1 = buffer.getInt();
+        line0 = buffer.getInt();
+        line1 = buffer.getInt();
+    }
+
+    /**
+     * Reprend l'état du joypad donné, y compris ses touches pressées, sans passer par un tampon
+     *
+     * @param source : joypad dont l'état est repris
+     */
+    @Override
+    public void copyStateFrom(Stateful source) {
+        Joypad that = (Joypad) source;
+        P1 = that.P1;
+        line0 = that.line0;
+        line1 = that.line1;
+    }
+
+
     /**
      * méthode simulant la pression d'une touche, met à jour line0, line1 et P1
      * @param key la touche pressée
@@ -0,0 +1,53 @@
+package ch.epfl.gameboj.component;
+
+import java.nio.ByteBuffer;
+
+/**
+ * interface implémentée par les composants dont l'état peut être sauvegardé dans un tampon d'octets puis restauré,
+ * pour former l'instantané binaire de tout le GameBoy (voir GameBoy.saveState)
+ *
+ * @author Armen Homberger (154511)
+ * @author Justin Deschenaux (288424)
+ */
+public interface Stateful {
+
+    /**
+     * retourne le nombre d'octets écrits par saveState, qui ne change pas durant la vie du composant
+     *
+     * @return taille de l'état du composant, en octets
+     */
+    public abstract int stateSize();
+
+    /**
+     * écrit l'état du composant à la position courante du tampon donné, qui avance de stateSize octets
+     *
+     * @param buffer : tampon de destination
+     * @throws java.nio.BufferOverflowException si le tampon n'a pas assez de place
+     */
+    public abstract void saveState(ByteBuffer buffer);
+
+    /**
+     * remplace l'état du composant par celui lu à la position courante du tampon donné, qui avance de stateSize
+     * octets. L'état doit avoir été écrit par saveState d'un composant identique (même cartouche, même taille)
+     *
+     * @param buffer : tampon source
+     * @throws java.nio.BufferUnderflowException si le tampon ne contient pas assez d'octets
+     */
+    public abstract void loadState(ByteBuffer buffer);
+
+    /**
+     * remplace l'état du composant par celui du composant donné, de même classe et construit de la même façon (voir
+     * GameBoy.fork). L'état transite par défaut par un tampon temporaire : les composants contenant des mémoires
+     * vives redéfinissent cette méthode pour partager leurs pages plutôt que de les copier (voir Ram.copyStateFrom)
+     *
+     * @param source : composant dont l'état est repris
+     * @throws ClassCastException si le composant donné n'est pas de la même classe, pour les composants redéfinissant
+     *                            cette méthode
+     */
+    public default void copyStateFrom(Stateful source) {
+        ByteBuffer buffer = ByteBuffer.allocate(source.stateSize());
+        source.saveState(buffer);
+        loadState(buffer.flip());
+    }
+
+}
@@ -1,23 +1,34 @@
 package ch.epfl.gameboj.component;
 
 
+import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.cpu.Cpu;
 
+import java.nio.ByteBuffer;
+
 import static ch.epfl.gameboj.AddressMap.*;
+import static ch.epfl.gameboj.Preconditions.checkArgument;
 import static ch.epfl.gameboj.Preconditions.checkBits16;
 import static ch.epfl.gameboj.Preconditions.checkBits8;
 
 /**
  * classe représentant le minuteur associé au processeur du GamBoy
  *
+ * Les compteurs ne sont pas incrémentés à chaque cycle : ils sont mis à jour en bloc, à partir du nombre de cycles
+ * écoulés, lorsque le minuteur est appelé. Le cycle du prochain dépassement de TIMA est calculé à l'avance afin que
+ * l'interruption TIMER soit levée au bon cycle
+ *
  * @author Armen Homberger(154511)
  * @author Justin Deschenaux(288424)
  */
-public final class Timer implements Component, Clocked {
+public final class Timer implements Component, Clocked, Stateful {
 
     private final Cpu gameBoyCpu;
     private int mainCounter, TIMACounter, TMARegister, TACRegister;
+    private long elapsedCycles;
+
+    private static final int COUNTER_STEP = 4;
 
     /**
      * Construit un minuteur associé au processeur donné
@@ -33,16 +44,129 @@ public final class Timer implements Component, Clocked {
     }
 
     /**
-     * fait évoluer le composant en exécutant les opérations du cycle d'index passé
+     * fait évoluer le composant jusqu'à la fin du cycle d'index passé, en rattrapant d'un coup tous les cycles écoulés
+     * depuis le dernier appel
      *
      * @param cycle : cycle d'index
      */
     @Override
     public void cycle(long cycle) {
 
-        boolean s0 = state();
-        mainCounter = Bits.clip(16, mainCounter + 4);
-        incIfChange(s0);
+        long cycles = cycle + 1 - elapsedCycles;
+        if (cycles <= 0)
+            return;
+
+        long counter = mainCounter + COUNTER_STEP * cycles;
+        if (Bits.test(TACRegister, 2)) {
+            //Le compteur secondaire est incrémenté à chaque fois que le bit surveillé passe de 1 à 0, c'est-à-dire
+            //à chaque multiple de la période franchi par le compteur principal
+            long period = 1L << (incIndex() + 1);
+            incTIMA(counter / period - mainCounter / period);
+        }
+
+        mainCounter = (int) (counter & 0xFFFF);
+        elapsedCycles = cycle + 1;
+    }
+
+    /**
+     * Fixe la valeur du compteur principal, dont DIV est l'octet de poids fort, par exemple pour reproduire l'état
+     * laissé par la mémoire de démarrage sans l'exécuter. Contrairement à une écriture dans DIV, le compteur
+     * secondaire n'est pas incrémenté
+     *
+     * @param counter valeur 16 bits du compteur principal, multiple de 4
+     * @throws IllegalArgumentException si la valeur n'est pas une valeur 16 bits multiple de 4
+     */
+    public void setMainCounter(int counter) {
+        checkArgument(checkBits16(counter) % COUNTER_STEP == 0);
+        mainCounter = counter;
+    }
+
+    /**
+     * Taille de l'état du minuteur : ses quatre registres et le nombre de cycles déjà pris en compte
+     *
+     * @return taille de l'état du minuteur
+     */
+    @Override
+    public int stateSize() {
+        return 4 * Integer.BYTES + Long.BYTES;
+    }
+
+    /**
+     * Ecrit l'état du minuteur
+     *
+     * @param buffer : tampon de destination
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.putInt(mainCounter).putInt(TIMACounter).putInt(TMARegister).putInt(TACRegister);
+        buffer.putLong(elapsedCycles);
+    }
+
+    /**
+     * Restaure l'état du minuteur
+     *
+     * @param buffer : tampon source
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        mainCounter = buffer.getInt();
+        TIMACounter = buffer.getInt();
+        TMARegister = buffer.getInt();
+        TACRegister = buffer.getInt();
+        elapsedCycles = buffer.getLong();
+    }
+
+    /**
+     * Reprend l'état du minuteur donné, sans passer par un tampon
+     *
+     * @param source : minuteur dont l'état est repris
+     */
+    @Override
+    public void copyStateFrom(Stateful source) {
+        Timer that = (Timer) source;
+        mainCounter = that.mainCounter;
+        TIMACounter = that.TIMACounter;
+        TMARegister = that.TMARegister;
+        TACRegister = that.TACRegister;
+        elapsedCycles = that.elapsedCycles;
+    }
+
+    /**
+     * Calcule le cycle durant lequel le compteur secondaire dépassera sa capacité
+     *
+     * @param cycle : cycle courant
+     * @return cycle du prochain dépassement, ou Long.MAX_VALUE si le compteur secondaire est désactivé
+     */
+    @Override
+    public long nextNonIdleCycle(long cycle) {
+
+        if (!Bits.test(TACRegister, 2))
+            return Long.MAX_VALUE;
+
+        long period = 1L << (incIndex() + 1);
+        long increments = 0x100 - TIMACounter;
+        long overflowCounter = (mainCounter / period + increments) * period;
+        long overflowCycle = elapsedCycles + (overflowCounter - mainCounter) / COUNTER_STEP - 1;
+
+        return Math.max(cycle, overflowCycle);
+    }
+
+    /**
+     * Calcule le premier cycle, à partir du cycle donné, à la fin duquel DIV ou TIMA n'a plus la valeur qu'il avait
+     * à la fin du dernier cycle simulé. Tant que le processeur ne modifie pas le minuteur, une lecture de ces
+     * registres faite avant ce cycle donne donc la même valeur qu'une lecture faite maintenant
+     *
+     * @param cycle : cycle courant
+     * @return cycle du prochain changement de DIV ou de TIMA
+     */
+    public long nextCounterChange(long cycle) {
+
+        int period = 1 << Byte.SIZE;
+        if (Bits.test(TACRegister, 2))
+            period = Math.min(period, 1 << (incIndex() + 1));
+        long changeCycle = elapsedCycles - 1 + (period - mainCounter % period) / COUNTER_STEP;
+
+        return Math.max(cycle, changeCycle);
     }
 
     /**
@@ -51,16 +175,29 @@ public final class Timer implements Component, Clocked {
      */
     private void incIfChange(boolean s0) {
 
-        if (s0 && !state()) {
+        if (s0 && !state())
+            incTIMA(1);
+    }
 
-            if (TIMACounter == 0xFF) {
+    /**
+     * incrémente le compteur secondaire du nombre donné, en le réinitialisant à la valeur de TMA et en levant
+     * l'interruption TIMER à chaque dépassement de capacité
+     *
+     * @param increments nombre d'incrémentations
+     */
+    private void incTIMA(long increments) {
 
-                gameBoyCpu.requestInterrupt(Cpu.Interrupt.TIMER);
-                TIMACounter = TMARegister;
-            } else {
-                ++TIMACounter;
+        while (increments > 0) {
+            int beforeOverflow = 0x100 - TIMACounter;
+
+            if (increments < beforeOverflow) {
+                TIMACounter += (int) increments;
+                return;
             }
 
+            increments -= beforeOverflow;
+            gameBoyCpu.requestInterrupt(Cpu.Interrupt.TIMER);
+            TIMACounter = TMARegister;
         }
     }
 
@@ -100,6 +237,16 @@ public final class Timer implements Component, Clocked {
         }
     }
 
+    /**
+     * Attache le minuteur au bus, pour la plage de ses registres uniquement
+     *
+     * @param bus : bus auquel attacher le minuteur
+     */
+    @Override
+    public void attachTo(Bus bus) {
+        bus.attach(this, REG_DIV, REG_TAC + 1);
+    }
+
     /**
      * Lit l'octet à l'adresse donnée
      *
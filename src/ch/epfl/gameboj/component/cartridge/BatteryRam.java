@@ -0,0 +1,267 @@
+package ch.epfl.gameboj.component.cartridge;
+
+import ch.epfl.gameboj.component.memory.Ram;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ch.epfl.gameboj.Preconditions.checkArgument;
+import static ch.epfl.gameboj.Preconditions.checkBits8;
+
+/**
+ * Mémoire vive d'une cartouche, éventuellement sauvegardée par pile
+ *
+ * Le contenu est conservé dans une Ram, dont les pages peuvent être partagées avec d'autres mémoires (voir
+ * copyContentsFrom). Une mémoire sauvegardée en recopie chaque écriture dans une projection en mémoire d'un fichier
+ * .sav : une écriture n'y coûte qu'un accès au tampon et le marquage de la page modifiée. Les pages modifiées sont
+ * écrites sur le disque périodiquement par un fil d'arrière-plan, ainsi qu'à l'arrêt du programme, sans jamais
+ * bloquer le fil d'émulation.
+ *
+ * Un fichier .sav n'est écrit que par une seule mémoire à la fois : les mémoires créées depuis un fichier déjà utilisé
+ * par une autre n'en reprennent que le contenu initial, et ne sont pas sauvegardées.
+ *
+ * @author Armen Homberger (154511)
+ * @author Justin Deschenaux (288424)
+ */
+final class BatteryRam {
+
+    private static final int PAGE_BITS = 12;
+    private static final int MAX_SIZE = Long.SIZE << PAGE_BITS;
+    private static final long FLUSH_PERIOD_MILLIS = 1000;
+
+    private static final Set<BatteryRam> SAVED = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    static {
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "gameboj-save-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(BatteryRam::flushAll, FLUSH_PERIOD_MILLIS, FLUSH_PERIOD_MILLIS,
+                TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(BatteryRam::flushAll, "gameboj-save-shutdown"));
+    }
+
+    private final Ram contents;
+    private final Path path;
+    private final MappedByteBuffer file;
+    private final AtomicLong dirtyPages;
+
+    private BatteryRam(Ram contents, Path path, MappedByteBuffer file) {
+        this.contents = contents;
+        this.path = path;
+        this.file = file;
+        this.dirtyPages = new AtomicLong();
+    }
+
+    /**
+     * Crée une mémoire non sauvegardée, dont le contenu est perdu à la fin du programme
+     *
+     * @param size taille de la mémoire
+     * @return mémoire non sauvegardée, initialement nulle
+     * @throws IllegalArgumentException si la taille est négative ou trop grande
+     */
+    static BatteryRam inMemory(int size) {
+        checkArgument(size >= 0 && size <= MAX_SIZE);
+        return new BatteryRam(new Ram(size), null, null);
+    }
+
+    /**
+     * Crée une mémoire non sauvegardée dont le contenu initial est celui du fichier donné, complété par des zéros,
+     * ou nul si le fichier n'existe pas ou ne peut pas être lu
+     *
+     * @param saveFile fichier de sauvegarde, qui n'est jamais modifié
+     * @param size     taille de la mémoire
+     * @return mémoire non sauvegardée
+     * @throws IllegalArgumentException si la taille est négative ou trop grande
+     */
+    static BatteryRam copyOfFile(File saveFile, int size) {
+        BatteryRam ram = inMemory(size);
+        try (FileChannel channel = FileChannel.open(saveFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0)
+                    break;
+            }
+            ram.contents.loadState(buffer.clear());
+        } catch (IOException e) {
+            //Le contenu initial reste nul
+        }
+        return ram;
+    }
+
+    /**
+     * Crée une mémoire sauvegardée dans le fichier donné, créé (ou agrandi) si nécessaire. Si le fichier est déjà
+     * utilisé par une autre mémoire sauvegardée, encore accessible, la mémoire créée n'est pas sauvegardée (voir
+     * copyOfFile), afin que les deux mémoires n'écrasent pas mutuellement leurs sauvegardes
+     *
+     * @param saveFile fichier de sauvegarde
+     * @param size     taille de la mémoire
+     * @return mémoire dont le contenu initial est celui du fichier
+     * @throws IOException              en cas d'erreur d'entrée-sortie, par exemple si le fichier ne peut pas être
+     *                                  créé ou écrit
+     * @throws IllegalArgumentException si la taille est négative ou trop grande
+     */
+    static BatteryRam ofFile(File saveFile, int size) throws IOException {
+        checkArgument(size >= 0 && size <= MAX_SIZE);
+        Path path = saveFile.toPath().toAbsolutePath().normalize();
+
+        synchronized (SAVED) {
+            if (SAVED.stream().anyMatch(r -> r.path.equals(path)))
+                return copyOfFile(saveFile, size);
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                Ram contents = new Ram(size);
+                contents.loadState(mapped.duplicate().clear());
+                BatteryRam ram = new BatteryRam(contents, path, mapped);
+                SAVED.add(ram);
+                return ram;
+            }
+        }
+    }
+
+    /**
+     * Indique si la mémoire est sauvegardée dans un fichier
+     *
+     * @return vrai ssi les écritures sont recopiées dans un fichier .sav
+     */
+    boolean isSaved() {
+        return file != null;
+    }
+
+    /**
+     * Lit un octet à une adresse donnée
+     *
+     * @param index : index de l'octet à lire
+     * @return l'octet non signé à lire
+     * @throws IndexOutOfBoundsException : si l'indice n'existe pas dans la mémoire
+     */
+    int read(int index) {
+        return contents.read(index);
+    }
+
+    /**
+     * Ecrit un octet à une adresse donnée, puis le recopie dans le fichier et marque sa page comme modifiée si la
+     * mémoire est sauvegardée
+     *
+     * @param index : index de l'octet à écrire
+     * @param value : valeur à attribuer à l'octet spécifié
+     * @throws IllegalArgumentException  : si value n'est pas une valeur 8 bits
+     * @throws IndexOutOfBoundsException : si l'indice n'existe pas dans la mémoire
+     */
+    void write(int index, int value) {
+        contents.write(index, checkBits8(value));
+        if (file == null)
+            return;
+
+        file.put(index, (byte) value);
+        long page = 1L << (index >>> PAGE_BITS);
+        if ((dirtyPages.get() & page) == 0)
+            dirtyPages.getAndAccumulate(page, (a, b) -> a | b);
+    }
+
+    /**
+     * Getter de la taille de la mémoire
+     *
+     * @return la taille de la mémoire
+     */
+    int size() {
+        return contents.size();
+    }
+
+    /**
+     * Ecrit le contenu de la mémoire à la position courante du tampon donné
+     *
+     * @param buffer tampon de destination
+     */
+    void saveContents(ByteBuffer buffer) {
+        contents.saveState(buffer);
+    }
+
+    /**
+     * Remplace le contenu de la mémoire par les size() octets lus à la position courante du tampon donné
+     *
+     * @param buffer tampon source
+     */
+    void loadContents(ByteBuffer buffer) {
+        contents.loadState(buffer);
+        mirrorAll();
+    }
+
+    /**
+     * Remplace le contenu de la mémoire par celui de la mémoire donnée, de même taille, en partageant ses pages (voir
+     * Ram.copyStateFrom). Seul le contenu est repris : la mémoire reste sauvegardée dans son propre fichier, ou non
+     * sauvegardée
+     *
+     * @param source mémoire dont le contenu est repris
+     * @throws IllegalArgumentException si les deux mémoires n'ont pas la même taille
+     */
+    void copyContentsFrom(BatteryRam source) {
+        contents.copyStateFrom(source.contents);
+        mirrorAll();
+    }
+
+    /**
+     * Recopie tout le contenu dans le fichier, et marque toutes ses pages comme modifiées, si la mémoire est
+     * sauvegardée
+     */
+    private void mirrorAll() {
+        if (file == null)
+            return;
+
+        contents.saveState(file.duplicate().clear());
+        int pages = (size() + (1 << PAGE_BITS) - 1) >>> PAGE_BITS;
+        dirtyPages.getAndAccumulate(pages == Long.SIZE ? -1L : (1L << pages) - 1, (a, b) -> a | b);
+    }
+
+    /**
+     * Ecrit sur le disque les pages modifiées depuis la dernière écriture (sans effet pour une mémoire non
+     * sauvegardée)
+     */
+    void flush() {
+        long pages = dirtyPages.getAndSet(0);
+        if (file == null)
+            return;
+
+        while (pages != 0) {
+            int page = Long.numberOfTrailingZeros(pages);
+            int start = page << PAGE_BITS;
+            file.force(start, Math.min(1 << PAGE_BITS, size() - start));
+            pages &= pages - 1;
+        }
+    }
+
+    /**
+     * Ecrit sur le disque les pages modifiées de toutes les mémoires sauvegardées
+     */
+    static void flushAll() {
+        List<BatteryRam> rams;
+        synchronized (SAVED) {
+            rams = new ArrayList<>(SAVED);
+        }
+        for (BatteryRam ram : rams) {
+            try {
+                ram.flush();
+            } catch (UncheckedIOException e) {
+                System.err.println("Erreur lors de l'écriture de la sauvegarde de la cartouche : " + e.getLocalizedMessage());
+            }
+        }
+    }
+}
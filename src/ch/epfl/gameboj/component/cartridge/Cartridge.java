@@ -1,13 +1,14 @@
 package ch.epfl.gameboj.component.cartridge;
 
+import ch.epfl.gameboj.component.BankedMemory;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.memory.Ram;
 import ch.epfl.gameboj.component.memory.Rom;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import static ch.epfl.gameboj.Preconditions.*;
 
@@ -17,66 +18,119 @@ import static ch.epfl.gameboj.Preconditions.*;
  * @author Armen Homberger(154511)
  * @author Justin Deschenaux(288424)
  */
-public final class Cartridge implements Component {
+public final class Cartridge implements Component, BankedMemory, Stateful {
 
     private static final int MBC_TYPE = 0x147;
     private static final int[] MBC1_RAM_SIZE = {0, 2048, 0x2000, 0x8000};
     private static final int SIMPLE_CARTRIDGE_SIZE = 0x8000;
     private final Component memoryBankController;
+    private final BankedMemory banks;
+    private final Stateful state;
+    private final Rom rom;
     private static final int RAM_SIZE = 0x149;
+    private static final int MBC1_RAM_BATTERY = 3;
 
     /**
      * Constructeur privé de Cartridge, appelé dans la méthode ofFile ci-dessous
      *
      * @param mbc memoryBankController donné
+     * @param rom rom contrôlée par le memoryBankController
      */
-    private Cartridge(Component mbc) {
+    private <T extends Component & BankedMemory & Stateful> Cartridge(T mbc, Rom rom) {
 
         this.memoryBankController = mbc;
+        this.banks = mbc;
+        this.state = mbc;
+        this.rom = rom;
     }
 
     /**
-     * Crée une cartouche grâce au fichier passé en argument
+     * Crée une cartouche grâce au fichier passé en argument, qui peut être compressé au format gzip (.gz) ou zip
+     * (.zip). Les cartouches créées depuis un même fichier partagent le même contenu de ROM. La mémoire vive d'une
+     * cartouche MBC1 sauvegardée par pile est conservée dans le fichier .sav associé (voir saveFileOf), à moins que
+     * celui-ci ne puisse pas être écrit ou qu'il soit déjà utilisé par une autre cartouche (voir BatteryRam.ofFile)
      *
      * @param romFile fichier à utiliser pour initialiser la cartouche
      * @return cartouche de jeu
      * @throws IOException en cas d'erreur d'entrée-sortie ou si le fichier romFile n'existe pas
+     * @throws IllegalArgumentException si le type de la cartouche n'est pas supporté
      */
     public static Cartridge ofFile(File romFile) throws IOException {
 
-        byte[] gameData = new byte[0];
-        try (FileInputStream inputStream = new FileInputStream(romFile)) {
+        Rom rom = Rom.ofBuffer(RomLoader.load(romFile));
 
+        checkArgument(rom.read(MBC_TYPE) <= 3);
 
-            gameData = new byte[inputStream.available()];
-
-            inputStream.read(gameData);
-
+        if (rom.read(MBC_TYPE) == 0)
+            return new Cartridge(new MBC0(rom), rom);
+        else {
+            int ramSize = MBC1_RAM_SIZE[rom.read(RAM_SIZE)];
+            BatteryRam ram = rom.read(MBC_TYPE) == MBC1_RAM_BATTERY && ramSize > 0
+                    ? batteryRamOf(saveFileOf(romFile), ramSize)
+                    : BatteryRam.inMemory(ramSize);
+            return new Cartridge(new MBC1(rom, ram), rom);
+        }
 
+    }
 
-            if (inputStream.available() != 0)
-                throw new IOException("Toutes les données de la ROM n'ont pas été lues !");
 
+    /**
+     * Crée la mémoire vive sauvegardée dans le fichier donné ou, si celui-ci ne peut pas être écrit (bibliothèque de
+     * ROM en lecture seule, par exemple), une mémoire non sauvegardée reprenant son contenu, après avoir signalé le
+     * problème
+     *
+     * @param saveFile fichier de sauvegarde
+     * @param size     taille de la mémoire
+     * @return mémoire vive de la cartouche
+     */
+    private static BatteryRam batteryRamOf(File saveFile, int size) {
+        try {
+            return BatteryRam.ofFile(saveFile, size);
         } catch (IOException e) {
-
-            System.out.println("Erreur lors de l'accès au fichier de la rom pour la création de la cartouche : " + e.getLocalizedMessage());
-            throw new IOException();
-        } catch (Exception e) {
-
-            System.out.println("Erreur lors de la création de la cartouche : " + e.getLocalizedMessage());
+            System.err.println("La mémoire de la cartouche ne sera pas sauvegardée, le fichier " + saveFile
+                    + " ne pouvant pas être écrit : " + e.getLocalizedMessage());
+            return BatteryRam.copyOfFile(saveFile, size);
         }
+    }
 
-        checkArgument(gameData[MBC_TYPE] >= 0 && gameData[MBC_TYPE] <= 3);
+    /**
+     * Retourne une nouvelle cartouche partageant la rom de celle-ci, dont le contrôleur de banques est dans le même
+     * état et dont la mémoire vive partage les pages de celle-ci jusqu'à leur première modification (voir
+     * Ram.copyStateFrom). La mémoire vive de la copie n'est jamais sauvegardée dans un fichier
+     *
+     * @return copie de la cartouche
+     */
+    public Cartridge fork() {
 
-        if (gameData[MBC_TYPE] == 0)
-            return new Cartridge(new MBC0(new Rom(gameData)));
-        else {
-            int ramSize = MBC1_RAM_SIZE[gameData[RAM_SIZE]];
-            return new Cartridge(new MBC1(new Rom(gameData), ramSize));
-        }
+        if (memoryBankController instanceof MBC1)
+            return new Cartridge(((MBC1) memoryBankController).fork(), rom);
+        else
+            return new Cartridge(new MBC0(rom), rom);
+    }
 
+    /**
+     * Retourne le fichier de sauvegarde associé au fichier de ROM donné : le fichier de même nom, dans le même
+     * répertoire, dont la dernière extension est remplacée par .sav
+     *
+     * @param romFile fichier de la ROM
+     * @return fichier de sauvegarde de la mémoire vive
+     */
+    static File saveFileOf(File romFile) {
+        String name = romFile.getName();
+        int extension = name.lastIndexOf('.');
+        String baseName = extension > 0 ? name.substring(0, extension) : name;
+        return new File(romFile.getAbsoluteFile().getParentFile(), baseName + ".sav");
     }
 
+    /**
+     * Rom de la cartouche, dont la banque visible à chaque adresse est donnée par bankOf
+     *
+     * @return rom de la cartouche
+     */
+    public Rom rom() {
+
+        return rom;
+    }
 
     /**
      * Lecture de la cartouche
@@ -102,5 +156,60 @@ public final class Cartridge implements Component {
         memoryBankController.write(checkBits16(address), checkBits8(data));
     }
 
+    /**
+     * Banque de la rom visible à l'adresse donnée
+     *
+     * @param address : adresse 16 bits
+     * @return identité de la banque, donnée par le contrôleur de banques de la cartouche
+     */
+    @Override
+    public int bankOf(int address) {
+
+        return banks.bankOf(checkBits16(address));
+    }
+
+    /**
+     * Taille de l'état de la cartouche, qui est celui de son contrôleur de banques (registres et mémoire vive)
+     *
+     * @return taille de l'état du contrôleur de banques
+     */
+    @Override
+    public int stateSize() {
 
+        return state.stateSize();
+    }
+
+    /**
+     * Ecrit l'état du contrôleur de banques de la cartouche
+     *
+     * @param buffer : tampon de destination
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+
+        state.saveState(buffer);
+    }
+
+    /**
+     * Restaure l'état du contrôleur de banques de la cartouche
+     *
+     * @param buffer : tampon source
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+
+        state.loadState(buffer);
+    }
+
+    /**
+     * Reprend l'état du contrôleur de banques de la cartouche donnée, de même type, en partageant les pages de sa
+     * mémoire vive
+     *
+     * @param source : cartouche dont l'état est repris
+     */
+    @Override
+    public void copyStateFrom(Stateful source) {
+
+        state.copyStateFrom(((Cartridge) source).state);
+    }
 }
@@ -1,8 +1,12 @@
 package ch.epfl.gameboj.component.cartridge;
 
+import ch.epfl.gameboj.component.BankedMemory;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.memory.Rom;
 
+import java.nio.ByteBuffer;
+
 import static ch.epfl.gameboj.Preconditions.checkArgument;
 import static ch.epfl.gameboj.Preconditions.checkBits16;
 
@@ -12,7 +16,7 @@ import static ch.epfl.gameboj.Preconditions.checkBits16;
  * @author Armen Homberger(154511)
  * @author Justin Deschenaux(288424)
  */
-public final class MBC0 implements Component {
+public final class MBC0 implements Component, BankedMemory, Stateful {
 
     private final Rom rom;
     private static final int SIMPLE_CARTRIDGE_SIZE = 0x8000;
@@ -62,4 +66,53 @@ public final class MBC0 implements Component {
     public void write(int address, int data) {
     }
 
+    /**
+     * la rom d'une cartouche simple est formée de deux banques fixes de 16 Kio
+     *
+     * @param address : adresse 16 bits
+     * @return index (0 ou 1) de la banque visible à une adresse de la rom, 0 pour les autres adresses
+     */
+    @Override
+    public int bankOf(int address) {
+        checkBits16(address);
+
+        return address < rom.size() ? address >>> 14 : 0;
+    }
+
+    /**
+     * Un MBC0 n'a aucun état, sa rom ne pouvant pas changer
+     *
+     * @return 0
+     */
+    @Override
+    public int stateSize() {
+        return 0;
+    }
+
+    /**
+     * N'écrit rien, un MBC0 n'ayant aucun état
+     *
+     * @param buffer : tampon de destination
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+    }
+
+    /**
+     * Ne lit rien, un MBC0 n'ayant aucun état
+     *
+     * @param buffer : tampon source
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+    }
+
+    /**
+     * Ne reprend rien, un MBC0 n'ayant aucun état
+     *
+     * @param source : MBC0 dont l'état est repris
+     */
+    @Override
+    public void copyStateFrom(Stateful source) {
+    }
 }
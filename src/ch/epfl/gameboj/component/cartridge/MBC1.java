@@ -4,17 +4,20 @@ import static ch.epfl.gameboj.Preconditions.checkBits16;
 import static ch.epfl.gameboj.Preconditions.checkBits8;
 
 import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.BankedMemory;
 import ch.epfl.gameboj.component.Component;
-import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.memory.Rom;
 
-public final class MBC1 implements Component {
+import java.nio.ByteBuffer;
+
+public final class MBC1 implements Component, BankedMemory, Stateful {
     private static final int RAM_ENABLE = 0xA;
 
     private enum Mode { MODE_0, MODE_1 };
 
     private final Rom rom;
-    private final Ram ram;
+    private final BatteryRam ram;
 
     private boolean ramEnabled;
     private Mode mode;
@@ -22,8 +25,12 @@ public final class MBC1 implements Component {
     private final int romMask, ramMask;
 
     public MBC1(Rom rom, int ramSize) {
+        this(rom, BatteryRam.inMemory(ramSize));
+    }
+
+    MBC1(Rom rom, BatteryRam ram) {
         this.rom = rom;
-        this.ram = new Ram(ramSize);
+        this.ram = ram;
 
         this.ramEnabled = false;
         this.mode = Mode.MODE_0;
@@ -31,7 +38,7 @@ public final class MBC1 implements Component {
         this.ramRom2 = 0;
 
         this.romMask = rom.size() - 1;
-        this.ramMask = ramSize - 1;
+        this.ramMask = ram.size() - 1;
     }
 
     public int read(int address) {
@@ -70,6 +77,55 @@ public final class MBC1 implements Component {
         }
     }
 
+    @Override
+    public int bankOf(int address) {
+        switch (Bits.extract(checkBits16(address), 13, 3)) {
+            case 0: case 1:
+                return romAddress(msb2(), 0, address) >>> 14;
+            case 2: case 3:
+                return romAddress(ramRom2, romLsb5, address) >>> 14;
+            default:
+                return 0;
+        }
+    }
+
+    @Override
+    public int stateSize() {
+        return 3 * Integer.BYTES + ram.size();
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.putInt(ramEnabled ? 1 : 0).putInt(mode.ordinal()).putInt(romLsb5 | ramRom2 << 8);
+        ram.saveContents(buffer);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        ramEnabled = buffer.getInt() != 0;
+        mode = Mode.values()[buffer.getInt()];
+        int banks = buffer.getInt();
+        romLsb5 = Bits.clip(8, banks);
+        ramRom2 = banks >>> 8;
+        ram.loadContents(buffer);
+    }
+
+    @Override
+    public void copyStateFrom(Stateful source) {
+        MBC1 that = (MBC1) source;
+        ramEnabled = that.ramEnabled;
+        mode = that.mode;
+        romLsb5 = that.romLsb5;
+        ramRom2 = that.ramRom2;
+        ram.copyContentsFrom(that.ram);
+    }
+
+    MBC1 fork() {
+        MBC1 copy = new MBC1(rom, ram.size());
+        copy.copyStateFrom(this);
+        return copy;
+    }
+
     private int msb2() {
         switch (mode) {
             case MODE_0: return 0;
@@ -0,0 +1,160 @@
+package ch.epfl.gameboj.component.cartridge;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Chargeur du contenu des fichiers de ROM
+ *
+ * Les fichiers non compressés sont projetés en mémoire, les fichiers gzip (.gz) et zip (.zip) sont décompressés
+ * directement dans le tampon de la ROM. Le contenu est retourné sous la forme d'un tampon en lecture seule, partagé
+ * par toutes les cartouches chargées depuis le même fichier tant que celui-ci n'est pas modifié.
+ *
+ * @author Armen Homberger (154511)
+ * @author Justin Deschenaux (288424)
+ */
+final class RomLoader {
+
+    private static final String[] ROM_EXTENSIONS = {".gb", ".gbc", ".bin"};
+    private static final int GZIP_TRAILER_SIZE = 4;
+    private static final int DEFAULT_BUFFER_SIZE = 0x8000;
+
+    private static final Map<Path, SharedRom> CACHE = new ConcurrentHashMap<>();
+
+    private RomLoader() {
+    }
+
+    /**
+     * Tampon partagé, associé à la taille et à la date de modification du fichier dont il provient. Le tampon n'est
+     * référencé que faiblement, afin de pouvoir être libéré lorsque plus aucune cartouche ne l'utilise
+     */
+    private static final class SharedRom {
+        private final long size, lastModified;
+        private final WeakReference<ByteBuffer> data;
+
+        private SharedRom(long size, long lastModified, ByteBuffer data) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.data = new WeakReference<>(data);
+        }
+    }
+
+    /**
+     * Charge le contenu du fichier de ROM donné, ou retourne celui déjà chargé depuis ce fichier
+     *
+     * @param romFile fichier de la ROM, éventuellement compressé
+     * @return tampon partagé en lecture seule, de position 0, contenant la ROM (sa position ne doit pas être modifiée)
+     * @throws IOException en cas d'erreur d'entrée-sortie, si le fichier n'existe pas ou si une archive zip ne
+     *                     contient pas de ROM
+     */
+    static ByteBuffer load(File romFile) throws IOException {
+        Path path = romFile.toPath().toRealPath();
+        long size = Files.size(path);
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+
+        SharedRom shared = CACHE.get(path);
+        if (shared != null && shared.size == size && shared.lastModified == lastModified) {
+            ByteBuffer data = shared.data.get();
+            if (data != null)
+                return data;
+        }
+
+        ByteBuffer data = read(path, size).asReadOnlyBuffer();
+        CACHE.values().removeIf(s -> s.data.get() == null);
+        CACHE.put(path, new SharedRom(size, lastModified, data));
+        return data;
+    }
+
+    private static ByteBuffer read(Path path, long size) throws IOException {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+
+        if (name.endsWith(".gz")) {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+                return ByteBuffer.wrap(readFully(in, gzipUncompressedSize(path, size)));
+            }
+        }
+
+        if (name.endsWith(".zip")) {
+            try (ZipFile zip = new ZipFile(path.toFile())) {
+                ZipEntry entry = romEntry(zip);
+                try (InputStream in = zip.getInputStream(entry)) {
+                    return ByteBuffer.wrap(readFully(in, entry.getSize()));
+                }
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * Retourne la taille annoncée par les 4 derniers octets d'un fichier gzip (taille décompressée modulo 2^32), ou -1
+     * si elle est inconnue
+     */
+    private static long gzipUncompressedSize(Path path, long size) throws IOException {
+        if (size < GZIP_TRAILER_SIZE)
+            return -1;
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            file.seek(size - GZIP_TRAILER_SIZE);
+            return Integer.toUnsignedLong(Integer.reverseBytes(file.readInt()));
+        }
+    }
+
+    /**
+     * Retourne la première entrée de l'archive dont l'extension est celle d'une ROM
+     */
+    private static ZipEntry romEntry(ZipFile zip) throws IOException {
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            String name = entry.getName().toLowerCase(Locale.ROOT);
+            if (!entry.isDirectory() && Arrays.stream(ROM_EXTENSIONS).anyMatch(name::endsWith))
+                return entry;
+        }
+        throw new IOException("Aucune ROM dans l'archive " + zip.getName());
+    }
+
+    /**
+     * Lit la totalité du flot donné, dans un tableau de la taille annoncée si celle-ci est connue (agrandi si le flot
+     * est plus long qu'annoncé)
+     */
+    private static byte[] readFully(InputStream in, long expectedSize) throws IOException {
+        boolean sizeKnown = expectedSize >= 0 && expectedSize <= Integer.MAX_VALUE - 8;
+        byte[] data = new byte[sizeKnown ? (int) expectedSize : DEFAULT_BUFFER_SIZE];
+        int length = 0;
+
+        while (true) {
+            if (length == data.length) {
+                int next = in.read();
+                if (next < 0)
+                    break;
+                data = Arrays.copyOf(data, Math.max(DEFAULT_BUFFER_SIZE, 2 * data.length));
+                data[length++] = (byte) next;
+            }
+
+            int read = in.read(data, length, data.length - length);
+            if (read < 0)
+                break;
+            length += read;
+        }
+        return length == data.length ? data : Arrays.copyOf(data, length);
+    }
+}
@@ -0,0 +1,130 @@
+package ch.epfl.gameboj.component.cpu;
+
+import ch.epfl.gameboj.component.cpu.Alu.RotDir;
+
+/**
+ * Tables précalculées des résultats (couples valeur / fanions) des opérations 8 bits de l'ALU, pour toutes les
+ * combinaisons d'opérandes, de retenue et de fanions. Elles sont construites une seule fois, au chargement de la
+ * classe, au moyen des méthodes de Alu, dont elles donnent donc exactement les mêmes résultats, sans vérification des
+ * arguments ni branchement
+ *
+ * Les arguments des méthodes de lecture doivent être valides (valeurs 8 bits), ce qui est toujours le cas des valeurs
+ * des registres et de la mémoire
+ *
+ * @author Armen Homberger (154511)
+ * @author Justin Deschenaux (288424)
+ */
+final class AluTables {
+
+    private static final int VALUES = 0x100;
+    private static final int CARRY = VALUES * VALUES;
+
+    //Addition et soustraction, indexées par (retenue, l, r)
+    private static final int[] ADD = new int[2 * CARRY];
+    private static final int[] SUB = new int[2 * CARRY];
+    //Rotations, indexées par (direction, v) et (direction, retenue, v)
+    private static final int[] ROTATE = new int[2 * VALUES];
+    private static final int[] ROTATE_CARRY = new int[4 * VALUES];
+    //Décalages et échange, indexés par v
+    private static final int[] SHIFT_LEFT = new int[VALUES];
+    private static final int[] SHIFT_RIGHT_A = new int[VALUES];
+    private static final int[] SHIFT_RIGHT_L = new int[VALUES];
+    private static final int[] SWAP = new int[VALUES];
+    //Ajustement décimal, indexé par les fanions N, H et C (bits 6 à 4 du registre F) et v
+    private static final int[] BCD_ADJUST = new int[8 * VALUES];
+
+    static {
+        for (int c = 0; c < 2; ++c) {
+            for (int l = 0; l < VALUES; ++l) {
+                for (int r = 0; r < VALUES; ++r) {
+                    ADD[c * CARRY | l << 8 | r] = Alu.add(l, r, c != 0);
+                    SUB[c * CARRY | l << 8 | r] = Alu.sub(l, r, c != 0);
+                }
+            }
+        }
+
+        for (int v = 0; v < VALUES; ++v) {
+            for (RotDir d : RotDir.values()) {
+                ROTATE[d.ordinal() << 8 | v] = Alu.rotate(d, v);
+                ROTATE_CARRY[d.ordinal() << 9 | v] = Alu.rotate(d, v, false);
+                ROTATE_CARRY[d.ordinal() << 9 | VALUES | v] = Alu.rotate(d, v, true);
+            }
+            SHIFT_LEFT[v] = Alu.shiftLeft(v);
+            SHIFT_RIGHT_A[v] = Alu.shiftRightA(v);
+            SHIFT_RIGHT_L[v] = Alu.shiftRightL(v);
+            SWAP[v] = Alu.swap(v);
+            for (int nhc = 0; nhc < 8; ++nhc)
+                BCD_ADJUST[nhc << 8 | v] = Alu.bcdAdjust(v, (nhc & 4) != 0, (nhc & 2) != 0, (nhc & 1) != 0);
+        }
+    }
+
+    private AluTables() {
+    }
+
+    /**
+     * @return même résultat que Alu.add(l, r, c)
+     */
+    static int add(int l, int r, boolean c) {
+        return ADD[(c ? CARRY : 0) | l << 8 | r];
+    }
+
+    /**
+     * @return même résultat que Alu.sub(l, r, b)
+     */
+    static int sub(int l, int r, boolean b) {
+        return SUB[(b ? CARRY : 0) | l << 8 | r];
+    }
+
+    /**
+     * @return même résultat que Alu.rotate(d, v)
+     */
+    static int rotate(RotDir d, int v) {
+        return ROTATE[d.ordinal() << 8 | v];
+    }
+
+    /**
+     * @return même résultat que Alu.rotate(d, v, c)
+     */
+    static int rotate(RotDir d, int v, boolean c) {
+        return ROTATE_CARRY[d.ordinal() << 9 | (c ? VALUES : 0) | v];
+    }
+
+    /**
+     * @return même résultat que Alu.shiftLeft(v)
+     */
+    static int shiftLeft(int v) {
+        return SHIFT_LEFT[v];
+    }
+
+    /**
+     * @return même résultat que Alu.shiftRightA(v)
+     */
+    static int shiftRightA(int v) {
+        return SHIFT_RIGHT_A[v];
+    }
+
+    /**
+     * @return même résultat que Alu.shiftRightL(v)
+     */
+    static int shiftRightL(int v) {
+        return SHIFT_RIGHT_L[v];
+    }
+
+    /**
+     * @return même résultat que Alu.swap(v)
+     */
+    static int swap(int v) {
+        return SWAP[v];
+    }
+
+    /**
+     * Ajustement décimal de v selon les fanions N, H et C du registre F donné
+     *
+     * @param v valeur 8 bits
+     * @param f valeur du registre F
+     * @return même résultat que Alu.bcdAdjust(v, n, h, c)
+     */
+    static int bcdAdjust(int v, int f) {
+        return BCD_ADJUST[(f >>> 4 & 0b111) << 8 | v];
+    }
+}
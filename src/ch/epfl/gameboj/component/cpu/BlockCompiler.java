@@ -0,0 +1,591 @@
+package ch.epfl.gameboj.component.cpu;
+
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.BankedMemory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static ch.epfl.gameboj.AddressMap.BOOT_ROM_END;
+import static ch.epfl.gameboj.AddressMap.CARTRIDGE_ROM_END;
+
+/**
+ * Recompilateur dynamique des blocs de base de la ROM en classes JVM
+ *
+ * Un bloc est une suite d'instructions commençant à une adresse de la ROM, compilée lorsque cette adresse a été
+ * atteinte suffisamment souvent. Il ne contient que des instructions n'accédant pas au bus (hormis la lecture de
+ * leurs opérandes dans la ROM), et se termine éventuellement par un saut. Chaque bloc est traduit en une classe
+ * cachée, membre du nid de Cpu, dont la méthode run agit directement sur les registres du processeur : les
+ * chargements, les opérations 16 bits et les sauts y sont traduits en accès aux champs de Cpu, les opérations de
+ * l'ALU sur A et les incrémentations en appels de ses méthodes, et les valeurs immédiates, lues dans la ROM lors de
+ * la compilation, y sont des constantes. Les autres instructions (rotations, opérations sur les bits, etc.)
+ * exécutent l'instruction spécialisée de Cpu pour leur encodage. Le compteur de programme n'est mis à jour qu'à la
+ * fin du bloc, et le prochain cycle non-oisif une seule fois pour tout le bloc.
+ *
+ * Les blocs sont indexés par adresse et par banque de la ROM visible à cette adresse, et ne s'étendent jamais sur
+ * deux banques. Seule la ROM est compilée : son contenu ne peut pas être modifié par le programme, il n'y a donc
+ * jamais de bloc à invalider. Le code situé en mémoire vive est toujours interprété, de même que les blocs dont
+ * la classe n'a pas pu être définie.
+ *
+ * @author Armen Homberger (154511)
+ * @author Justin Deschenaux (288424)
+ */
+final class BlockCompiler {
+
+    /**
+     * Bloc compilé
+     */
+    abstract static class Block {
+        /**
+         * Nombre maximal de cycles pris par l'exécution du bloc
+         */
+        final int maxCycles;
+
+        Block(int maxCycles) {
+            this.maxCycles = maxCycles;
+        }
+
+        /**
+         * Exécute les instructions du bloc, en mettant à jour le compteur de programme et le prochain cycle
+         * non-oisif du processeur comme l'auraient fait les instructions exécutées une à une
+         *
+         * @param cpu processeur dont le compteur de programme est l'adresse du bloc
+         */
+        abstract void run(Cpu cpu);
+    }
+
+    static final int HOT_THRESHOLD = 16;
+    private static final int MIN_BLOCK_INSTRUCTIONS = 2;
+    private static final int MAX_BLOCK_INSTRUCTIONS = 64;
+
+    //Marque les adresses dont le bloc n'a pas pu être compilé
+    private static final Block NOT_COMPILABLE = new Block(0) {
+        @Override
+        void run(Cpu cpu) {
+            throw new IllegalStateException();
+        }
+    };
+
+    private final MethodHandles.Lookup cpuLookup;
+    private final BankedMemory codeBanks;
+    private final Bus bus;
+
+    //Cache à correspondance directe, indexé par adresse : banque + 2 (0 si vide), bloc et nombre de passages
+    private final int[] keys;
+    private final Block[] blocks;
+    private final int[] counts;
+
+    //Vrai dès qu'un échec de la définition d'une classe de bloc a été signalé
+    private boolean failureReported;
+
+    /**
+     * Construit un recompilateur
+     *
+     * @param cpuLookup objet de recherche de Cpu, avec lequel les classes des blocs sont définies
+     * @param codeBanks mémoire donnant la banque visible à chaque adresse de la ROM
+     * @param bus       bus depuis lequel le code à compiler est lu
+     */
+    BlockCompiler(MethodHandles.Lookup cpuLookup, BankedMemory codeBanks, Bus bus) {
+        this.cpuLookup = Objects.requireNonNull(cpuLookup);
+        this.codeBanks = Objects.requireNonNull(codeBanks);
+        this.bus = Objects.requireNonNull(bus);
+
+        keys = new int[CARTRIDGE_ROM_END];
+        blocks = new Block[CARTRIDGE_ROM_END];
+        counts = new int[CARTRIDGE_ROM_END];
+    }
+
+    /**
+     * Retourne le bloc compilé commençant à l'adresse donnée, en le compilant si cette adresse est atteinte
+     * suffisamment souvent
+     *
+     * @param pc adresse du bloc, dans la ROM
+     * @return bloc compilé, ou null si le code à cette adresse est (pour l'instant) interprété
+     */
+    Block blockAt(int pc) {
+        int key = codeBanks.bankOf(pc) + 2;
+
+        if (keys[pc] != key) {
+            keys[pc] = key;
+            blocks[pc] = null;
+            counts[pc] = 0;
+        }
+
+        Block block = blocks[pc];
+        if (block == null && ++counts[pc] >= HOT_THRESHOLD)
+            block = blocks[pc] = compile(pc);
+
+        return block == NOT_COMPILABLE ? null : block;
+    }
+
+    /**
+     * Zone de la ROM contenant l'adresse donnée : un bloc ne peut pas changer de zone, car l'une pourrait changer de
+     * banque indépendamment de l'autre
+     */
+    private static int regionOf(int address) {
+        return address < BOOT_ROM_END ? 0 : 1 + (address >>> 14);
+    }
+
+    private static boolean isCompilable(Opcode.Family family) {
+        switch (family) {
+            case NOP:
+            case LD_R8_N8: case LD_R16SP_N16: case LD_R8_R8: case LD_SP_HL:
+            case ADD_A_R8: case ADD_A_N8: case INC_R8: case INC_R16SP: case ADD_HL_R16SP: case LD_HLSP_S8:
+            case SUB_A_R8: case SUB_A_N8: case DEC_R8: case CP_A_R8: case CP_A_N8: case DEC_R16SP:
+            case AND_A_R8: case AND_A_N8: case OR_A_R8: case OR_A_N8: case XOR_A_R8: case XOR_A_N8: case CPL:
+            case ROTCA: case ROTA: case ROTC_R8: case ROT_R8: case SWAP_R8: case SLA_R8: case SRA_R8: case SRL_R8:
+            case BIT_U3_R8: case CHG_U3_R8:
+            case DAA: case SCCF:
+                return true;
+            default:
+                return isBlockEnd(family);
+        }
+    }
+
+    private static boolean isBlockEnd(Opcode.Family family) {
+        switch (family) {
+            case JP_HL: case JP_N16: case JP_CC_N16: case JR_E8: case JR_CC_E8:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Compile le bloc commençant à l'adresse donnée
+     *
+     * @return bloc compilé, ou NOT_COMPILABLE si le bloc est trop court ou si sa classe n'a pas pu être définie
+     */
+    private Block compile(int pc) {
+        List<int[]> instructions = new ArrayList<>();
+        int maxCycles = 0, baseCycles = 0;
+        int address = pc;
+
+        while (instructions.size() < MAX_BLOCK_INSTRUCTIONS) {
+            int opcode = bus.read(address);
+            int encoding = opcode == Cpu.PREFIX ? Cpu.PREFIXED_ENCODINGS | bus.read(address + 1) : opcode;
+            Opcode o = Cpu.OPCODE_TABLE[encoding];
+
+            if (o == null || !isCompilable(o.family))
+                break;
+            int next = address + o.totalBytes;
+            if (next > CARTRIDGE_ROM_END || regionOf(next - 1) != regionOf(pc))
+                break;
+
+            int immediate = 0;
+            if (opcode != Cpu.PREFIX && o.totalBytes > 1)
+                immediate = o.totalBytes == 2
+                        ? bus.read(address + 1)
+                        : bus.read(address + 2) << 8 | bus.read(address + 1);
+
+            instructions.add(new int[] {address, encoding, next, immediate});
+            baseCycles += o.cycles;
+            maxCycles += o.cycles + o.additionalCycles;
+            address = next;
+
+            if (isBlockEnd(o.family))
+                break;
+        }
+
+        if (instructions.size() < MIN_BLOCK_INSTRUCTIONS)
+            return NOT_COMPILABLE;
+
+        try {
+            byte[] classFile = BlockClassWriter.write(instructions, baseCycles);
+            Class<?> blockClass = cpuLookup.defineHiddenClass(classFile, true,
+                    MethodHandles.Lookup.ClassOption.NESTMATE).lookupClass();
+            return (Block) blockClass.getDeclaredConstructor(int.class).newInstance(maxCycles);
+        } catch (ReflectiveOperationException | IOException | LinkageError | RuntimeException e) {
+            //Le bloc reste interprété : l'émulation est plus lente mais reste correcte
+            if (!failureReported) {
+                failureReported = true;
+                System.err.println("Compilation du bloc à l'adresse " + Integer.toHexString(pc)
+                        + " impossible, les blocs non compilés seront interprétés : " + e);
+            }
+            return NOT_COMPILABLE;
+        }
+    }
+
+    /**
+     * Rédacteur des fichiers de classe des blocs. Toutes les classes de blocs partagent le même réservoir de
+     * constantes, construit une seule fois : les constantes propres à un bloc sont empilées par des instructions JVM
+     */
+    private static final class BlockClassWriter {
+
+        private static final String CPU = "ch/epfl/gameboj/component/cpu/Cpu";
+        private static final String INSTRUCTION = CPU + "$Instruction";
+        private static final String BLOCK = "ch/epfl/gameboj/component/cpu/BlockCompiler$Block";
+
+        //Version du format de fichier de classe (Java 11, première version des nids). Le code émis ne contenant
+        //aucun branchement, ses méthodes n'ont pas besoin de table des états de la pile
+        private static final int CLASS_VERSION = 55;
+        private static final int ACC_PUBLIC = 0x0001, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+        private static final int ICONST_0 = 0x03, ICONST_1 = 0x04, BIPUSH = 0x10, SIPUSH = 0x11, ILOAD_1 = 0x1B;
+        private static final int ILOAD_2 = 0x1C, ALOAD_0 = 0x2A, ALOAD_1 = 0x2B, AALOAD = 0x32, ISTORE_2 = 0x3D;
+        private static final int DUP = 0x59, IADD = 0x60, LADD = 0x61, ISUB = 0x64, ISHL = 0x78, IUSHR = 0x7C;
+        private static final int IAND = 0x7E, IOR = 0x80, I2L = 0x85, RETURN = 0xB1, GETSTATIC = 0xB2;
+        private static final int GETFIELD = 0xB4, PUTFIELD = 0xB5, INVOKEVIRTUAL = 0xB6, INVOKESPECIAL = 0xB7;
+        private static final int INVOKEINTERFACE = 0xB9;
+
+        private static final ConstantPool POOL = new ConstantPool();
+        private static final int THIS_CLASS = POOL.classRef("ch/epfl/gameboj/component/cpu/CompiledBlock");
+        private static final int SUPER_CLASS = POOL.classRef(BLOCK);
+        private static final int CODE = POOL.utf8("Code");
+        private static final int INIT = POOL.utf8("<init>"), INIT_DESCRIPTOR = POOL.utf8("(I)V");
+        private static final int RUN = POOL.utf8("run"), RUN_DESCRIPTOR = POOL.utf8("(L" + CPU + ";)V");
+        private static final int BLOCK_INIT = POOL.methodRef(BLOCK, "<init>", "(I)V");
+        private static final int CYCLE = POOL.fieldRef(CPU, "nextNonIdleCycle", "J");
+        private static final int PC = POOL.fieldRef(CPU, "programCounter", "I");
+        private static final int A = POOL.fieldRef(CPU, "regA", "I"), BC = POOL.fieldRef(CPU, "regBC", "I");
+        private static final int DE = POOL.fieldRef(CPU, "regDE", "I"), HL = POOL.fieldRef(CPU, "regHL", "I");
+        private static final int SP = POOL.fieldRef(CPU, "stackPointer", "I");
+        private static final int ADD_SUB_A = POOL.methodRef(CPU, "addSubA", "(IZZZ)V");
+        private static final int LOGIC_A = POOL.methodRef(CPU, "logicA", "(II)V");
+        private static final int INC_DEC = POOL.methodRef(CPU, "incDec", "(IZ)I");
+        private static final int CONDITIONAL_JUMP = POOL.methodRef(CPU, "conditionalJump", "(IIII)I");
+        private static final int TABLE = POOL.fieldRef(CPU, "INSTRUCTION_TABLE", "[L" + INSTRUCTION + ";");
+        private static final int EXECUTE = POOL.interfaceMethodRef(INSTRUCTION, "execute", "(L" + CPU + ";)V");
+        private static final byte[] CONSTANTS = POOL.toByteArray();
+
+        //Champs contenant les registres 8 bits et les paires de registres, dans l'ordre de leur encodage (l'index
+        //6 des registres 8 bits désignant l'octet pointé par HL, et l'index 3 des paires le pointeur de pile)
+        private static final int REG_A = 7;
+        private static final int[] REG8_FIELDS = {BC, BC, DE, DE, HL, HL, 0, A};
+        private static final int[] REG16_FIELDS = {BC, DE, HL, SP};
+
+        private BlockClassWriter() {
+        }
+
+        /**
+         * Ecrit le fichier de classe d'un bloc
+         *
+         * @param instructions adresse, encodage, adresse suivante et valeur immédiate des instructions du bloc
+         * @param baseCycles   durée du bloc lorsqu'aucun saut conditionnel n'a lieu
+         * @return fichier de classe d'une sous-classe de Block, dont le constructeur prend le nombre maximal de
+         * cycles du bloc
+         */
+        static byte[] write(List<int[]> instructions, int baseCycles) throws IOException {
+            Code init = new Code();
+            init.op(ALOAD_0).op(ILOAD_1).op(INVOKESPECIAL).u2(BLOCK_INIT).op(RETURN);
+
+            //run : traduction des instructions du bloc, puis mise à jour du cycle et du compteur de programme
+            Code run = new Code();
+            boolean jumps = false;
+            for (int[] instruction : instructions)
+                jumps = translate(run, instruction[0], instruction[1], instruction[2], instruction[3]);
+
+            run.op(ALOAD_1).op(DUP).op(GETFIELD).u2(CYCLE).pushInt(baseCycles).op(I2L).op(LADD).op(PUTFIELD).u2(CYCLE);
+            if (!jumps)
+                run.op(ALOAD_1).pushInt(instructions.get(instructions.size() - 1)[2]).op(PUTFIELD).u2(PC);
+            run.op(RETURN);
+
+            ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(classBytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_VERSION);
+            out.writeShort(POOL.count());
+            out.write(CONSTANTS);
+            out.writeShort(ACC_FINAL | ACC_SUPER);
+            out.writeShort(THIS_CLASS);
+            out.writeShort(SUPER_CLASS);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.writeShort(2);
+            writeMethod(out, INIT, INIT_DESCRIPTOR, init, 2, 2);
+            writeMethod(out, RUN, RUN_DESCRIPTOR, run, 6, 3);
+            out.writeShort(0);
+            out.flush();
+            return classBytes.toByteArray();
+        }
+
+        private static void writeMethod(DataOutputStream out, int name, int descriptor, Code code, int maxStack,
+                int maxLocals) throws IOException {
+            out.writeShort(ACC_PUBLIC);
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1);
+            out.writeShort(CODE);
+            byte[] bytecode = code.toByteArray();
+            out.writeInt(12 + bytecode.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(bytecode.length);
+            out.write(bytecode);
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+
+        /**
+         * Traduit une instruction du bloc
+         *
+         * @param code      code de la méthode run
+         * @param address   adresse de l'instruction
+         * @param encoding  encodage de l'instruction (voir Cpu.OPCODE_TABLE)
+         * @param next      adresse de l'instruction suivante
+         * @param immediate valeur immédiate de l'instruction, lue dans la ROM
+         * @return vrai ssi l'instruction est un saut, qui a fixé le compteur de programme
+         */
+        private static boolean translate(Code code, int address, int encoding, int next, int immediate) {
+            Opcode o = Cpu.OPCODE_TABLE[encoding];
+            int r3 = (encoding >>> 3) & 0b111, r0 = encoding & 0b111, r16 = (encoding >>> 4) & 0b11;
+            int cc = (encoding >>> 3) & 0b11;
+
+            switch (o.family) {
+                case NOP:
+                    break;
+                case LD_R8_N8:
+                    code.pushInt(immediate).op(ISTORE_2);
+                    storeReg8(code, r3);
+                    break;
+                case LD_R8_R8:
+                    if (r3 != r0) {
+                        loadReg8(code, r0);
+                        code.op(ISTORE_2);
+                        storeReg8(code, r3);
+                    }
+                    break;
+                case LD_R16SP_N16:
+                    code.op(ALOAD_1).pushInt(immediate).op(PUTFIELD).u2(REG16_FIELDS[r16]);
+                    break;
+                case LD_SP_HL:
+                    code.op(ALOAD_1).op(ALOAD_1).op(GETFIELD).u2(HL).op(PUTFIELD).u2(SP);
+                    break;
+                case INC_R16SP:
+                case DEC_R16SP:
+                    code.op(ALOAD_1).op(DUP).op(GETFIELD).u2(REG16_FIELDS[r16]).op(ICONST_1)
+                            .op(o.family == Opcode.Family.INC_R16SP ? IADD : ISUB).pushInt(0xFFFF).op(IAND)
+                            .op(PUTFIELD).u2(REG16_FIELDS[r16]);
+                    break;
+                case ADD_A_R8: case ADD_A_N8: case SUB_A_R8: case SUB_A_N8: {
+                    boolean withCarry = (encoding & 0b1000) != 0;
+                    code.op(ALOAD_1);
+                    loadOperand(code, o, r0, immediate);
+                    code.op(o.family == Opcode.Family.ADD_A_R8 || o.family == Opcode.Family.ADD_A_N8 ? ICONST_0
+                            : ICONST_1).op(withCarry ? ICONST_1 : ICONST_0).op(ICONST_1)
+                            .op(INVOKEVIRTUAL).u2(ADD_SUB_A);
+                    break;
+                }
+                case CP_A_R8:
+                case CP_A_N8:
+                    code.op(ALOAD_1);
+                    loadOperand(code, o, r0, immediate);
+                    code.op(ICONST_1).op(ICONST_0).op(ICONST_0).op(INVOKEVIRTUAL).u2(ADD_SUB_A);
+                    break;
+                case AND_A_R8: case AND_A_N8: case OR_A_R8: case OR_A_N8: case XOR_A_R8: case XOR_A_N8: {
+                    int op = o.family == Opcode.Family.AND_A_R8 || o.family == Opcode.Family.AND_A_N8
+                            ? Cpu.LAZY_AND
+                            : o.family == Opcode.Family.OR_A_R8 || o.family == Opcode.Family.OR_A_N8
+                                    ? Cpu.LAZY_OR
+                                    : Cpu.LAZY_XOR;
+                    code.op(ALOAD_1).pushInt(op);
+                    loadOperand(code, o, r0, immediate);
+                    code.op(INVOKEVIRTUAL).u2(LOGIC_A);
+                    break;
+                }
+                case INC_R8:
+                case DEC_R8:
+                    code.op(ALOAD_1);
+                    loadReg8(code, r3);
+                    code.op(o.family == Opcode.Family.DEC_R8 ? ICONST_1 : ICONST_0).op(INVOKEVIRTUAL).u2(INC_DEC)
+                            .op(ISTORE_2);
+                    storeReg8(code, r3);
+                    break;
+                case JP_HL:
+                    code.op(ALOAD_1).op(ALOAD_1).op(GETFIELD).u2(HL).op(PUTFIELD).u2(PC);
+                    return true;
+                case JP_N16:
+                    code.op(ALOAD_1).pushInt(immediate).op(PUTFIELD).u2(PC);
+                    return true;
+                case JR_E8:
+                    code.op(ALOAD_1).pushInt(relativeTarget(next, immediate)).op(PUTFIELD).u2(PC);
+                    return true;
+                case JP_CC_N16:
+                case JR_CC_E8: {
+                    int target = o.family == Opcode.Family.JP_CC_N16 ? immediate : relativeTarget(next, immediate);
+                    code.op(ALOAD_1).op(ALOAD_1).pushInt(cc).pushInt(target).pushInt(next).pushInt(o.additionalCycles)
+                            .op(INVOKEVIRTUAL).u2(CONDITIONAL_JUMP).op(PUTFIELD).u2(PC);
+                    return true;
+                }
+                default:
+                    //Instruction spécialisée de Cpu, qui lit son éventuelle valeur immédiate à son adresse
+                    if (encoding < Cpu.PREFIXED_ENCODINGS && o.totalBytes > 1)
+                        code.op(ALOAD_1).pushInt(address).op(PUTFIELD).u2(PC);
+                    code.op(GETSTATIC).u2(TABLE).pushInt(encoding).op(AALOAD).op(ALOAD_1)
+                            .op(INVOKEINTERFACE).u2(EXECUTE).u1(2).u1(0);
+                    break;
+            }
+            return false;
+        }
+
+        private static int relativeTarget(int next, int offset) {
+            return (next + (byte) offset) & 0xFFFF;
+        }
+
+        /**
+         * Empile l'opérande d'une opération de l'ALU sur A : sa valeur immédiate, ou le registre d'index donné
+         */
+        private static void loadOperand(Code code, Opcode o, int reg, int immediate) {
+            if (o.totalBytes == 2)
+                code.pushInt(immediate);
+            else
+                loadReg8(code, reg);
+        }
+
+        /**
+         * Empile la valeur du registre 8 bits d'index donné
+         */
+        private static void loadReg8(Code code, int reg) {
+            code.op(ALOAD_1).op(GETFIELD).u2(REG8_FIELDS[reg]);
+            if (reg != REG_A) {
+                if (reg % 2 == 0)
+                    code.pushInt(Byte.SIZE).op(IUSHR);
+                else
+                    code.pushInt(0xFF).op(IAND);
+            }
+        }
+
+        /**
+         * Stocke dans le registre 8 bits d'index donné la valeur de la variable locale 2
+         */
+        private static void storeReg8(Code code, int reg) {
+            int field = REG8_FIELDS[reg];
+            if (reg == REG_A)
+                code.op(ALOAD_1).op(ILOAD_2);
+            else if (reg % 2 == 0)
+                code.op(ALOAD_1).op(ILOAD_2).pushInt(Byte.SIZE).op(ISHL)
+                        .op(ALOAD_1).op(GETFIELD).u2(field).pushInt(0xFF).op(IAND).op(IOR);
+            else
+                code.op(ALOAD_1).op(ALOAD_1).op(GETFIELD).u2(field).pushInt(0xFF00).op(IAND).op(ILOAD_2).op(IOR);
+            code.op(PUTFIELD).u2(field);
+        }
+
+        /**
+         * Suite d'instructions JVM
+         */
+        private static final class Code {
+            private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+            Code op(int opcode) {
+                return u1(opcode);
+            }
+
+            Code u1(int value) {
+                bytes.write(value);
+                return this;
+            }
+
+            Code u2(int value) {
+                bytes.write(value >>> 8);
+                bytes.write(value);
+                return this;
+            }
+
+            /**
+             * Empile la constante entière donnée, qui est au plus une valeur 16 bits
+             */
+            Code pushInt(int value) {
+                if (value == (byte) value)
+                    return op(BIPUSH).u1(value);
+                if (value == (short) value)
+                    return op(SIPUSH).u2(value);
+                return pushInt(value >>> Byte.SIZE).pushInt(Byte.SIZE).op(ISHL).pushInt(value & 0xFF).op(IOR);
+            }
+
+            byte[] toByteArray() {
+                return bytes.toByteArray();
+            }
+        }
+    }
+
+    /**
+     * Réservoir de constantes d'un fichier de classe, dont chaque constante n'est ajoutée qu'une fois
+     */
+    private static final class ConstantPool {
+        private static final int TAG_UTF8 = 1, TAG_CLASS = 7, TAG_FIELDREF = 9, TAG_METHODREF = 10;
+        private static final int TAG_INTERFACE_METHODREF = 11, TAG_NAME_AND_TYPE = 12;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> indices = new HashMap<>();
+        private int count = 1;
+
+        int utf8(String s) {
+            String key = "U" + s;
+            Integer index = indices.get(key);
+            if (index != null)
+                return index;
+
+            try {
+                out.writeByte(TAG_UTF8);
+                out.writeUTF(s);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            indices.put(key, count);
+            return count++;
+        }
+
+        int classRef(String name) {
+            return entry("C" + name, TAG_CLASS, utf8(name), -1);
+        }
+
+        int fieldRef(String owner, String name, String descriptor) {
+            return memberRef(TAG_FIELDREF, owner, name, descriptor);
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            return memberRef(TAG_METHODREF, owner, name, descriptor);
+        }
+
+        int interfaceMethodRef(String owner, String name, String descriptor) {
+            return memberRef(TAG_INTERFACE_METHODREF, owner, name, descriptor);
+        }
+
+        /**
+         * @return nombre de constantes plus un, tel qu'écrit dans le fichier de classe
+         */
+        int count() {
+            return count;
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+
+        private int memberRef(int tag, String owner, String name, String descriptor) {
+            int classIndex = classRef(owner);
+            int nameAndType = entry("N" + name + ":" + descriptor, TAG_NAME_AND_TYPE, utf8(name), utf8(descriptor));
+            return entry("M" + tag + owner + "." + name + ":" + descriptor, tag, classIndex, nameAndType);
+        }
+
+        /**
+         * Ajoute une constante formée de son étiquette et d'un ou deux index d'autres constantes (second < 0 s'il
+         * n'y en a qu'un)
+         */
+        private int entry(String key, int tag, int first, int second) {
+            Integer index = indices.get(key);
+            if (index != null)
+                return index;
+
+            bytes.write(tag);
+            bytes.write(first >>> 8);
+            bytes.write(first);
+            if (second >= 0) {
+                bytes.write(second >>> 8);
+                bytes.write(second);
+            }
+            indices.put(key, count);
+            return count++;
+        }
+    }
+}
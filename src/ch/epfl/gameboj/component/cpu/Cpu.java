@@ -2,13 +2,21 @@ package ch.epfl.gameboj.component.cpu;
 
 import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Register;
-import ch.epfl.gameboj.RegisterFile;
 import ch.epfl.gameboj.bits.Bit;
+import ch.epfl.gameboj.component.BankedMemory;
 import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.Rom;
+
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
 
 import static ch.epfl.gameboj.AddressMap.*;
+import static ch.epfl.gameboj.Preconditions.checkArgument;
 import static ch.epfl.gameboj.Preconditions.checkBits16;
 import static ch.epfl.gameboj.Preconditions.checkBits8;
 import static ch.epfl.gameboj.bits.Bits.*;
@@ -23,9 +31,9 @@ import static java.lang.Integer.numberOfLeadingZeros;
  * @author Armen Homberger (154511)
  * @author Justin Deschenaux (288424)
  */
-public final class Cpu implements Component, Clocked {
+public final class Cpu implements Component, Clocked, Stateful {
 
-    private final int PREFIX = 0xCB;
+    static final int PREFIX = 0xCB;
 
     private enum FlagSrc {
         V0, V1, ALU, CPU
@@ -67,7 +75,8 @@ public final class Cpu implements Component, Clocked {
     private int programCounter, stackPointer;
     private boolean interruptMasterEnable;
     private int interruptEnable, interruptFlags;
-    private final RegisterFile<Register> regFile;
+    //Registres 8 bits A et F, et paires BC, DE et HL stockées chacune dans un entier (octet de poids fort en premier)
+    private int regA, regF, regBC, regDE, regHL;
     private long nextNonIdleCycle;
 
     private static final Opcode[] DIRECT_OPCODE_TABLE = buildOpcodeTable(Opcode.Kind.DIRECT);
@@ -75,21 +84,85 @@ public final class Cpu implements Component, Clocked {
     private static final Reg[] REGISTERS_8 = {Reg.B, Reg.C, Reg.D, Reg.E, Reg.H, Reg.L, null, Reg.A};
     private static final Reg16[] REGISTERS_16 = {Reg16.BC, Reg16.DE, Reg16.HL, Reg16.AF};
 
+    //Table des 512 encodages (directs, puis préfixés à partir de PREFIXED_ENCODINGS) et de leurs instructions
+    static final int PREFIXED_ENCODINGS = 0x100;
+    static final Opcode[] OPCODE_TABLE = buildFullOpcodeTable();
+    private static final Instruction[] INSTRUCTION_TABLE = buildInstructionTable();
+
+    /**
+     * Instruction spécialisée pour un encodage donné : ses opérandes (registres, condition, bit, etc.) sont extraits
+     * de l'encodage une fois pour toutes lors de la construction de la table
+     */
+    @FunctionalInterface
+    private interface Instruction {
+        /**
+         * Exécute l'instruction sur le processeur donné, dont nextProgramCounter contient l'adresse de l'instruction
+         * suivante et nextNonIdleCycle inclut déjà la durée de base de l'instruction
+         *
+         * @param cpu processeur exécutant l'instruction
+         */
+        void execute(Cpu cpu);
+    }
+
+    private int nextProgramCounter;
+    private boolean referenceDispatch;
+
+    //Cache des instructions décodées (null s'il est désactivé), et valeur immédiate de l'instruction en cours
+    //d'exécution lorsqu'elle provient du cache
+    private DecodeCache decodeCache;
+    private boolean immediateDecoded;
+    private int decodedImmediate;
+
+    //Dernière opération de l'ALU dont le calcul des fanions a été différé (LAZY_NONE si le registre F est à jour),
+    //avec ses opérandes et son résultat
+    static final int LAZY_NONE = 0, LAZY_ADD = 1, LAZY_SUB = 2, LAZY_AND = 3, LAZY_OR = 4, LAZY_XOR = 5,
+            LAZY_INC = 6, LAZY_DEC = 7;
+    private int lazyOp, lazyLeft, lazyRight, lazyResult;
+    private boolean lazyCarry;
+
+    //Accès directs à la rom de la cartouche (par banque de 16 Kio) et à la mémoire de travail, null s'ils sont
+    //désactivés. Les accès à la rom commencent à directRomStart, la mémoire de démarrage pouvant masquer son début
+    private Rom cartridgeRom;
+    private BankedMemory romBanks;
+    private Ram workRam;
+    private final int[] romBankBases = new int[2];
+    private int directRomStart;
+
+    //Recompilateur des blocs de la ROM (null s'il est désactivé) et cycle avant lequel un bloc doit se terminer
+    private BlockCompiler blockCompiler;
+    private long cycleHorizon;
+
+    //Détection des boucles d'attente : état du processeur lors du dernier saut arrière (à l'adresse loopPc, au cycle
+    //loopCycle), lectures de registres d'entrée/sortie effectuées depuis (MAX_LOOP_READS + 1 si l'une d'elles
+    //n'est pas stable) et présence d'une écriture depuis. idleLoopPeriod est la durée de la dernière itération si
+    //elle s'est avérée répétable, 0 sinon, et idleReads ses lectures. loopReadsCounters et idleReadsCounters
+    //indiquent si ces lectures incluent DIV ou TIMA, qui changent sans que le processeur ne fasse rien
+    private static final int MAX_LOOP_READS = 4;
+    private static final int LOOP_STATE_SIZE = 12;
+    private int loopPc = -1;
+    private long loopCycle;
+    private int[] loopState = new int[LOOP_STATE_SIZE], currentState = new int[LOOP_STATE_SIZE];
+    private final int[] loopReads = new int[MAX_LOOP_READS], idleReads = new int[MAX_LOOP_READS];
+    private int loopReadCount, idleReadCount;
+    private boolean loopWritten, loopReadsCounters, idleReadsCounters;
+    private long idleLoopPeriod;
+
 
     public Cpu() {
-        regFile = new RegisterFile<>(Reg.values());
         highRam = new Ram(HIGH_RAM_SIZE);
     }
 
 
     /**
-     * méthode permettant de stocker la référence au bus passé
+     * méthode permettant de stocker la référence au bus passé, et d'y attacher le processeur pour le registre IF et
+     * la plage allant de la mémoire haute au registre IE
      *
      * @param bus : référence du bus à stocker
      */
     public void attachTo(Bus bus) {
         this.bus = bus;
-        bus.attach(this);
+        bus.attach(this, REG_IF, REG_IF + 1);
+        bus.attach(this, HIGH_RAM_START, REG_IE + 1);
     }
 
 
@@ -129,6 +202,7 @@ public final class Cpu implements Component, Clocked {
         else if (address == REG_IF) interruptFlags = data;
         else if (address >= HIGH_RAM_START && address < HIGH_RAM_END) {
             highRam.write(address - HIGH_RAM_START, data);
+            if (decodeCache != null) decodeCache.invalidate(address);
         }
 
     }
@@ -151,6 +225,264 @@ public final class Cpu implements Component, Clocked {
         return resultOpcodeArray;
     }
 
+    /**
+     * Crée la table des 512 opcodes, indexée par l'encodage (augmenté de PREFIXED_ENCODINGS pour les opcodes préfixés)
+     *
+     * @return table des opcodes
+     */
+    private static Opcode[] buildFullOpcodeTable() {
+        Opcode[] table = new Opcode[2 * PREFIXED_ENCODINGS];
+        System.arraycopy(DIRECT_OPCODE_TABLE, 0, table, 0, PREFIXED_ENCODINGS);
+        System.arraycopy(PREFIXED_OPCODE_TABLE, 0, table, PREFIXED_ENCODINGS, PREFIXED_ENCODINGS);
+        return table;
+    }
+
+    /**
+     * Crée la table des instructions spécialisées, parallèle à OPCODE_TABLE
+     *
+     * @return table des instructions, dont les entrées des encodages inutilisés sont nulles
+     */
+    private static Instruction[] buildInstructionTable() {
+        Instruction[] table = new Instruction[OPCODE_TABLE.length];
+        for (int i = 0; i < table.length; i++) {
+            if (OPCODE_TABLE[i] != null)
+                table[i] = instructionOf(OPCODE_TABLE[i]);
+        }
+        return table;
+    }
+
+    /**
+     * Choisit l'exécution des instructions par le switch sur la famille de l'opcode (implémentation de référence,
+     * utilisée pour vérifier l'équivalence et comparer les performances) plutôt que par la table des instructions
+     *
+     * @param referenceDispatch vrai pour utiliser le switch sur la famille
+     */
+    void setReferenceDispatch(boolean referenceDispatch) {
+        this.referenceDispatch = referenceDispatch;
+    }
+
+    /**
+     * Donne au processeur un accès direct, sans passer par le bus, à la rom de la cartouche, à la mémoire de travail
+     * (et à son écho) et à la mémoire haute. Les banques de la rom ne pouvant être changées que par une écriture du
+     * processeur dans la rom ou dans le registre de désactivation de la mémoire de démarrage, elles sont relues après
+     * chacune de ces écritures. Le processeur doit être le seul composant à écrire dans la mémoire de travail
+     *
+     * @param cartridgeRom rom de la cartouche
+     * @param romBanks     mémoire donnant la banque de la rom visible à chaque adresse
+     * @param workRam      mémoire de travail, de taille WORK_RAM_SIZE
+     * @throws NullPointerException     si l'un des arguments est nul
+     * @throws IllegalArgumentException si la taille de la mémoire de travail est invalide
+     */
+    public void attachDirectMemory(Rom cartridgeRom, BankedMemory romBanks, Ram workRam) {
+        checkArgument(workRam.size() == WORK_RAM_SIZE);
+
+        this.cartridgeRom = Objects.requireNonNull(cartridgeRom);
+        this.romBanks = Objects.requireNonNull(romBanks);
+        this.workRam = workRam;
+        updateRomBanks();
+    }
+
+    /**
+     * Relit les banques de la rom visibles, après une écriture pouvant les avoir changées
+     */
+    private void updateRomBanks() {
+        directRomStart = romBanks.bankOf(BOOT_ROM_START) < 0 ? BOOT_ROM_END : BOOT_ROM_START;
+        romBankBases[0] = romBanks.bankOf(BOOT_ROM_END) << 14;
+        romBankBases[1] = romBanks.bankOf(CARTRIDGE_ROM_END / 2) << 14;
+    }
+
+    /**
+     * Active le cache des instructions décodées de la ROM, de la mémoire de travail et de la mémoire haute. Celles de
+     * la mémoire de travail sont invalidées lors des écritures du processeur, qui doit donc être le seul composant à
+     * y écrire
+     *
+     * @param romBanks mémoire donnant la banque de la ROM visible à chaque adresse
+     * @throws NullPointerException  si la mémoire donnée est nulle
+     * @throws IllegalStateException si le processeur n'est pas attaché à un bus
+     */
+    public void enableDecodeCache(BankedMemory romBanks) {
+        if (bus == null)
+            throw new IllegalStateException();
+        decodeCache = new DecodeCache(OPCODE_TABLE, romBanks, bus);
+    }
+
+    /**
+     * Active le recompilateur dynamique, qui traduit les blocs de la ROM fréquemment exécutés en classes JVM. Un bloc
+     * n'est exécuté que s'il se termine au plus tard au cycle donné par setCycleHorizon, les autres composants
+     * n'ayant alors rien à faire durant son exécution
+     *
+     * @param codeBanks mémoire donnant la banque de la ROM visible à chaque adresse
+     * @throws NullPointerException  si la mémoire donnée est nulle
+     * @throws IllegalStateException si le processeur n'est pas attaché à un bus
+     */
+    public void enableRecompiler(BankedMemory codeBanks) {
+        if (bus == null)
+            throw new IllegalStateException();
+        blockCompiler = new BlockCompiler(MethodHandles.lookup(), codeBanks, bus);
+    }
+
+    /**
+     * Fixe le premier cycle durant lequel un autre composant que le processeur a quelque chose à faire, et avant
+     * lequel un bloc compilé doit donc s'être terminé
+     *
+     * @param cycleHorizon premier cycle non-oisif des autres composants
+     */
+    public void setCycleHorizon(long cycleHorizon) {
+        this.cycleHorizon = cycleHorizon;
+    }
+
+    /**
+     * Fixe la valeur des registres du processeur, par exemple pour reproduire l'état laissé par la mémoire de
+     * démarrage sans l'exécuter
+     *
+     * @param pc valeur 16 bits du compteur de programme
+     * @param sp valeur 16 bits du pointeur de pile
+     * @param af valeur 16 bits de la paire AF (les 4 bits de poids faible sont ignorés)
+     * @param bc valeur 16 bits de la paire BC
+     * @param de valeur 16 bits de la paire DE
+     * @param hl valeur 16 bits de la paire HL
+     * @throws IllegalArgumentException si l'une des valeurs n'est pas une valeur 16 bits
+     */
+    public void setRegisters(int pc, int sp, int af, int bc, int de, int hl) {
+        programCounter = checkBits16(pc);
+        stackPointer = checkBits16(sp);
+        setReg16(Reg16.AF, af);
+        setReg16(Reg16.BC, bc);
+        setReg16(Reg16.DE, de);
+        setReg16(Reg16.HL, hl);
+    }
+
+    /**
+     * Taille de l'état du processeur : registres, registres d'interruption, prochain cycle non-oisif et mémoire haute
+     *
+     * @return taille de l'état du processeur
+     */
+    @Override
+    public int stateSize() {
+        return 10 * Integer.BYTES + Long.BYTES + highRam.stateSize();
+    }
+
+    /**
+     * Ecrit l'état du processeur, après avoir calculé les fanions éventuellement différés
+     *
+     * @param buffer : tampon de destination
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.putInt(programCounter).putInt(stackPointer);
+        buffer.putInt(regA).putInt(flags()).putInt(regBC).putInt(regDE).putInt(regHL);
+        buffer.putInt(interruptMasterEnable ? 1 : 0).putInt(interruptEnable).putInt(interruptFlags);
+        buffer.putLong(nextNonIdleCycle);
+        highRam.saveState(buffer);
+    }
+
+    /**
+     * Restaure l'état du processeur. Les instructions décodées de la mémoire de travail et de la mémoire haute sont
+     * oubliées, les banques de la rom relues (le contrôleur de la cartouche devant donc avoir été restauré
+     * auparavant) et la détection des boucles d'attente recommence à zéro
+     *
+     * @param buffer : tampon source
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        programCounter = buffer.getInt();
+        stackPointer = buffer.getInt();
+        regA = buffer.getInt();
+        setFlagsRegister(buffer.getInt());
+        regBC = buffer.getInt();
+        regDE = buffer.getInt();
+        regHL = buffer.getInt();
+        interruptMasterEnable = buffer.getInt() != 0;
+        interruptEnable = buffer.getInt();
+        interruptFlags = buffer.getInt();
+        nextNonIdleCycle = buffer.getLong();
+        highRam.loadState(buffer);
+        stateReplaced();
+    }
+
+    /**
+     * Reprend l'état du processeur donné, dont la mémoire haute partage ses pages avec celle de ce processeur. Comme
+     * pour loadState, les instructions décodées de la mémoire vive sont oubliées et les banques de la rom relues
+     *
+     * @param source : processeur dont l'état est repris
+     */
+    @Override
+    public void copyStateFrom(Stateful source) {
+        Cpu that = (Cpu) source;
+        programCounter = that.programCounter;
+        stackPointer = that.stackPointer;
+        regA = that.regA;
+        setFlagsRegister(that.flags());
+        regBC = that.regBC;
+        regDE = that.regDE;
+        regHL = that.regHL;
+        interruptMasterEnable = that.interruptMasterEnable;
+        interruptEnable = that.interruptEnable;
+        interruptFlags = that.interruptFlags;
+        nextNonIdleCycle = that.nextNonIdleCycle;
+        highRam.copyStateFrom(that.highRam);
+        stateReplaced();
+    }
+
+    /**
+     * Oublie les informations déduites de l'état précédent du processeur, après son remplacement
+     */
+    private void stateReplaced() {
+        immediateDecoded = false;
+        if (decodeCache != null)
+            decodeCache.invalidateRam();
+        if (cartridgeRom != null)
+            updateRomBanks();
+        loopPc = -1;
+        loopReadCount = 0;
+        loopReadsCounters = false;
+        idleLoopPeriod = 0;
+    }
+
+    /**
+     * Indique si la dernière itération de la boucle exécutée par le processeur s'est achevée dans l'état où elle a
+     * commencé, sans écrire en mémoire et en ne lisant que des registres qui ne changent que lorsque les autres
+     * composants agissent (registres du contrôleur d'écran, registre IF, etc.) ou, pour DIV et TIMA, à des cycles
+     * prévisibles : tant que ces registres ne changent pas, les itérations suivantes sont identiques et peuvent être
+     * sautées par skipIdleLoop
+     *
+     * @return vrai ssi le processeur exécute une boucle d'attente
+     */
+    public boolean isIdleLooping() {
+        return idleLoopPeriod != 0;
+    }
+
+    /**
+     * Saute les itérations de la boucle d'attente détectée qui se terminent au plus tard au cycle donné, en avançant
+     * le prochain cycle non-oisif du processeur comme si elles avaient été exécutées. Rien n'est sauté si l'un des
+     * registres lus par la boucle a changé depuis la dernière itération ou si une interruption est sur le point
+     * d'être gérée
+     *
+     * @param cycleHorizon   premier cycle non-oisif des autres composants, avant lequel les registres lus par la
+     *                       boucle ne peuvent pas changer
+     * @param counterHorizon premier cycle à la fin duquel DIV ou TIMA change (voir Timer.nextCounterChange), pris
+     *                       en compte si la boucle lit l'un d'eux
+     * @return nombre de cycles sautés
+     */
+    public long skipIdleLoop(long cycleHorizon, long counterHorizon) {
+        long period = idleLoopPeriod;
+        idleLoopPeriod = 0;
+        if (period == 0 || (interruptMasterEnable && interruptState() != 0))
+            return 0;
+
+        for (int i = 0; i < idleReadCount; ++i) {
+            if (bus.read(idleReads[i] >>> Byte.SIZE) != clip(8, idleReads[i]))
+                return 0;
+        }
+
+        long horizon = idleReadsCounters ? Math.min(cycleHorizon, counterHorizon) : cycleHorizon;
+        long iterations = (horizon - nextNonIdleCycle) / period;
+        if (iterations <= 0)
+            return 0;
+        nextNonIdleCycle += iterations * period;
+        return iterations * period;
+    }
+
     /**
      * méthode de facilitation de tests
      *
@@ -161,14 +493,14 @@ public final class Cpu implements Component, Clocked {
         int[] tab = new int[10];
         tab[0] = programCounter;
         tab[1] = stackPointer;
-        tab[2] = regFile.get(Reg.A);
-        tab[3] = regFile.get(Reg.F);
-        tab[4] = regFile.get(Reg.B);
-        tab[5] = regFile.get(Reg.C);
-        tab[6] = regFile.get(Reg.D);
-        tab[7] = regFile.get(Reg.E);
-        tab[8] = regFile.get(Reg.H);
-        tab[9] = regFile.get(Reg.L);
+        tab[2] = regA;
+        tab[3] = flags();
+        tab[4] = reg8(Reg.B);
+        tab[5] = reg8(Reg.C);
+        tab[6] = reg8(Reg.D);
+        tab[7] = reg8(Reg.E);
+        tab[8] = reg8(Reg.H);
+        tab[9] = reg8(Reg.L);
         return tab;
     }
 
@@ -202,6 +534,32 @@ public final class Cpu implements Component, Clocked {
 
     }
 
+    /**
+     * retourne le prochain cycle durant lequel le processeur exécute une instruction ou gère une interruption
+     *
+     * @param cycle : cycle courant
+     * @return le cycle courant si le processeur est à l'arrêt et qu'une interruption est en attente, Long.MAX_VALUE
+     * s'il est à l'arrêt sans interruption en attente, et le cycle de sa prochaine instruction sinon
+     */
+    @Override
+    public long nextNonIdleCycle(long cycle) {
+
+        if (nextNonIdleCycle == Long.MAX_VALUE)
+            return interruptState() != 0 ? cycle : Long.MAX_VALUE;
+
+        return Math.max(cycle, nextNonIdleCycle);
+    }
+
+    /**
+     * Indique si le processeur est arrêté par l'instruction HALT sans qu'aucune interruption activée ne soit en
+     * attente, auquel cas il ne peut reprendre son exécution qu'après la levée d'une telle interruption
+     *
+     * @return vrai ssi le processeur est à l'arrêt et ne fera rien tant qu'aucune interruption n'est levée
+     */
+    public boolean isHalted() {
+        return nextNonIdleCycle == Long.MAX_VALUE && interruptState() == 0;
+    }
+
     /**
      * vérifie si les interruptions sont activées et si une interruption est en attente, sinon exécute normalement la prochaine instruction
      */
@@ -218,18 +576,154 @@ public final class Cpu implements Component, Clocked {
             nextNonIdleCycle += 5;
 
         } else {
-            dispatch(read8(programCounter));
+            int pc = programCounter;
+            if (!runCompiledBlock()) {
+                int entry = decodeCache == null || referenceDispatch
+                        ? DecodeCache.UNCACHED
+                        : decodeCache.entryAt(programCounter);
+                if (entry == DecodeCache.UNCACHED)
+                    dispatch(read8(programCounter));
+                else
+                    dispatchDecoded(entry);
+            }
+            if (programCounter <= pc)
+                checkIdleLoop();
+        }
+    }
+
+    /**
+     * Appelée après chaque saut arrière : détermine si l'itération de boucle qui vient de s'achever (depuis le saut
+     * arrière précédent) est répétable, puis mémorise l'état du processeur au début de la suivante
+     */
+    private void checkIdleLoop() {
+        saveLoopState(currentState);
+
+        boolean idle = programCounter == loopPc && !loopWritten && loopReadCount <= MAX_LOOP_READS
+                && nextNonIdleCycle != Long.MAX_VALUE && Arrays.equals(loopState, currentState);
+        if (idle) {
+            System.arraycopy(loopReads, 0, idleReads, 0, loopReadCount);
+            idleReadCount = loopReadCount;
+            idleReadsCounters = loopReadsCounters;
+            idleLoopPeriod = nextNonIdleCycle - loopCycle;
+        } else {
+            idleLoopPeriod = 0;
+        }
+
+        int[] previousState = loopState;
+        loopState = currentState;
+        currentState = previousState;
+        loopPc = programCounter;
+        loopCycle = nextNonIdleCycle;
+        loopReadCount = 0;
+        loopReadsCounters = false;
+        loopWritten = false;
+    }
+
+    /**
+     * Copie dans le tableau donné l'état du processeur dont dépend l'exécution d'une boucle : registres (y compris
+     * l'opération dont le calcul des fanions est différé) et activation des interruptions
+     *
+     * @param state tableau de LOOP_STATE_SIZE éléments
+     */
+    private void saveLoopState(int[] state) {
+        state[0] = stackPointer;
+        state[1] = regA;
+        state[2] = regF;
+        state[3] = regBC;
+        state[4] = regDE;
+        state[5] = regHL;
+        state[6] = lazyOp;
+        state[7] = lazyLeft;
+        state[8] = lazyRight;
+        state[9] = lazyResult;
+        state[10] = lazyCarry ? 1 : 0;
+        state[11] = interruptMasterEnable ? 1 : 0;
+    }
+
+    /**
+     * Mémorise une lecture faite par le processeur dans un registre d'entrée/sortie, afin de savoir si l'itération de
+     * boucle en cours peut être répétée sans changement. Les lectures du joypad et du port série, dont les valeurs
+     * changent sans que leur composant n'agisse, empêchent toute répétition. Celles de DIV et TIMA sont notées, leurs
+     * changements devant limiter les itérations sautées
+     *
+     * @param address adresse du registre lu
+     * @param value   valeur lue
+     */
+    private void recordLoopRead(int address, int value) {
+        if (address < REG_DIV || loopReadCount >= MAX_LOOP_READS) {
+            loopReadCount = MAX_LOOP_READS + 1;
+        } else {
+            loopReads[loopReadCount++] = address << Byte.SIZE | value;
+            if (address == REG_DIV || address == REG_TIMA)
+                loopReadsCounters = true;
         }
     }
 
+    /**
+     * Exécute le bloc compilé commençant au compteur de programme, s'il existe et se termine avant l'horizon
+     *
+     * @return vrai ssi un bloc a été exécuté
+     */
+    private boolean runCompiledBlock() {
+        if (blockCompiler == null || programCounter >= CARTRIDGE_ROM_END)
+            return false;
+
+        BlockCompiler.Block block = blockCompiler.blockAt(programCounter);
+        if (block == null || nextNonIdleCycle + block.maxCycles > cycleHorizon)
+            return false;
+
+        block.run(this);
+        return true;
+    }
+
 
     /**
-     * exécute l'instruction correspondant à la famille Opcode reçu en argument
+     * exécute l'instruction correspondant à l'opcode reçu en argument, au moyen de la table des instructions
      *
      * @param opcode : opcode donné
      */
     private void dispatch(int opcode) {
 
+        if (referenceDispatch) {
+            dispatchFamily(opcode);
+            return;
+        }
+
+        int encoding = (opcode == PREFIX) ? PREFIXED_ENCODINGS | read8AfterOpcode() : opcode;
+        Opcode o = OPCODE_TABLE[encoding];
+
+        nextProgramCounter = clip(16, o.totalBytes + programCounter);
+        nextNonIdleCycle += o.cycles;
+        INSTRUCTION_TABLE[encoding].execute(this);
+        programCounter = nextProgramCounter;
+    }
+
+    /**
+     * exécute l'instruction décodée donnée, provenant du cache, sans relire son opcode ni sa valeur immédiate
+     *
+     * @param entry : entrée du cache (encodage et valeur immédiate)
+     */
+    private void dispatchDecoded(int entry) {
+
+        int encoding = entry >>> 16;
+        Opcode o = OPCODE_TABLE[encoding];
+
+        nextProgramCounter = clip(16, o.totalBytes + programCounter);
+        nextNonIdleCycle += o.cycles;
+        decodedImmediate = clip(16, entry);
+        immediateDecoded = true;
+        INSTRUCTION_TABLE[encoding].execute(this);
+        immediateDecoded = false;
+        programCounter = nextProgramCounter;
+    }
+
+    /**
+     * exécute l'instruction correspondant à la famille Opcode reçu en argument
+     *
+     * @param opcode : opcode donné
+     */
+    private void dispatchFamily(int opcode) {
+
         Opcode o;
 
         o = (opcode == PREFIX) ? PREFIXED_OPCODE_TABLE[read8AfterOpcode()] : DIRECT_OPCODE_TABLE[opcode];
@@ -250,14 +744,14 @@ public final class Cpu implements Component, Clocked {
             case LD_R8_HLR: {
                 reg = extractReg(o, 3);
                 value = read8AtHl();
-                regFile.set(reg, value);
+                setReg8(reg, value);
             }
             break;
 
             case LD_A_HLRU: {
                 reg = Reg.A;
                 value = read8AtHl();
-                regFile.set(reg, value);
+                setReg8(reg, value);
                 incrementHl(extractHlIncrement(o));
             }
             break;
@@ -265,42 +759,42 @@ public final class Cpu implements Component, Clocked {
             case LD_A_N8R: {
                 reg = Reg.A;
                 value = read8(REGS_START + read8AfterOpcode());
-                regFile.set(reg, value);
+                setReg8(reg, value);
             }
             break;
 
             case LD_A_CR: {
                 reg = Reg.A;
-                value = read8(REGS_START + regFile.get(Reg.C));
-                regFile.set(reg, value);
+                value = read8(REGS_START + reg8(Reg.C));
+                setReg8(reg, value);
             }
             break;
 
             case LD_A_N16R: {
                 reg = Reg.A;
                 value = read8(read16AfterOpcode());
-                regFile.set(reg, value);
+                setReg8(reg, value);
             }
             break;
 
             case LD_A_BCR: {
                 reg = Reg.A;
                 value = read8(reg16(Reg16.BC));
-                regFile.set(reg, value);
+                setReg8(reg, value);
             }
             break;
 
             case LD_A_DER: {
                 reg = Reg.A;
                 value = read8(reg16(Reg16.DE));
-                regFile.set(reg, value);
+                setReg8(reg, value);
             }
             break;
 
             case LD_R8_N8: {
                 reg = extractReg(o, 3);
                 value = read8AfterOpcode();
-                regFile.set(reg, value);
+                setReg8(reg, value);
             }
             break;
 
@@ -319,14 +813,14 @@ public final class Cpu implements Component, Clocked {
 
             case LD_HLR_R8: {
                 reg = extractReg(o, 0);
-                value = regFile.get(reg);
+                value = reg8(reg);
                 write8AtHl(value);
             }
             break;
 
             case LD_HLRU_A: {
                 reg = Reg.A;
-                value = regFile.get(reg);
+                value = reg8(reg);
                 write8AtHl(value);
                 incrementHl(extractHlIncrement(o));
             }
@@ -334,33 +828,33 @@ public final class Cpu implements Component, Clocked {
 
             case LD_N8R_A: {
                 reg = Reg.A;
-                value = regFile.get(reg);
+                value = reg8(reg);
                 write8(REGS_START + read8AfterOpcode(), value);
             }
             break;
 
             case LD_CR_A: {
                 reg = Reg.A;
-                value = regFile.get(reg);
-                write8(REGS_START + regFile.get(Reg.C), value);
+                value = reg8(reg);
+                write8(REGS_START + reg8(Reg.C), value);
             }
             break;
 
             case LD_N16R_A: {
                 reg = Reg.A;
-                value = regFile.get(reg);
+                value = reg8(reg);
                 write8(read16AfterOpcode(), value);
             }
             break;
 
             case LD_BCR_A: {
-                write8(reg16(Reg16.BC), regFile.get(Reg.A));
+                write8(reg16(Reg16.BC), regA);
             }
             break;
 
             case LD_DER_A: {
                 reg = Reg.A;
-                value = regFile.get(reg);
+                value = reg8(reg);
                 write8(reg16(Reg16.DE), value);
             }
             break;
@@ -380,12 +874,12 @@ public final class Cpu implements Component, Clocked {
                 Reg regToCopy = extractReg(o, 0);
 
                 if (reg != regToCopy)
-                    regFile.set(reg, regFile.get(regToCopy));
+                    setReg8(reg, reg8(regToCopy));
             }
             break;
 
             case LD_SP_HL: {
-                stackPointer = reg16(Reg16.HL);
+                stackPointer = regHL;
             }
             break;
 
@@ -398,7 +892,7 @@ public final class Cpu implements Component, Clocked {
             case ADD_A_R8: {
                 reg = Reg.A;
                 Reg regToAdd = extractReg(o, 0);
-                value = add(regFile.get(reg), regFile.get(regToAdd), getCarry(o, 3));
+                value = add(reg8(reg), reg8(regToAdd), getCarry(o, 3));
 
 
                 setRegFlags(reg, value);
@@ -407,7 +901,7 @@ public final class Cpu implements Component, Clocked {
 
             case ADD_A_N8: {
                 reg = Reg.A;
-                value = add(regFile.get(reg), read8AfterOpcode(), getCarry(o, 3));
+                value = add(reg8(reg), read8AfterOpcode(), getCarry(o, 3));
 
                 setRegFlags(reg, value);
 
@@ -416,7 +910,7 @@ public final class Cpu implements Component, Clocked {
 
             case ADD_A_HLR: {
                 reg = Reg.A;
-                value = add(regFile.get(reg), read8AtHl(), getCarry(o, 3));
+                value = add(reg8(reg), read8AtHl(), getCarry(o, 3));
 
                 setRegFlags(reg, value);
             }
@@ -424,7 +918,7 @@ public final class Cpu implements Component, Clocked {
 
             case INC_R8: {
                 reg = extractReg(o, 3);
-                value = add(regFile.get(reg), 1);
+                value = add(reg8(reg), 1);
                 setRegFromAlu(reg, value);
                 combineAluFlags(value, FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU, FlagSrc.CPU);
             }
@@ -449,7 +943,7 @@ public final class Cpu implements Component, Clocked {
             case ADD_HL_R16SP: {
                 reg16 = extractReg16(o);
 
-                value = add16H(reg16SP(reg16), reg16(Reg16.HL));
+                value = add16H(reg16SP(reg16), regHL);
                 setReg16SP(Reg16.HL, unpackValue(value));
                 combineAluFlags(value, FlagSrc.CPU, FlagSrc.V0, FlagSrc.ALU, FlagSrc.ALU);
             }
@@ -475,7 +969,7 @@ public final class Cpu implements Component, Clocked {
                 reg = Reg.A;
                 Reg regToSub = extractReg(o, 0);
 
-                value = sub(regFile.get(reg), regFile.get(regToSub), getCarry(o, 3));
+                value = sub(reg8(reg), reg8(regToSub), getCarry(o, 3));
 
                 setRegFlags(reg, value);
             }
@@ -483,7 +977,7 @@ public final class Cpu implements Component, Clocked {
 
             case SUB_A_N8: {
                 reg = Reg.A;
-                value = sub(regFile.get(reg), read8AfterOpcode(), getCarry(o, 3));
+                value = sub(reg8(reg), read8AfterOpcode(), getCarry(o, 3));
 
                 setRegFlags(reg, value);
             }
@@ -491,7 +985,7 @@ public final class Cpu implements Component, Clocked {
 
             case SUB_A_HLR: {
                 reg = Reg.A;
-                value = sub(regFile.get(reg), read8AtHl(), getCarry(o, 3));
+                value = sub(reg8(reg), read8AtHl(), getCarry(o, 3));
 
                 setRegFlags(reg, value);
             }
@@ -502,7 +996,7 @@ public final class Cpu implements Component, Clocked {
                 reg = extractReg(o, 3);
 
 
-                value = sub(regFile.get(reg), 1);
+                value = sub(reg8(reg), 1);
                 setRegFromAlu(reg, value);
 
                 combineAluFlags(value, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU, FlagSrc.CPU);
@@ -519,7 +1013,7 @@ public final class Cpu implements Component, Clocked {
             case CP_A_R8: {
                 reg = Reg.A;
                 Reg regToSub = extractReg(o, 0);
-                value = sub(regFile.get(reg), regFile.get(regToSub));
+                value = sub(reg8(reg), reg8(regToSub));
 
                 setFlags(value);
             }
@@ -527,14 +1021,14 @@ public final class Cpu implements Component, Clocked {
 
             case CP_A_N8: {
                 reg = Reg.A;
-                value = sub(regFile.get(reg), read8AfterOpcode());
+                value = sub(reg8(reg), read8AfterOpcode());
                 setFlags(value);
             }
             break;
 
             case CP_A_HLR: {
                 reg = Reg.A;
-                value = sub(regFile.get(reg), read8AtHl());
+                value = sub(reg8(reg), read8AtHl());
 
                 setFlags(value);
             }
@@ -550,7 +1044,7 @@ public final class Cpu implements Component, Clocked {
 
             // And, or, xor, complement
             case AND_A_N8: {
-                value = and(regFile.get(Reg.A), read8AfterOpcode());
+                value = and(regA, read8AfterOpcode());
                 setRegFlags(Reg.A, value);
 
             }
@@ -558,58 +1052,58 @@ public final class Cpu implements Component, Clocked {
 
             case AND_A_R8: {
                 reg = extractReg(o, 0);
-                value = and(regFile.get(Reg.A), regFile.get(reg));
+                value = and(regA, reg8(reg));
                 setRegFlags(Reg.A, value);
             }
             break;
 
             case AND_A_HLR: {
-                value = and(regFile.get(Reg.A), read8AtHl());
+                value = and(regA, read8AtHl());
                 setRegFlags(Reg.A, value);
             }
             break;
 
             case OR_A_R8: {
                 reg = extractReg(o, 0);
-                value = or(regFile.get(Reg.A), regFile.get(reg));
+                value = or(regA, reg8(reg));
                 setRegFlags(Reg.A, value);
             }
             break;
 
             case OR_A_N8: {
-                value = or(regFile.get(Reg.A), read8AfterOpcode());
+                value = or(regA, read8AfterOpcode());
                 setRegFlags(Reg.A, value);
             }
             break;
 
             case OR_A_HLR: {
-                value = or(regFile.get(Reg.A), read8AtHl());
+                value = or(regA, read8AtHl());
                 setRegFlags(Reg.A, value);
             }
             break;
 
             case XOR_A_R8: {
                 reg = extractReg(o, 0);
-                value = xor(regFile.get(Reg.A), regFile.get(reg));
+                value = xor(regA, reg8(reg));
                 setRegFlags(Reg.A, value);
             }
             break;
 
             case XOR_A_N8: {
-                value = xor(regFile.get(Reg.A), read8AfterOpcode());
+                value = xor(regA, read8AfterOpcode());
                 setRegFlags(Reg.A, value);
             }
             break;
 
             case XOR_A_HLR: {
-                value = xor(regFile.get(Reg.A), read8AtHl());
+                value = xor(regA, read8AtHl());
                 setRegFlags(Reg.A, value);
             }
             break;
 
             case CPL: {
-                value = complement8(regFile.get(Reg.A));
-                regFile.set(Reg.A, value);
+                value = complement8(regA);
+                regA = value;
                 combineAluFlags(value, FlagSrc.CPU, FlagSrc.V1, FlagSrc.V1, FlagSrc.CPU);
             }
             break;
@@ -617,7 +1111,7 @@ public final class Cpu implements Component, Clocked {
             // Rotate, shift
             case ROTCA: {
                 reg = Reg.A;
-                value = rotate(rotdir(o), regFile.get(reg));
+                value = rotate(rotdir(o), reg8(reg));
                 setRegFromAlu(reg, value);
                 combineAluFlags(value, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
             }
@@ -625,7 +1119,7 @@ public final class Cpu implements Component, Clocked {
 
             case ROTA: {
                 reg = Reg.A;
-                value = rotate(rotdir(o), regFile.get(reg), test(regFile.get(Reg.F), 4));
+                value = rotate(rotdir(o), reg8(reg), test(flags(), 4));
                 setRegFromAlu(reg, value);
                 combineAluFlags(value, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
             }
@@ -633,7 +1127,7 @@ public final class Cpu implements Component, Clocked {
 
             case ROTC_R8: {
                 reg = extractReg(o, 0);
-                value = rotate(rotdir(o), regFile.get(reg));
+                value = rotate(rotdir(o), reg8(reg));
                 setRegFromAlu(reg, value);
                 combineAluFlags(value, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
             }
@@ -641,7 +1135,7 @@ public final class Cpu implements Component, Clocked {
 
             case ROT_R8: {
                 reg = extractReg(o, 0);
-                value = rotate(rotdir(o), regFile.get(reg), test(regFile.get(Reg.F), 4));
+                value = rotate(rotdir(o), reg8(reg), test(flags(), 4));
                 setRegFromAlu(reg, value);
                 combineAluFlags(value, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
             }
@@ -655,7 +1149,7 @@ public final class Cpu implements Component, Clocked {
             break;
 
             case ROT_HLR: {
-                value = rotate(rotdir(o), read8AtHl(), test(regFile.get(Reg.F), 4));
+                value = rotate(rotdir(o), read8AtHl(), test(flags(), 4));
                 write8AtHl(unpackValue(value));
                 combineAluFlags(value, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
             }
@@ -663,7 +1157,7 @@ public final class Cpu implements Component, Clocked {
 
             case SWAP_R8: {
                 reg = extractReg(o, 0);
-                value = swap(regFile.get(reg));
+                value = swap(reg8(reg));
                 setRegFromAlu(reg, value);
                 combineAluFlags(value, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0);
             }
@@ -678,7 +1172,7 @@ public final class Cpu implements Component, Clocked {
 
             case SLA_R8: {
                 reg = extractReg(o, 0);
-                value = shiftLeft(regFile.get(reg));
+                value = shiftLeft(reg8(reg));
                 setRegFromAlu(reg, value);
                 combineAluFlags(value, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
             }
@@ -686,7 +1180,7 @@ public final class Cpu implements Component, Clocked {
 
             case SRA_R8: {
                 reg = extractReg(o, 0);
-                value = shiftRightA(regFile.get(reg));
+                value = shiftRightA(reg8(reg));
                 setRegFromAlu(reg, value);
                 combineAluFlags(value, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
             }
@@ -694,7 +1188,7 @@ public final class Cpu implements Component, Clocked {
 
             case SRL_R8: {
                 reg = extractReg(o, 0);
-                value = shiftRightL(regFile.get(reg));
+                value = shiftRightL(reg8(reg));
                 setRegFromAlu(reg, value);
                 combineAluFlags(value, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
             }
@@ -723,7 +1217,7 @@ public final class Cpu implements Component, Clocked {
 
             // Bit test and set
             case BIT_U3_R8: {
-                int result = testBit(regFile.get(extractReg(o, 0)), extractIndexFromOpcode(o));
+                int result = testBit(reg8(extractReg(o, 0)), extractIndexFromOpcode(o));
                 combineAluFlags(result, FlagSrc.ALU, FlagSrc.ALU, FlagSrc.ALU, FlagSrc.CPU);
 
             }
@@ -742,13 +1236,13 @@ public final class Cpu implements Component, Clocked {
 
                 if (test(o.encoding, 6)) {
                     //TODO : correct this by using Bits.test
-                    int result = regFile.get(r) | mask(i);
-                    regFile.set(r, result);
+                    int result = reg8(r) | mask(i);
+                    setReg8(r, result);
                 } else {
                     //TODO : same here
-                    int result = regFile.get(r) & ~mask(i);
+                    int result = reg8(r) & ~mask(i);
 
-                    regFile.set(r, result);
+                    setReg8(r, result);
                 }
 
             }
@@ -772,8 +1266,8 @@ public final class Cpu implements Component, Clocked {
 
             // Misc. ALU
             case DAA: {
-                int FVesult = regFile.get(Reg.F);
-                int AValue = regFile.get(Reg.A);
+                int FVesult = flags();
+                int AValue = regA;
                 value = bcdAdjust(AValue, test(FVesult, Flag.N), test(FVesult, Flag.H), test(FVesult, Flag.C));
                 setRegFromAlu(Reg.A, value);
                 combineAluFlags(value, FlagSrc.ALU, FlagSrc.CPU, FlagSrc.V0, FlagSrc.ALU);
@@ -784,7 +1278,7 @@ public final class Cpu implements Component, Clocked {
             case SCCF: {
 
                 if (test(o.encoding, 3)) {
-                    value = complement8(regFile.get(Reg.F));
+                    value = complement8(flags());
                     combineAluFlags(value, FlagSrc.CPU, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
                 } else {
                     combineAluFlags(0, FlagSrc.CPU, FlagSrc.V0, FlagSrc.V0, FlagSrc.V1);
@@ -795,7 +1289,7 @@ public final class Cpu implements Component, Clocked {
 
             // Jumps
             case JP_HL: {
-                nextPC = reg16(Reg16.HL);
+                nextPC = regHL;
             }
             break;
 
@@ -895,6 +1389,343 @@ public final class Cpu implements Component, Clocked {
     }
 
 
+    /**
+     * Construit l'instruction spécialisée correspondant à l'opcode donné, dont les opérandes sont extraits de
+     * l'encodage une fois pour toutes. Chaque instruction a le même effet que le cas correspondant de dispatchFamily
+     *
+     * @param o opcode donné
+     * @return instruction spécialisée
+     */
+    private static Instruction instructionOf(Opcode o) {
+
+        Reg r3 = extractReg(o, 3), r0 = extractReg(o, 0);
+        Reg16 r16 = extractReg16(o);
+        int hlIncrement = extractHlIncrement(o);
+        boolean withCarry = test(o.encoding, 3);
+        RotDir dir = rotdir(o);
+        int index = extractIndexFromOpcode(o);
+        int cc = extract(o.encoding, 3, 2);
+        int additionalCycles = o.additionalCycles;
+
+        switch (o.family) {
+            case NOP:
+                return cpu -> {
+                };
+
+            // Load
+            case LD_R8_HLR:
+                return cpu -> cpu.setReg8(r3, cpu.read8AtHl());
+            case LD_A_HLRU:
+                return cpu -> {
+                    cpu.regA = cpu.read8AtHl();
+                    cpu.incrementHl(hlIncrement);
+                };
+            case LD_A_N8R:
+                return cpu -> cpu.regA = cpu.read8(REGS_START + cpu.read8AfterOpcode());
+            case LD_A_CR:
+                return cpu -> cpu.regA = cpu.read8(REGS_START + cpu.reg8(Reg.C));
+            case LD_A_N16R:
+                return cpu -> cpu.regA = cpu.read8(cpu.read16AfterOpcode());
+            case LD_A_BCR:
+                return cpu -> cpu.regA = cpu.read8(cpu.reg16(Reg16.BC));
+            case LD_A_DER:
+                return cpu -> cpu.regA = cpu.read8(cpu.reg16(Reg16.DE));
+            case LD_R8_N8:
+                return cpu -> cpu.setReg8(r3, cpu.read8AfterOpcode());
+            case LD_R16SP_N16:
+                return cpu -> cpu.setReg16SP(r16, cpu.read16AfterOpcode());
+            case POP_R16:
+                return cpu -> cpu.setReg16(r16, cpu.pop16());
+
+            // Store
+            case LD_HLR_R8:
+                return cpu -> cpu.write8AtHl(cpu.reg8(r0));
+            case LD_HLRU_A:
+                return cpu -> {
+                    cpu.write8AtHl(cpu.regA);
+                    cpu.incrementHl(hlIncrement);
+                };
+            case LD_N8R_A:
+                return cpu -> cpu.write8(REGS_START + cpu.read8AfterOpcode(), cpu.regA);
+            case LD_CR_A:
+                return cpu -> cpu.write8(REGS_START + cpu.reg8(Reg.C), cpu.regA);
+            case LD_N16R_A:
+                return cpu -> cpu.write8(cpu.read16AfterOpcode(), cpu.regA);
+            case LD_BCR_A:
+                return cpu -> cpu.write8(cpu.reg16(Reg16.BC), cpu.regA);
+            case LD_DER_A:
+                return cpu -> cpu.write8(cpu.reg16(Reg16.DE), cpu.regA);
+            case LD_HLR_N8:
+                return cpu -> cpu.write8AtHl(cpu.read8AfterOpcode());
+            case LD_N16R_SP:
+                return cpu -> cpu.write16(cpu.read16AfterOpcode(), cpu.stackPointer);
+
+            // Move
+            case LD_R8_R8:
+                if (r3 == r0)
+                    return cpu -> {
+                    };
+                return cpu -> cpu.setReg8(r3, cpu.reg8(r0));
+            case LD_SP_HL:
+                return cpu -> cpu.stackPointer = cpu.regHL;
+            case PUSH_R16:
+                return cpu -> cpu.push16(cpu.reg16(r16));
+
+            // Add
+            case ADD_A_R8:
+                return cpu -> cpu.addSubA(cpu.reg8(r0), false, withCarry, true);
+            case ADD_A_N8:
+                return cpu -> cpu.addSubA(cpu.read8AfterOpcode(), false, withCarry, true);
+            case ADD_A_HLR:
+                return cpu -> cpu.addSubA(cpu.read8AtHl(), false, withCarry, true);
+            case INC_R8:
+                return cpu -> cpu.setReg8(r3, cpu.incDec(cpu.reg8(r3), false));
+            case INC_HLR:
+                return cpu -> cpu.write8AtHl(cpu.incDec(cpu.read8AtHl(), false));
+            case INC_R16SP:
+                return cpu -> cpu.setReg16SP(r16, unpackValue(add16H(cpu.reg16SP(r16), 1)));
+            case ADD_HL_R16SP:
+                return cpu -> {
+                    int vf = add16H(cpu.reg16SP(r16), cpu.regHL);
+                    cpu.setReg16SP(Reg16.HL, unpackValue(vf));
+                    cpu.combineAluFlags(vf, FlagSrc.CPU, FlagSrc.V0, FlagSrc.ALU, FlagSrc.ALU);
+                };
+            case LD_HLSP_S8:
+                if (test(o.encoding, 4))
+                    return cpu -> {
+                        int vf = add16L(cpu.stackPointer, clip(16, signExtend8(cpu.read8AfterOpcode())));
+                        cpu.setReg16(Reg16.HL, unpackValue(vf));
+                        cpu.combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU, FlagSrc.ALU);
+                    };
+                return cpu -> {
+                    int vf = add16L(cpu.stackPointer, clip(16, signExtend8(cpu.read8AfterOpcode())));
+                    cpu.stackPointer = clip(16, unpackValue(vf));
+                    cpu.combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU, FlagSrc.ALU);
+                };
+
+            // Subtract
+            case SUB_A_R8:
+                return cpu -> cpu.addSubA(cpu.reg8(r0), true, withCarry, true);
+            case SUB_A_N8:
+                return cpu -> cpu.addSubA(cpu.read8AfterOpcode(), true, withCarry, true);
+            case SUB_A_HLR:
+                return cpu -> cpu.addSubA(cpu.read8AtHl(), true, withCarry, true);
+            case DEC_R8:
+                return cpu -> cpu.setReg8(r3, cpu.incDec(cpu.reg8(r3), true));
+            case DEC_HLR:
+                return cpu -> cpu.write8AtHl(cpu.incDec(cpu.read8AtHl(), true));
+            case CP_A_R8:
+                return cpu -> cpu.addSubA(cpu.reg8(r0), true, false, false);
+            case CP_A_N8:
+                return cpu -> cpu.addSubA(cpu.read8AfterOpcode(), true, false, false);
+            case CP_A_HLR:
+                return cpu -> cpu.addSubA(cpu.read8AtHl(), true, false, false);
+            case DEC_R16SP:
+                return cpu -> cpu.setReg16SP(r16, clip(16, cpu.reg16SP(r16) - 1));
+
+            // And, or, xor, complement
+            case AND_A_N8:
+                return cpu -> cpu.logicA(LAZY_AND, cpu.read8AfterOpcode());
+            case AND_A_R8:
+                return cpu -> cpu.logicA(LAZY_AND, cpu.reg8(r0));
+            case AND_A_HLR:
+                return cpu -> cpu.logicA(LAZY_AND, cpu.read8AtHl());
+            case OR_A_R8:
+                return cpu -> cpu.logicA(LAZY_OR, cpu.reg8(r0));
+            case OR_A_N8:
+                return cpu -> cpu.logicA(LAZY_OR, cpu.read8AfterOpcode());
+            case OR_A_HLR:
+                return cpu -> cpu.logicA(LAZY_OR, cpu.read8AtHl());
+            case XOR_A_R8:
+                return cpu -> cpu.logicA(LAZY_XOR, cpu.reg8(r0));
+            case XOR_A_N8:
+                return cpu -> cpu.logicA(LAZY_XOR, cpu.read8AfterOpcode());
+            case XOR_A_HLR:
+                return cpu -> cpu.logicA(LAZY_XOR, cpu.read8AtHl());
+            case CPL:
+                return cpu -> {
+                    int value = complement8(cpu.regA);
+                    cpu.regA = value;
+                    cpu.combineAluFlags(value, FlagSrc.CPU, FlagSrc.V1, FlagSrc.V1, FlagSrc.CPU);
+                };
+
+            // Rotate, shift
+            case ROTCA:
+                return cpu -> {
+                    int vf = AluTables.rotate(dir, cpu.regA);
+                    cpu.setRegFromAlu(Reg.A, vf);
+                    cpu.combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
+                };
+            case ROTA:
+                return cpu -> {
+                    int vf = AluTables.rotate(dir, cpu.regA, cpu.carryFlag());
+                    cpu.setRegFromAlu(Reg.A, vf);
+                    cpu.combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
+                };
+            case ROTC_R8:
+                return cpu -> cpu.setRegFromAluShift(r0, AluTables.rotate(dir, cpu.reg8(r0)));
+            case ROT_R8:
+                return cpu -> cpu.setRegFromAluShift(r0, AluTables.rotate(dir, cpu.reg8(r0), cpu.carryFlag()));
+            case ROTC_HLR:
+                return cpu -> cpu.write8AtHlShift(AluTables.rotate(dir, cpu.read8AtHl()));
+            case ROT_HLR:
+                return cpu -> cpu.write8AtHlShift(AluTables.rotate(dir, cpu.read8AtHl(), cpu.carryFlag()));
+            case SWAP_R8:
+                return cpu -> {
+                    int vf = AluTables.swap(cpu.reg8(r0));
+                    cpu.setRegFromAlu(r0, vf);
+                    cpu.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0);
+                };
+            case SWAP_HLR:
+                return cpu -> {
+                    int vf = AluTables.swap(cpu.read8AtHl());
+                    cpu.write8AtHl(unpackValue(vf));
+                    cpu.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0);
+                };
+            case SLA_R8:
+                return cpu -> cpu.setRegFromAluShift(r0, AluTables.shiftLeft(cpu.reg8(r0)));
+            case SRA_R8:
+                return cpu -> cpu.setRegFromAluShift(r0, AluTables.shiftRightA(cpu.reg8(r0)));
+            case SRL_R8:
+                return cpu -> cpu.setRegFromAluShift(r0, AluTables.shiftRightL(cpu.reg8(r0)));
+            case SLA_HLR:
+                return cpu -> cpu.write8AtHlShift(AluTables.shiftLeft(cpu.read8AtHl()));
+            case SRA_HLR:
+                return cpu -> cpu.write8AtHlShift(AluTables.shiftRightA(cpu.read8AtHl()));
+            case SRL_HLR:
+                return cpu -> cpu.write8AtHlShift(AluTables.shiftRightL(cpu.read8AtHl()));
+
+            // Bit test and set
+            case BIT_U3_R8:
+                return cpu -> cpu.combineAluFlags(testBit(cpu.reg8(r0), index),
+                        FlagSrc.ALU, FlagSrc.ALU, FlagSrc.ALU, FlagSrc.CPU);
+            case BIT_U3_HLR:
+                return cpu -> cpu.combineAluFlags(testBit(cpu.read8AtHl(), index),
+                        FlagSrc.ALU, FlagSrc.ALU, FlagSrc.ALU, FlagSrc.CPU);
+            case CHG_U3_R8:
+                if (test(o.encoding, 6))
+                    return cpu -> cpu.setReg8(r0, cpu.reg8(r0) | mask(index));
+                return cpu -> cpu.setReg8(r0, cpu.reg8(r0) & ~mask(index));
+            case CHG_U3_HLR:
+                if (test(o.encoding, 6))
+                    return cpu -> cpu.write8AtHl(unpackValue(or(cpu.read8AtHl(), 1 << index)));
+                return cpu -> cpu.write8AtHl(unpackValue(and(cpu.read8AtHl(), complement8(1 << index))));
+
+            // Misc. ALU
+            case DAA:
+                return cpu -> {
+                    int vf = AluTables.bcdAdjust(cpu.regA, cpu.flags());
+                    cpu.setRegFromAlu(Reg.A, vf);
+                    cpu.combineAluFlags(vf, FlagSrc.ALU, FlagSrc.CPU, FlagSrc.V0, FlagSrc.ALU);
+                };
+            case SCCF:
+                if (test(o.encoding, 3))
+                    return cpu -> cpu.combineAluFlags(complement8(cpu.flags()),
+                            FlagSrc.CPU, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
+                return cpu -> cpu.combineAluFlags(0, FlagSrc.CPU, FlagSrc.V0, FlagSrc.V0, FlagSrc.V1);
+
+            // Jumps
+            case JP_HL:
+                return cpu -> cpu.nextProgramCounter = cpu.regHL;
+            case JP_N16:
+                return cpu -> cpu.nextProgramCounter = cpu.read16AfterOpcode();
+            case JP_CC_N16:
+                return cpu -> {
+                    if (cpu.isConditionTrue(cc)) {
+                        cpu.nextNonIdleCycle += additionalCycles;
+                        cpu.nextProgramCounter = cpu.read16AfterOpcode();
+                    }
+                };
+            case JR_E8:
+                return cpu -> cpu.nextProgramCounter = clip(16,
+                        cpu.nextProgramCounter + clip(16, signExtend8(cpu.read8AfterOpcode())));
+            case JR_CC_E8:
+                return cpu -> {
+                    if (cpu.isConditionTrue(cc)) {
+                        cpu.nextNonIdleCycle += additionalCycles;
+                        cpu.nextProgramCounter = clip(16,
+                                cpu.nextProgramCounter + clip(16, signExtend8(cpu.read8AfterOpcode())));
+                    }
+                };
+
+            // Calls and returns
+            case CALL_N16:
+                return cpu -> {
+                    cpu.push16(cpu.nextProgramCounter);
+                    cpu.nextProgramCounter = cpu.read16AfterOpcode();
+                };
+            case CALL_CC_N16:
+                return cpu -> {
+                    if (cpu.isConditionTrue(cc)) {
+                        cpu.push16(cpu.nextProgramCounter);
+                        cpu.nextProgramCounter = cpu.read16AfterOpcode();
+                        cpu.nextNonIdleCycle += additionalCycles;
+                    }
+                };
+            case RST_U3: {
+                int resetAddress = RESETS[extract(o.encoding, 3, 3)];
+                return cpu -> {
+                    cpu.push16(cpu.nextProgramCounter);
+                    cpu.nextProgramCounter = resetAddress;
+                };
+            }
+            case RET:
+                return cpu -> cpu.nextProgramCounter = cpu.pop16();
+            case RET_CC:
+                return cpu -> {
+                    if (cpu.isConditionTrue(cc)) {
+                        cpu.nextProgramCounter = cpu.pop16();
+                        cpu.nextNonIdleCycle += additionalCycles;
+                    }
+                };
+
+            // Interrupts
+            case EDI: {
+                boolean enable = test(o.encoding, 3);
+                return cpu -> cpu.interruptMasterEnable = enable;
+            }
+            case RETI:
+                return cpu -> {
+                    cpu.interruptMasterEnable = true;
+                    cpu.nextProgramCounter = cpu.pop16();
+                };
+
+            // Misc control
+            case HALT:
+                return cpu -> cpu.nextNonIdleCycle = Long.MAX_VALUE;
+            case STOP:
+                return cpu -> {
+                    throw new Error("STOP is not implemented");
+                };
+            default:
+                throw new Error("Unknown opcode family " + o.family);
+        }
+    }
+
+    /**
+     * Enregistre la valeur de vf dans le registre donné et combine les fanions comme le font les rotations et
+     * décalages d'un registre (Z, 0, 0, C)
+     *
+     * @param r  registre à modifier
+     * @param vf couple valeur / fanions
+     */
+    private void setRegFromAluShift(Reg r, int vf) {
+        setRegFromAlu(r, vf);
+        combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
+    }
+
+    /**
+     * Ecrit la valeur de vf à l'adresse contenue dans HL et combine les fanions comme le font les rotations et
+     * décalages en mémoire (Z, 0, 0, C)
+     *
+     * @param vf couple valeur / fanions
+     */
+    private void write8AtHlShift(int vf) {
+        write8AtHl(unpackValue(vf));
+        combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
+    }
+
+
     /**
      * lit la valeur 8 bits à l'adresse depuis le bus
      *
@@ -904,7 +1735,22 @@ public final class Cpu implements Component, Clocked {
      */
     private int read8(int address) {
 
-        return bus.read(checkBits16(address));
+        checkBits16(address);
+        if (cartridgeRom != null) {
+            if (address < CARTRIDGE_ROM_END) {
+                if (address >= directRomStart)
+                    return cartridgeRom.read(romBankBases[address >>> 14] | clip(14, address));
+            } else if (address >= WORK_RAM_START && address < ECHO_RAM_END) {
+                return workRam.read(clip(13, address));
+            } else if (address >= HIGH_RAM_START && address < HIGH_RAM_END) {
+                return highRam.read(address - HIGH_RAM_START);
+            }
+        }
+
+        int value = bus.read(address);
+        if (address >= REGS_START)
+            recordLoopRead(address, value);
+        return value;
     }
 
 
@@ -914,7 +1760,7 @@ public final class Cpu implements Component, Clocked {
      * @return valeur 8 bits lue
      */
     private int read8AtHl() {
-        return read8(reg16(Reg16.HL));
+        return read8(regHL);
     }
 
 
@@ -925,6 +1771,7 @@ public final class Cpu implements Component, Clocked {
      */
     private int read8AfterOpcode() {
 
+        if (immediateDecoded) return clip(8, decodedImmediate);
         return read8(clip(16, programCounter + 1));
     }
 
@@ -951,6 +1798,7 @@ public final class Cpu implements Component, Clocked {
      * @return valeur 16 bits sur le bus
      */
     private int read16AfterOpcode() {
+        if (immediateDecoded) return decodedImmediate;
         return read16(programCounter + 1);
     }
 
@@ -965,7 +1813,21 @@ public final class Cpu implements Component, Clocked {
      */
     private void write8(int address, int v) {
 
-        bus.write(address, v);
+        loopWritten = true;
+        if (cartridgeRom != null && address >= WORK_RAM_START && address < ECHO_RAM_END)
+            workRam.write(clip(13, address), v);
+        else if (cartridgeRom != null && address >= HIGH_RAM_START && address < HIGH_RAM_END)
+            highRam.write(address - HIGH_RAM_START, v);
+        else
+            bus.write(address, v);
+
+        if (cartridgeRom != null && (address < CARTRIDGE_ROM_END || address == REG_BOOT_ROM_DISABLE))
+            updateRomBanks();
+        if (decodeCache != null) {
+            decodeCache.invalidate(address);
+            //L'instruction en cours (CALL sur la pile, par exemple) peut écraser sa propre valeur immédiate
+            if (immediateDecoded && clip(16, address - programCounter) < 3) immediateDecoded = false;
+        }
     }
 
 
@@ -994,7 +1856,7 @@ public final class Cpu implements Component, Clocked {
      */
     private void write8AtHl(int v) {
 
-        int address = reg16(Reg16.HL);
+        int address = regHL;
         write8(address, v);
     }
 
@@ -1035,9 +1897,52 @@ public final class Cpu implements Component, Clocked {
      */
     private int reg16(Reg16 r) {
 
-        int v1 = regFile.get(r.firstReg);
-        int v2 = regFile.get(r.secondReg);
-        return make16(v1, v2);
+        switch (r) {
+            case BC: return regBC;
+            case DE: return regDE;
+            case HL: return regHL;
+            default: return make16(regA, flags());
+        }
+    }
+
+    /**
+     * retourne la valeur contenue dans le registre 8 bits donné
+     *
+     * @param r registre donné
+     * @return valeur 8 bits du registre
+     */
+    private int reg8(Reg r) {
+
+        switch (r) {
+            case A: return regA;
+            case F: return regF;
+            case B: return regBC >>> 8;
+            case C: return regBC & 0xFF;
+            case D: return regDE >>> 8;
+            case E: return regDE & 0xFF;
+            case H: return regHL >>> 8;
+            default: return regHL & 0xFF;
+        }
+    }
+
+    /**
+     * modifie la valeur contenue dans le registre 8 bits donné
+     *
+     * @param r registre donné
+     * @param v nouvelle valeur 8 bits
+     */
+    private void setReg8(Reg r, int v) {
+
+        switch (r) {
+            case A: regA = v; break;
+            case F: regF = v; break;
+            case B: regBC = v << 8 | regBC & 0xFF; break;
+            case C: regBC = regBC & 0xFF00 | v; break;
+            case D: regDE = v << 8 | regDE & 0xFF; break;
+            case E: regDE = regDE & 0xFF00 | v; break;
+            case H: regHL = v << 8 | regHL & 0xFF; break;
+            default: regHL = regHL & 0xFF00 | v; break;
+        }
     }
 
     /**
@@ -1068,13 +1973,15 @@ public final class Cpu implements Component, Clocked {
 
         checkBits16(newV);
 
-        if (r == Reg16.AF) newV = newV >>> 4 << 4;
-
-        int lsb = clip(8, newV);
-        int msb = extract(newV, 8, 8);
-
-        regFile.set(r.firstReg, msb);
-        regFile.set(r.secondReg, lsb);
+        switch (r) {
+            case BC: regBC = newV; break;
+            case DE: regDE = newV; break;
+            case HL: regHL = newV; break;
+            default:
+                regA = newV >>> 8;
+                setFlagsRegister(newV & 0xF0);
+                break;
+        }
     }
 
 
@@ -1104,7 +2011,7 @@ public final class Cpu implements Component, Clocked {
      * @param startBit bit d'index
      * @return identité d'un registre 8 bits de l'encodage de l'opcode
      */
-    private Reg extractReg(Opcode opcode, int startBit) {
+    private static Reg extractReg(Opcode opcode, int startBit) {
 
         int reg = extract(opcode.encoding, startBit, 3);
         return REGISTERS_8[reg];
@@ -1117,7 +2024,7 @@ public final class Cpu implements Component, Clocked {
      * @param opcode opcode donné
      * @return identité d'une paire de registres 16 bits de l'encodage de l'opcode
      */
-    private Reg16 extractReg16(Opcode opcode) {
+    private static Reg16 extractReg16(Opcode opcode) {
 
         int reg = extract(opcode.encoding, 4, 2);
         return REGISTERS_16[reg];
@@ -1130,7 +2037,7 @@ public final class Cpu implements Component, Clocked {
      * @param opcode opcode donné
      * @return -1 ou +1 en fonction du bit d'index 4
      */
-    private int extractHlIncrement(Opcode opcode) {
+    private static int extractHlIncrement(Opcode opcode) {
 
         boolean bit = test(opcode.encoding, 4);
         return bit ? -1 : 1;
@@ -1143,7 +2050,7 @@ public final class Cpu implements Component, Clocked {
      */
     private void incrementHl(int value) {
 
-        int hlValue = reg16(Reg16.HL);
+        int hlValue = regHL;
         hlValue = clip(16, hlValue + value);
 
         setReg16(Reg16.HL, hlValue);
@@ -1156,7 +2063,7 @@ public final class Cpu implements Component, Clocked {
      * @param vf couple valeur / fanions
      */
     private void setRegFromAlu(Reg r, int vf) {
-        regFile.set(r, unpackValue(vf));
+        setReg8(r, unpackValue(vf));
     }
 
     /**
@@ -1165,7 +2072,7 @@ public final class Cpu implements Component, Clocked {
      * @param valueFlags couple valeur / fanions
      */
     private void setFlags(int valueFlags) {
-        regFile.set(Reg.F, unpackFlags(valueFlags));
+        setFlagsRegister(unpackFlags(valueFlags));
     }
 
     /**
@@ -1192,7 +2099,7 @@ public final class Cpu implements Component, Clocked {
     private void combineAluFlags(int vf, FlagSrc z, FlagSrc n, FlagSrc h, FlagSrc c) {
 
         int newFlag = getFlag(vf, z, 7) + getFlag(vf, n, 6) + getFlag(vf, h, 5) + getFlag(vf, c, 4);
-        regFile.set(Reg.F, newFlag);
+        setFlagsRegister(newFlag);
 
     }
 
@@ -1217,7 +2124,7 @@ public final class Cpu implements Component, Clocked {
                 return (test(vf, znhcShift) ? 1 : 0) << znhcShift;
             }
             case CPU: {
-                return (test(regFile.get(Reg.F), znhcShift) ? 1 : 0) << znhcShift;
+                return (test(flags(), znhcShift) ? 1 : 0) << znhcShift;
             }
         }
 
@@ -1234,7 +2141,165 @@ public final class Cpu implements Component, Clocked {
      */
     private boolean getCarry(Opcode o, int opcodeIndex) {
 
-        return test(regFile.get(Reg.F), 4) && test(o.encoding, opcodeIndex);
+        return carryIf(test(o.encoding, opcodeIndex));
+    }
+
+    /**
+     * retourne la retenue contenue dans le registre F si l'instruction en tient compte
+     *
+     * @param withCarry vrai si l'instruction est une addition ou une soustraction avec retenue
+     * @return true si le registre F contient un carry et si l'instruction en tient compte
+     */
+    private boolean carryIf(boolean withCarry) {
+
+        return withCarry && carryFlag();
+    }
+
+    /**
+     * Retourne la valeur du registre F, en calculant les fanions de la dernière opération de l'ALU s'ils ont été
+     * différés
+     *
+     * @return valeur du registre F
+     */
+    private int flags() {
+
+        if (lazyOp != LAZY_NONE) {
+            regF = lazyFlags();
+            lazyOp = LAZY_NONE;
+        }
+        return regF;
+    }
+
+    /**
+     * Modifie le registre F, en abandonnant les fanions éventuellement différés
+     *
+     * @param f nouvelle valeur du registre F
+     */
+    private void setFlagsRegister(int f) {
+
+        regF = f;
+        lazyOp = LAZY_NONE;
+    }
+
+    /**
+     * Diffère le calcul des fanions de l'opération donnée, dont seul le résultat a été calculé
+     *
+     * @param op     opération (LAZY_ADD, LAZY_SUB, etc.)
+     * @param left   premier opérande
+     * @param right  second opérande
+     * @param carry  retenue d'entrée (ou fanion C précédent pour LAZY_INC et LAZY_DEC)
+     * @param result résultat 8 bits de l'opération
+     */
+    private void deferFlags(int op, int left, int right, boolean carry, int result) {
+
+        lazyOp = op;
+        lazyLeft = left;
+        lazyRight = right;
+        lazyCarry = carry;
+        lazyResult = result;
+    }
+
+    /**
+     * Calcule, au moyen de l'ALU, les fanions de l'opération différée
+     *
+     * @return valeur du registre F après l'opération
+     */
+    private int lazyFlags() {
+
+        int c = lazyCarry ? Flag.C.mask() : 0;
+        switch (lazyOp) {
+            case LAZY_ADD:
+                return unpackFlags(AluTables.add(lazyLeft, lazyRight, lazyCarry));
+            case LAZY_SUB:
+                return unpackFlags(AluTables.sub(lazyLeft, lazyRight, lazyCarry));
+            case LAZY_AND:
+                return unpackFlags(and(lazyLeft, lazyRight));
+            case LAZY_OR:
+                return unpackFlags(or(lazyLeft, lazyRight));
+            case LAZY_XOR:
+                return unpackFlags(xor(lazyLeft, lazyRight));
+            case LAZY_INC:
+                return (unpackFlags(AluTables.add(lazyLeft, 1, false)) & (Flag.Z.mask() | Flag.H.mask())) | c;
+            case LAZY_DEC:
+                return (unpackFlags(AluTables.sub(lazyLeft, 1, false)) & (Flag.Z.mask() | Flag.H.mask()))
+                        | Flag.N.mask() | c;
+            default:
+                throw new Error();
+        }
+    }
+
+    /**
+     * @return vrai ssi le fanion Z est vrai, sans calculer les autres fanions s'ils sont différés
+     */
+    private boolean zeroFlag() {
+
+        return lazyOp == LAZY_NONE ? test(regF, Flag.Z) : lazyResult == 0;
+    }
+
+    /**
+     * @return vrai ssi le fanion C est vrai, sans calculer les autres fanions s'ils sont différés
+     */
+    private boolean carryFlag() {
+
+        switch (lazyOp) {
+            case LAZY_NONE:
+                return test(regF, Flag.C);
+            case LAZY_ADD:
+                return lazyLeft + lazyRight + (lazyCarry ? 1 : 0) > 0xFF;
+            case LAZY_SUB:
+                return lazyLeft < lazyRight + (lazyCarry ? 1 : 0);
+            case LAZY_INC:
+            case LAZY_DEC:
+                return lazyCarry;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Additionne (avec retenue éventuelle) la valeur donnée à A ou la lui soustrait, en différant le calcul des
+     * fanions
+     *
+     * @param v         valeur 8 bits
+     * @param subtract  vrai pour une soustraction
+     * @param withCarry vrai si l'instruction tient compte de la retenue
+     * @param store     faux pour une comparaison, dont le résultat n'est pas stocké dans A
+     */
+    private void addSubA(int v, boolean subtract, boolean withCarry, boolean store) {
+
+        boolean carry = carryIf(withCarry);
+        int a = regA;
+        int result = clip(8, subtract ? a - v - (carry ? 1 : 0) : a + v + (carry ? 1 : 0));
+        if (store) regA = result;
+        deferFlags(subtract ? LAZY_SUB : LAZY_ADD, a, v, carry, result);
+    }
+
+    /**
+     * Combine A et la valeur donnée par l'opération logique donnée, en différant le calcul des fanions
+     *
+     * @param op opération (LAZY_AND, LAZY_OR ou LAZY_XOR)
+     * @param v  valeur 8 bits
+     */
+    private void logicA(int op, int v) {
+
+        int a = regA;
+        int result = op == LAZY_AND ? a & v : op == LAZY_OR ? a | v : a ^ v;
+        regA = result;
+        deferFlags(op, a, v, false, result);
+    }
+
+    /**
+     * Incrémente ou décrémente la valeur donnée, en différant le calcul des fanions
+     *
+     * @param v         valeur 8 bits
+     * @param decrement vrai pour une décrémentation
+     * @return valeur incrémentée ou décrémentée
+     */
+    private int incDec(int v, boolean decrement) {
+
+        int result = clip(8, decrement ? v - 1 : v + 1);
+        deferFlags(decrement ? LAZY_DEC : LAZY_INC, v, 1, carryFlag(), result);
+        return result;
     }
 
 
@@ -1244,7 +2309,7 @@ public final class Cpu implements Component, Clocked {
      * @param o: opcode reçu
      * @return direction de rotation, de type RotDir
      */
-    private RotDir rotdir(Opcode o) {
+    private static RotDir rotdir(Opcode o) {
         if (test(o.encoding, 3)) {
             return RotDir.RIGHT;
         } else {
@@ -1258,7 +2323,7 @@ public final class Cpu implements Component, Clocked {
      * @param o opcode
      * @return indice stocké entre les bits 3 et 5 dans l'opcode
      */
-    private int extractIndexFromOpcode(Opcode o) {
+    private static int extractIndexFromOpcode(Opcode o) {
         return extract(o.encoding, 3, 3);
     }
 
@@ -1281,20 +2346,48 @@ public final class Cpu implements Component, Clocked {
      */
     private boolean isFlagEnabledAfterOpcode(Opcode condition) {
 
-        int cc = extract(condition.encoding, 3, 2);
-        int FValue = regFile.get(Reg.F);
+        return isConditionTrue(extract(condition.encoding, 3, 2));
+    }
+
+    /**
+     * Achève un saut conditionnel d'un bloc compilé, dont le prochain cycle non-oisif n'inclut pas encore la durée
+     * de base
+     *
+     * @param cc               condition, telle qu'encodée dans les bits 3 et 4 de l'opcode
+     * @param target           adresse de destination du saut
+     * @param next             adresse de l'instruction suivant le saut
+     * @param additionalCycles cycles supplémentaires pris par le saut s'il a lieu
+     * @return nouvelle valeur du compteur de programme
+     */
+    private int conditionalJump(int cc, int target, int next, int additionalCycles) {
+
+        if (isConditionTrue(cc)) {
+            nextNonIdleCycle += additionalCycles;
+            return target;
+        }
+        return next;
+    }
+
+    /**
+     * Vérifie la valeur des fanions pour la condition donnée (NZ, Z, NC ou C)
+     *
+     * @param cc condition, telle qu'encodée dans les bits 3 et 4 de l'opcode
+     * @return "état" de la condition
+     */
+    private boolean isConditionTrue(int cc) {
+
         switch (cc) {
             case 0:
-                return !test(FValue, Flag.Z);
+                return !zeroFlag();
 
             case 1:
-                return test(FValue, Flag.Z);
+                return zeroFlag();
 
             case 2:
-                return !test(FValue, Flag.C);
+                return !carryFlag();
 
             case 3:
-                return test(FValue, Flag.C);
+                return carryFlag();
 
             default:
                 return false;
@@ -0,0 +1,166 @@
+package ch.epfl.gameboj.component.cpu;
+
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.BankedMemory;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import static ch.epfl.gameboj.AddressMap.*;
+
+/**
+ * Cache des instructions décodées (encodage et valeur immédiate) de la ROM, de la mémoire de travail et de la mémoire
+ * haute
+ *
+ * Les instructions de la ROM sont associées à la banque visible à leur adresse, et décodées à nouveau lorsque cette
+ * banque change. Celles de la mémoire de travail (et de son écho) et de la mémoire haute doivent être invalidées à
+ * chaque écriture dans ces zones, au moyen de invalidate. Une instruction n'est placée dans le cache que si tous ses
+ * octets appartiennent à la même zone
+ *
+ * Une entrée du cache est formée de l'encodage de l'instruction (augmenté de 0x100 pour les instructions préfixées)
+ * dans les bits 16 à 24, et de sa valeur immédiate dans les 16 bits de poids faible
+ *
+ * @author Armen Homberger (154511)
+ * @author Justin Deschenaux (288424)
+ */
+final class DecodeCache {
+
+    /**
+     * Valeur retournée pour une adresse dont l'instruction ne peut pas être placée dans le cache
+     */
+    static final int UNCACHED = -1;
+
+    private static final int VALID = 1 << 30;
+    private static final int HIGH_RAM_OFFSET = WORK_RAM_SIZE;
+
+    private final Opcode[] opcodes;
+    private final BankedMemory romBanks;
+    private final Bus bus;
+
+    //Entrées de la ROM et banque (augmentée de 2, 0 si vide) pour laquelle elles ont été décodées
+    private final int[] romKeys, romEntries;
+    //Entrées de la mémoire de travail, suivies de celles de la mémoire haute (0 si vide)
+    private final int[] ramEntries;
+
+    /**
+     * Construit un cache vide
+     *
+     * @param opcodes  table des 512 opcodes, indexée par encodage
+     * @param romBanks mémoire donnant la banque de la ROM visible à chaque adresse
+     * @param bus      bus depuis lequel les instructions sont lues
+     */
+    DecodeCache(Opcode[] opcodes, BankedMemory romBanks, Bus bus) {
+        this.opcodes = Objects.requireNonNull(opcodes);
+        this.romBanks = Objects.requireNonNull(romBanks);
+        this.bus = Objects.requireNonNull(bus);
+
+        romKeys = new int[CARTRIDGE_ROM_END];
+        romEntries = new int[CARTRIDGE_ROM_END];
+        ramEntries = new int[WORK_RAM_SIZE + HIGH_RAM_SIZE];
+    }
+
+    /**
+     * Retourne l'instruction décodée à l'adresse donnée, en la décodant si elle n'est pas dans le cache
+     *
+     * @param pc adresse 16 bits de l'instruction
+     * @return entrée de l'instruction, ou UNCACHED si elle ne peut pas être placée dans le cache
+     */
+    int entryAt(int pc) {
+        if (pc < CARTRIDGE_ROM_END) {
+            int key = romBanks.bankOf(pc) + 2;
+            if (romKeys[pc] != key) {
+                romKeys[pc] = key;
+                romEntries[pc] = decode(pc);
+            }
+            return entryOf(romEntries[pc]);
+        }
+
+        int index = ramIndexOf(pc);
+        if (index < 0)
+            return UNCACHED;
+        if (ramEntries[index] == 0)
+            ramEntries[index] = decode(pc);
+        return entryOf(ramEntries[index]);
+    }
+
+    /**
+     * Invalide les instructions contenant l'octet à l'adresse donnée, qui vient d'être écrit
+     *
+     * @param address adresse 16 bits écrite
+     */
+    void invalidate(int address) {
+        int index = ramIndexOf(address);
+        if (index < 0)
+            return;
+
+        //Une instruction occupe au plus 3 octets, et ne chevauche jamais deux zones
+        int first = Math.max(index - 2, address < HIGH_RAM_START ? 0 : HIGH_RAM_OFFSET);
+        Arrays.fill(ramEntries, first, index + 1, 0);
+    }
+
+    /**
+     * Invalide toutes les instructions de la mémoire de travail et de la mémoire haute, dont le contenu vient d'être
+     * entièrement remplacé
+     */
+    void invalidateRam() {
+        Arrays.fill(ramEntries, 0);
+    }
+
+    private static int entryOf(int stored) {
+        return stored == 0 ? UNCACHED : stored & ~VALID;
+    }
+
+    private static int ramIndexOf(int address) {
+        if (address >= WORK_RAM_START && address < ECHO_RAM_END)
+            return (address - WORK_RAM_START) % WORK_RAM_SIZE;
+        if (address >= HIGH_RAM_START && address < HIGH_RAM_END)
+            return HIGH_RAM_OFFSET + address - HIGH_RAM_START;
+        return -1;
+    }
+
+    /**
+     * Zone de l'adresse donnée, à l'intérieur de laquelle la banque (ou le contenu) est la même pour tous les octets
+     */
+    private static int regionOf(int address) {
+        if (address < BOOT_ROM_END)
+            return 0;
+        if (address < CARTRIDGE_ROM_END)
+            return 1 + (address >>> 14);
+        if (address >= WORK_RAM_START && address < WORK_RAM_END)
+            return 3;
+        if (address >= ECHO_RAM_START && address < ECHO_RAM_END)
+            return 4;
+        return address >= HIGH_RAM_START && address < HIGH_RAM_END ? 5 : 6;
+    }
+
+    /**
+     * Décode l'instruction à l'adresse donnée
+     *
+     * @return entrée à stocker (avec le bit de validité), ou 0 si l'instruction ne peut pas être placée dans le cache
+     */
+    private int decode(int pc) {
+        int opcode = bus.read(pc);
+        int last = pc + 1;
+        int encoding = opcode;
+        if (opcode == Cpu.PREFIX) {
+            if (regionOf(last) != regionOf(pc))
+                return 0;
+            encoding = Cpu.PREFIXED_ENCODINGS | bus.read(last);
+        }
+
+        Opcode o = opcodes[encoding];
+        if (o == null)
+            return 0;
+        last = pc + o.totalBytes - 1;
+        if (regionOf(last) != regionOf(pc))
+            return 0;
+
+        int immediate = 0;
+        if (o.kind == Opcode.Kind.DIRECT && o.totalBytes >= 2)
+            immediate = bus.read(pc + 1);
+        if (o.kind == Opcode.Kind.DIRECT && o.totalBytes == 3)
+            immediate |= bus.read(pc + 2) << 8;
+
+        return VALID | encoding << 16 | immediate;
+    }
+}
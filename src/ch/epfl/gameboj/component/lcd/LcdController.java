@@ -8,9 +8,11 @@ import ch.epfl.gameboj.bits.BitVector;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.cpu.Cpu;
 import ch.epfl.gameboj.component.memory.Ram;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Objects;
 import java.util.function.UnaryOperator;
@@ -24,18 +26,37 @@ import static ch.epfl.gameboj.component.lcd.LcdController.Registers.*;
  * @author Armen Homberger (154511)
  * @author Justin Deschenaux (288424)
  */
-public final class LcdController implements Component, Clocked {
+public final class LcdController implements Component, Clocked, Stateful {
 
     public static final int LCD_WIDTH = 160;
     public static final int LCD_HEIGHT = 144;
 
     private final Cpu belongingCpu;
     private final Ram vRam, OAMRam;
+    private final TileCache tileCache;
     private final RegisterFile<Registers> regs;
     private final Registers[] ALLREGS = Registers.values();
     private LcdImage currentImage;
     private Bus bus;
-    private LcdImage.Builder nextImageBuilder;
+
+    //Images stockées sous forme d'un octet (couleur 0 à 3) par pixel, ligne après ligne : l'image affichée et celle
+    //en cours de dessin, échangées à chaque début de VBLANK
+    private byte[] frontBuffer, backBuffer;
+    private long frameCount;
+    private boolean referenceRendering;
+    private boolean renderingSkipped;
+
+    //Tampons réutilisés pour le dessin de chaque ligne
+    private final boolean[] bgOpacity = new boolean[LCD_WIDTH];
+    private final byte[] bgSpriteColors = new byte[LCD_WIDTH];
+    private final byte[] fgSpriteColors = new byte[LCD_WIDTH];
+
+    //Index des sprites intersectant chaque ligne, triées par priorité, reconstruit après une modification de la
+    //mémoire des objets ou de la hauteur des sprites
+    private final int[][] spritesByLine = new int[LCD_HEIGHT][MAX_SPRITES_PER_LINE];
+    private final int[] spriteCountByLine = new int[LCD_HEIGHT];
+    private boolean spriteIndexDirty = true;
+    private int indexedSpriteHeight;
 
     private long nextNonIdleCycle;
 
@@ -59,7 +80,8 @@ public final class LcdController implements Component, Clocked {
     private final int TILE_SIZE = 16;
     private final int SOURCE_RANGE = 2048;
     private final int TILES_PER_RANGE = 128;
-    private final int MAX_SPRITES_PER_LINE = 10;
+    private static final int MAX_SPRITES_PER_LINE = 10;
+    private static final byte TRANSPARENT = -1;
 
     private int winY;
     private boolean enableDMA;
@@ -122,8 +144,10 @@ public final class LcdController implements Component, Clocked {
 
         belongingCpu = cpu;
         vRam = new Ram(VIDEO_RAM_SIZE);
+        tileCache = new TileCache();
         OAMRam = new Ram(OAM_RAM_SIZE);
-        nextImageBuilder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
+        frontBuffer = new byte[LCD_WIDTH * LCD_HEIGHT];
+        backBuffer = new byte[LCD_WIDTH * LCD_HEIGHT];
         regs = new RegisterFile<>(Registers.values());
         nextNonIdleCycle = Long.MAX_VALUE;
     }
@@ -134,7 +158,135 @@ public final class LcdController implements Component, Clocked {
      * @return l'image affichée à l'écran
      */
     public LcdImage currentImage() {
-        return Objects.requireNonNullElse(currentImage, LcdImage.whiteLCD);
+        if (frameCount == 0)
+            return LcdImage.whiteLCD;
+
+        if (currentImage == null)
+            currentImage = imageOf(frontBuffer);
+
+        return currentImage;
+    }
+
+    /**
+     * Retourne le nombre d'images entièrement dessinées depuis la création du contrôleur, qui ne change que lorsque
+     * l'image affichée à l'écran change
+     *
+     * @return nombre d'images dessinées
+     */
+    public long frameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Copie l'image actuellement affichée à l'écran dans le tableau donné, à raison d'un octet (couleur de 0 à 3) par
+     * pixel, ligne après ligne
+     *
+     * @param dest tableau de destination
+     * @throws IllegalArgumentException si le tableau ne contient pas LCD_WIDTH * LCD_HEIGHT éléments
+     */
+    public void copyCurrentFrame(byte[] dest) {
+        checkArgument(dest.length == LCD_WIDTH * LCD_HEIGHT);
+        System.arraycopy(frontBuffer, 0, dest, 0, dest.length);
+    }
+
+    /**
+     * Taille de l'état du contrôleur : registres, mémoires vidéo et des objets, progression de l'image et de la copie
+     * DMA, et les deux images (affichée et en cours de dessin)
+     *
+     * @return taille de l'état du contrôleur
+     */
+    @Override
+    public int stateSize() {
+        return ALLREGS.length + vRam.stateSize() + OAMRam.stateSize() + 2 * Long.BYTES + 3 * Integer.BYTES
+                + frontBuffer.length + backBuffer.length;
+    }
+
+    /**
+     * Ecrit l'état du contrôleur
+     *
+     * @param buffer : tampon de destination
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        for (Registers r : ALLREGS)
+            buffer.put((byte) regs.get(r));
+        vRam.saveState(buffer);
+        OAMRam.saveState(buffer);
+        buffer.putLong(nextNonIdleCycle).putLong(frameCount);
+        buffer.putInt(winY).putInt(enableDMA ? 1 : 0).putInt(DMACount);
+        buffer.put(frontBuffer).put(backBuffer);
+    }
+
+    /**
+     * Restaure l'état du contrôleur, puis reconstruit à partir de la mémoire vidéo et de la mémoire des objets le
+     * cache des tuiles et l'index des sprites
+     *
+     * @param buffer : tampon source
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        for (Registers r : ALLREGS)
+            regs.set(r, Byte.toUnsignedInt(buffer.get()));
+        vRam.loadState(buffer);
+        OAMRam.loadState(buffer);
+        nextNonIdleCycle = buffer.getLong();
+        frameCount = buffer.getLong();
+        winY = buffer.getInt();
+        enableDMA = buffer.getInt() != 0;
+        DMACount = buffer.getInt();
+        buffer.get(frontBuffer).get(backBuffer);
+
+        for (int row = 0; row < TileCache.tileDataSize() / 2; ++row)
+            tileCache.updateRow(row, vRam.read(2 * row), vRam.read(2 * row + 1));
+        spriteIndexDirty = true;
+        currentImage = null;
+    }
+
+    /**
+     * Reprend l'état du contrôleur donné : ses mémoires vidéo et des objets partagent leurs pages avec celles de ce
+     * contrôleur, tandis que les images et le cache des tuiles sont copiés
+     *
+     * @param source : contrôleur dont l'état est repris
+     */
+    @Override
+    public void copyStateFrom(Stateful source) {
+        LcdController that = (LcdController) source;
+        for (Registers r : ALLREGS)
+            regs.set(r, that.regs.get(r));
+        vRam.copyStateFrom(that.vRam);
+        OAMRam.copyStateFrom(that.OAMRam);
+        nextNonIdleCycle = that.nextNonIdleCycle;
+        frameCount = that.frameCount;
+        winY = that.winY;
+        enableDMA = that.enableDMA;
+        DMACount = that.DMACount;
+        System.arraycopy(that.frontBuffer, 0, frontBuffer, 0, frontBuffer.length);
+        System.arraycopy(that.backBuffer, 0, backBuffer, 0, backBuffer.length);
+
+        tileCache.copyFrom(that.tileCache);
+        spriteIndexDirty = true;
+        currentImage = null;
+    }
+
+    /**
+     * Choisit le dessin des lignes au moyen de LcdImageLine (implémentation de référence, utilisée pour vérifier
+     * l'équivalence avec le dessin direct dans l'image) plutôt que le dessin direct
+     *
+     * @param reference vrai pour utiliser l'implémentation de référence
+     */
+    void setReferenceRendering(boolean reference) {
+        referenceRendering = reference;
+    }
+
+    /**
+     * Choisit de ne plus dessiner les lignes, par exemple pour les images calculées à l'avance puis abandonnées : les
+     * images sont toujours comptées et échangées, et seul leur contenu n'est plus mis à jour, l'état du contrôleur
+     * évoluant par ailleurs de la même façon
+     *
+     * @param skipped vrai pour ne plus dessiner les lignes, faux pour les dessiner à nouveau
+     */
+    public void setRenderingSkipped(boolean skipped) {
+        renderingSkipped = skipped;
     }
 
 
@@ -152,7 +304,6 @@ public final class LcdController implements Component, Clocked {
             if (regs.testBit(LCDC, LCDCBits.LCD_STATUS)) {
                 setMode(Mode.M2);
                 nextNonIdleCycle = cycle + MODE2_CYCLES;
-                nextImageBuilder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
             }
 
         } else if (nextNonIdleCycle == cycle) {
@@ -160,6 +311,24 @@ public final class LcdController implements Component, Clocked {
         }
     }
 
+    /**
+     * Retourne le prochain cycle durant lequel le contrôleur doit agir : chaque cycle pendant une copie DMA ou
+     * lorsque l'écran vient d'être allumé, puis uniquement aux changements de mode
+     *
+     * @param cycle : cycle courant
+     * @return prochain cycle non-oisif, ou Long.MAX_VALUE si l'écran est éteint
+     */
+    @Override
+    public long nextNonIdleCycle(long cycle) {
+        if (enableDMA)
+            return cycle;
+
+        if (nextNonIdleCycle == Long.MAX_VALUE)
+            return regs.testBit(LCDC, LCDCBits.LCD_STATUS) ? cycle : Long.MAX_VALUE;
+
+        return Math.max(cycle, nextNonIdleCycle);
+    }
+
     /**
      * Méthode appelée par cycle lorsque le LcdController doit effectuer une action, s'occupe du changement de mode et
      * du dessin des lignes/images à afficher
@@ -175,7 +344,12 @@ public final class LcdController implements Component, Clocked {
         if (currentMode == Mode.M2) {
             nextMode = Mode.M3;
             nextNonIdleCycle += MODE3_CYCLES;
-            nextImageBuilder.setLine(newLine, computeLine(newLine));
+            if (renderingSkipped)
+                skipLine(newLine);
+            else if (referenceRendering)
+                copyLine(computeLine(newLine), newLine);
+            else
+                drawLine(newLine);
         }
 
         if (currentMode == Mode.M3) {
@@ -189,7 +363,7 @@ public final class LcdController implements Component, Clocked {
             if (newLine == LCD_HEIGHT) {
                 nextMode = Mode.M1;
                 nextNonIdleCycle += CYCLEPERLINE;
-                currentImage = nextImageBuilder.build();
+                swapBuffers();
 
             } else {
                 nextMode = Mode.M2;
@@ -206,7 +380,6 @@ public final class LcdController implements Component, Clocked {
                 nextMode = Mode.M2;
                 nextNonIdleCycle += MODE2_CYCLES;
                 winY = 0;
-                nextImageBuilder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
 
             } else {
                 nextNonIdleCycle += CYCLEPERLINE;
@@ -310,11 +483,17 @@ public final class LcdController implements Component, Clocked {
         if (address >= VIDEO_RAM_START && address < VIDEO_RAM_END) {
             address -= VIDEO_RAM_START;
             vRam.write(address, data);
+
+            if (address < TileCache.tileDataSize()) {
+                int row = address / 2;
+                tileCache.updateRow(row, vRam.read(2 * row), vRam.read(2 * row + 1));
+            }
         }
 
         if (address >= OAM_START && address < OAM_END) {
             address -= OAM_START;
             OAMRam.write(address, data);
+            spriteIndexDirty = true;
         }
     }
 
@@ -405,6 +584,185 @@ public final class LcdController implements Component, Clocked {
             regs.setBit(Registers.STAT, STATBits.LYC_EQ_LY, false);
     }
 
+    /**
+     * Echange l'image affichée et l'image en cours de dessin, qui vient d'être terminée
+     */
+    private void swapBuffers() {
+        byte[] finished = backBuffer;
+        backBuffer = frontBuffer;
+        frontBuffer = finished;
+        frameCount++;
+        currentImage = null;
+    }
+
+    /**
+     * Construit une image Game Boy à partir d'une image stockée sous forme d'un octet par pixel
+     *
+     * @param buffer image à convertir
+     * @return image Game Boy correspondante
+     */
+    private static LcdImage imageOf(byte[] buffer) {
+        LcdImage.Builder imageBuilder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
+
+        for (int y = 0; y < LCD_HEIGHT; y++) {
+            LcdImageLine.Builder lineBuilder = new LcdImageLine.Builder(LCD_WIDTH);
+
+            for (int byteIndex = 0; byteIndex < LCD_WIDTH / Byte.SIZE; byteIndex++) {
+                int msb = 0, lsb = 0;
+                for (int i = 0; i < Byte.SIZE; i++) {
+                    int color = buffer[y * LCD_WIDTH + byteIndex * Byte.SIZE + i];
+                    msb |= (color >>> 1) << i;
+                    lsb |= (color & 1) << i;
+                }
+                lineBuilder.setBytes(byteIndex, msb, lsb);
+            }
+            imageBuilder.setLine(y, lineBuilder.build());
+        }
+        return imageBuilder.build();
+    }
+
+    /**
+     * Recopie une ligne calculée par l'implémentation de référence dans l'image en cours de dessin
+     *
+     * @param line      ligne calculée
+     * @param lineIndex index de la ligne
+     */
+    private void copyLine(LcdImageLine line, int lineIndex) {
+        int offset = lineIndex * LCD_WIDTH;
+        for (int x = 0; x < LCD_WIDTH; x++) {
+            int msb = line.msb().testBit(x) ? 0b10 : 0;
+            int lsb = line.lsb().testBit(x) ? 0b01 : 0;
+            backBuffer[offset + x] = (byte) (msb | lsb);
+        }
+    }
+
+    /**
+     * Dessine la ligne d'index donné directement dans l'image en cours de dessin, sans allouer d'objets : le fond et
+     * la fenêtre sont d'abord écrits dans l'image, puis les sprites sont superposés pixel par pixel
+     *
+     * @param lineIndex index de la ligne à dessiner
+     */
+    private void drawLine(int lineIndex) {
+        checkArgument(lineIndex < LCD_HEIGHT);
+        int offset = lineIndex * LCD_WIDTH;
+        int palette = regs.get(Registers.BGP);
+
+        //Fond
+        if (regs.testBit(LCDC, LCDCBits.BG)) {
+            int BGArea = BG_DISPLAY_DATA[regs.testBit(Registers.LCDC, LCDCBits.BG_AREA) ? 1 : 0];
+            int BGLine = (regs.get(Registers.SCY) + lineIndex) % IMG_SIZE;
+            drawTiles(BGArea, BGLine, regs.get(Registers.SCX), 0, palette, offset);
+        } else {
+            Arrays.fill(backBuffer, offset, offset + LCD_WIDTH, (byte) 0);
+            Arrays.fill(bgOpacity, false);
+        }
+
+        //Fenêtre
+        int WX = WX();
+        if (regs.testBit(LCDC, LCDCBits.WIN) && WX < LCD_WIDTH && lineIndex >= regs.get(Registers.WY)) {
+            int winArea = BG_DISPLAY_DATA[regs.testBit(Registers.LCDC, LCDCBits.WIN_AREA) ? 1 : 0];
+            drawTiles(winArea, winY, 0, WX, palette, offset);
+            winY++;
+        }
+
+        //Sprites
+        if (regs.testBit(Registers.LCDC, LCDCBits.OBJ)) {
+            Arrays.fill(bgSpriteColors, TRANSPARENT);
+            Arrays.fill(fgSpriteColors, TRANSPARENT);
+
+            //Les sprites sont dessinées de la moins prioritaire à la plus prioritaire, qui écrase les autres
+            if (spriteIndexDirty || indexedSpriteHeight != spriteHeight())
+                rebuildSpriteIndex();
+            int[] lineSprites = spritesByLine[lineIndex];
+            for (int i = spriteCountByLine[lineIndex] - 1; i >= 0; i--) {
+                int spriteID = lineSprites[i];
+                byte[] layer = sAttribute(spriteID, SpriteCharac.BEHIND_BG) ? bgSpriteColors : fgSpriteColors;
+                drawSprite(spriteID, lineIndex, layer);
+            }
+
+            for (int x = 0; x < LCD_WIDTH; x++) {
+                if (bgSpriteColors[x] != TRANSPARENT && !bgOpacity[x])
+                    backBuffer[offset + x] = bgSpriteColors[x];
+                if (fgSpriteColors[x] != TRANSPARENT)
+                    backBuffer[offset + x] = fgSpriteColors[x];
+            }
+        }
+    }
+
+    /**
+     * Avance, sans la dessiner, au-delà de la ligne d'index donné : seul le compteur des lignes de la fenêtre est mis
+     * à jour, comme par drawLine
+     *
+     * @param lineIndex index de la ligne à sauter
+     */
+    private void skipLine(int lineIndex) {
+        if (regs.testBit(LCDC, LCDCBits.WIN) && WX() < LCD_WIDTH && lineIndex >= regs.get(Registers.WY))
+            winY++;
+    }
+
+    /**
+     * Dessine une ligne de tuiles du fond ou de la fenêtre dans l'image en cours de dessin, à partir du pixel d'index
+     * startX de l'écran, et met à jour l'opacité correspondante
+     *
+     * @param displayDataStart adresse de la carte des tuiles
+     * @param line             index de la ligne dans l'image de 256x256 pixels
+     * @param scrollX          index, dans cette image, du premier pixel dessiné
+     * @param startX           index, à l'écran, du premier pixel dessiné
+     * @param palette          palette à appliquer
+     * @param offset           index du début de la ligne dans l'image en cours de dessin
+     */
+    private void drawTiles(int displayDataStart, int line, int scrollX, int startX, int palette, int offset) {
+        int tileLine = line % LINES_PER_TILE;
+        int lineTileIndexAddress = displayDataStart + TILES_PER_LINE * (line / LINES_PER_TILE);
+        int tileRow = 0;
+
+        for (int x = startX; x < LCD_WIDTH; x++) {
+            int imageX = (scrollX + x - startX) % IMG_SIZE;
+            int tileX = imageX % LINES_PER_TILE;
+
+            if (tileX == 0 || x == startX) {
+                int tileIndex = vRam.read(lineTileIndexAddress + imageX / LINES_PER_TILE - VIDEO_RAM_START);
+                tileRow = (getTileImageAddress(tileIndex) - VIDEO_RAM_START) / 2 + tileLine;
+            }
+
+            int color = tileCache.pixel(tileRow, tileX);
+            backBuffer[offset + x] = (byte) ((palette >>> (2 * color)) & 0b11);
+            bgOpacity[x] = color != 0;
+        }
+    }
+
+    /**
+     * Dessine la ligne d'une sprite dans la couche donnée
+     *
+     * @param spriteID numéro de la sprite
+     * @param lineId   index de la ligne à l'écran
+     * @param layer    couche des sprites (devant ou derrière le fond)
+     */
+    private void drawSprite(int spriteID, int lineId, byte[] layer) {
+        int yPos = sAttribute(spriteID, Sprite.YPOS) - 16; //Ajustement selon convention du gameboy
+        int xPos = sAttribute(spriteID, Sprite.XPOS) - 8; //Ajustement selon convention du gameboy
+        int characteristics = sAttribute(spriteID, Sprite.BIN);
+        boolean flipH = Bits.test(characteristics, SpriteCharac.FLIP_H);
+        boolean flipV = Bits.test(characteristics, SpriteCharac.FLIP_V);
+        int palette = regs.get(Bits.test(characteristics, SpriteCharac.PALETTE) ? OBP1 : OBP0);
+
+        int tileLine = lineId - yPos;
+        if (flipV)
+            tileLine = spriteHeight() - tileLine;
+
+        int tileRow = sAttribute(spriteID, Sprite.TILEINDEX) * LINES_PER_TILE + tileLine;
+
+        for (int i = 0; i < LINES_PER_TILE; i++) {
+            int x = xPos + i;
+            if (x < 0 || x >= LCD_WIDTH)
+                continue;
+
+            int color = flipH ? tileCache.flippedPixel(tileRow, i) : tileCache.pixel(tileRow, i);
+            if (color != 0)
+                layer[x] = (byte) ((palette >>> (2 * color)) & 0b11);
+        }
+    }
+
     private LcdImageLine computeBGLine(int lineIndex) {
         checkArgument(lineIndex < LCD_HEIGHT);
         LcdImageLine line = LcdImageLine.LCDBlankLine;
@@ -526,20 +884,30 @@ public final class LcdController implements Component, Clocked {
         }
     }
 
+    /**
+     * Attache le contrôleur au bus, pour la mémoire vidéo, la mémoire d'objets et ses registres
+     *
+     * @param b : bus auquel attacher le contrôleur
+     */
+    @Override
     public void attachTo(Bus b) {
-        b.attach(this);
+        b.attach(this, VIDEO_RAM_START, VIDEO_RAM_END);
+        b.attach(this, OAM_START, OAM_END);
+        b.attach(this, REGS_LCDC_START, REGS_LCDC_END);
         bus = b;
     }
 
     private void startDMA() {
         enableDMA = true;
         DMACount = 0;
+        spriteIndexDirty = true;
     }
 
     private void DMAStep() {
         int address = Bits.make16(regs.get(Registers.DMA), DMACount);
         int data = bus.read(address);
         OAMRam.write(DMACount, data);
+        spriteIndexDirty = true;
 
         if (++DMACount == OAMRam.size())
             enableDMA = false;
@@ -580,24 +948,56 @@ public final class LcdController implements Component, Clocked {
 
         int[] spritesID = new int[MAX_SPRITES_PER_LINE];
         int nbOfSprites = 0;
+        int height = spriteHeight();
 
         //Ajout de la coordonnée x en vue du tri
 
         for (int i = 0; i < OAMRam.size() / 4 && nbOfSprites < MAX_SPRITES_PER_LINE; i++) {
             int yPos = sAttribute(i, Sprite.YPOS) - 2 * 8;
-            if (lineIndex >= yPos && lineIndex < yPos + spriteHeight()) {
+            if (lineIndex >= yPos && lineIndex < yPos + height) {
                 spritesID[nbOfSprites] = Bits.make16(sAttribute(i, Sprite.XPOS), i);
                 nbOfSprites++;
             }
         }
 
         Arrays.sort(spritesID, 0, nbOfSprites);
-        int[] result = new int[nbOfSprites];
 
         for (int i = 0; i < nbOfSprites; i++) {
-            result[i] = Bits.clip(8, spritesID[i]);
+            spritesID[i] = Bits.clip(8, spritesID[i]);
         }
-        return result;
+        return Arrays.copyOf(spritesID, nbOfSprites);
+    }
+
+    /**
+     * Reconstruit l'index des sprites de chaque ligne en un seul parcours de la mémoire des objets : chaque ligne
+     * reçoit, dans l'ordre de la mémoire, au plus 10 sprites, puis celles-ci sont triées selon leur priorité (même
+     * résultat que spritesIntersectingLine)
+     */
+    private void rebuildSpriteIndex() {
+        int height = spriteHeight();
+        Arrays.fill(spriteCountByLine, 0);
+
+        for (int i = 0; i < OAMRam.size() / Sprite.size; i++) {
+            int yPos = OAMRam.read(i * Sprite.size + Sprite.YPOS.index()) - 2 * 8;
+            int key = Bits.make16(OAMRam.read(i * Sprite.size + Sprite.XPOS.index()), i);
+            int lastLine = Math.min(LCD_HEIGHT, yPos + height);
+
+            for (int line = Math.max(0, yPos); line < lastLine; line++) {
+                if (spriteCountByLine[line] < MAX_SPRITES_PER_LINE)
+                    spritesByLine[line][spriteCountByLine[line]++] = key;
+            }
+        }
+
+        for (int line = 0; line < LCD_HEIGHT; line++) {
+            int[] sprites = spritesByLine[line];
+            int count = spriteCountByLine[line];
+            Arrays.sort(sprites, 0, count);
+            for (int i = 0; i < count; i++)
+                sprites[i] = Bits.clip(8, sprites[i]);
+        }
+
+        indexedSpriteHeight = height;
+        spriteIndexDirty = false;
     }
 
     private LcdImageLine oneSpriteLine(int spriteId, int lineId) {
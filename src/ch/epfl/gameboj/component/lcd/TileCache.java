@@ -0,0 +1,84 @@
+package ch.epfl.gameboj.component.lcd;
+
+/**
+ * Cache des 384 tuiles de la mémoire vidéo, décodées en pixels de 2 bits (un octet par pixel), dans le sens normal et
+ * retournées horizontalement. Une ligne de tuile est décodée à nouveau à chaque écriture de l'un de ses deux octets
+ *
+ * @author Armen Homberger (154511)
+ * @author Justin Deschenaux (288424)
+ */
+final class TileCache {
+
+    static final int TILE_COUNT = 384;
+    private static final int TILE_SIZE = 8;
+    private static final int ROW_COUNT = TILE_COUNT * TILE_SIZE;
+
+    private final byte[] pixels, flippedPixels;
+
+    /**
+     * Construit un cache dont toutes les tuiles sont de couleur 0, ce qui correspond à une mémoire vidéo nulle
+     */
+    TileCache() {
+        pixels = new byte[ROW_COUNT * TILE_SIZE];
+        flippedPixels = new byte[ROW_COUNT * TILE_SIZE];
+    }
+
+    /**
+     * Nombre d'octets de la mémoire vidéo occupés par les tuiles
+     *
+     * @return taille de la zone des tuiles
+     */
+    static int tileDataSize() {
+        return ROW_COUNT * 2;
+    }
+
+    /**
+     * Remplace le contenu du cache par celui du cache donné
+     *
+     * @param that cache à copier
+     */
+    void copyFrom(TileCache that) {
+        System.arraycopy(that.pixels, 0, pixels, 0, pixels.length);
+        System.arraycopy(that.flippedPixels, 0, flippedPixels, 0, flippedPixels.length);
+    }
+
+    /**
+     * Décode à nouveau une ligne de tuile
+     *
+     * @param row index de la ligne parmi toutes les lignes de tuiles (adresse dans la mémoire vidéo divisée par 2)
+     * @param lsb octet des bits de poids faible de la ligne
+     * @param msb octet des bits de poids fort de la ligne
+     */
+    void updateRow(int row, int lsb, int msb) {
+        int offset = row * TILE_SIZE;
+
+        for (int x = 0; x < TILE_SIZE; x++) {
+            int bit = TILE_SIZE - 1 - x;
+            byte color = (byte) ((((msb >>> bit) & 1) << 1) | ((lsb >>> bit) & 1));
+            pixels[offset + x] = color;
+            flippedPixels[offset + TILE_SIZE - 1 - x] = color;
+        }
+    }
+
+    /**
+     * Retourne la couleur d'un pixel d'une ligne de tuile
+     *
+     * @param row index de la ligne parmi toutes les lignes de tuiles
+     * @param x   index du pixel dans la ligne, de gauche à droite
+     * @return couleur (de 0 à 3) du pixel
+     */
+    int pixel(int row, int x) {
+        return pixels[row * TILE_SIZE + x];
+    }
+
+    /**
+     * Retourne la couleur d'un pixel d'une ligne de tuile retournée horizontalement
+     *
+     * @param row index de la ligne parmi toutes les lignes de tuiles
+     * @param x   index du pixel dans la ligne retournée, de gauche à droite
+     * @return couleur (de 0 à 3) du pixel
+     */
+    int flippedPixel(int row, int x) {
+        return flippedPixels[row * TILE_SIZE + x];
+    }
+}
@@ -1,13 +1,16 @@
 package ch.epfl.gameboj.component.memory;
 
+import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.BankedMemory;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
-import static ch.epfl.gameboj.AddressMap.BOOT_ROM_END;
-import static ch.epfl.gameboj.AddressMap.REG_BOOT_ROM_DISABLE;
+import static ch.epfl.gameboj.AddressMap.*;
 import static ch.epfl.gameboj.Preconditions.*;
 
 /**
@@ -16,7 +19,7 @@ import static ch.epfl.gameboj.Preconditions.*;
  * @author Armen Homberger (154511)
  * @author Justin Deschenaux (288424)
  */
-public final class BootRomController implements Component {
+public final class BootRomController implements Component, BankedMemory, Stateful {
 
     private final Cartridge cartridge;
     private boolean alreadyBooted;
@@ -36,6 +39,19 @@ public final class BootRomController implements Component {
 
     }
 
+    /**
+     * Attache le contrôleur au bus, pour les plages de la cartouche (ROM et RAM) et pour le registre de désactivation
+     * de la mémoire de démarrage
+     *
+     * @param bus : bus auquel attacher le contrôleur
+     */
+    @Override
+    public void attachTo(Bus bus) {
+        bus.attach(this, CARTRIDGE_ROM_START, CARTRIDGE_ROM_END);
+        bus.attach(this, CARTRIDGE_RAM_START, CARTRIDGE_RAM_END);
+        bus.attach(this, REG_BOOT_ROM_DISABLE, REG_BOOT_ROM_DISABLE + 1);
+    }
+
     /**
      * méthode read tant que alreadyBooted est faux (mémoire de démarrage non désactivée)
      *
@@ -73,4 +89,69 @@ public final class BootRomController implements Component {
         }
     }
 
+    /**
+     * Banque visible à l'adresse donnée : -1 pour la mémoire de démarrage tant qu'elle n'est pas désactivée, et la
+     * banque de la cartouche sinon
+     *
+     * @param address : adresse 16 bits
+     * @return identité de la banque visible à cette adresse
+     */
+    @Override
+    public int bankOf(int address) {
+
+        checkBits16(address);
+
+        if (!alreadyBooted && address < BOOT_ROM_END)
+            return -1;
+        else
+            return cartridge.bankOf(address);
+    }
+
+    /**
+     * Taille de l'état du contrôleur : désactivation de la mémoire de démarrage, suivie de l'état de la cartouche
+     *
+     * @return taille de l'état du contrôleur
+     */
+    @Override
+    public int stateSize() {
+
+        return Integer.BYTES + cartridge.stateSize();
+    }
+
+    /**
+     * Ecrit l'état du contrôleur et de sa cartouche
+     *
+     * @param buffer : tampon de destination
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+
+        buffer.putInt(alreadyBooted ? 1 : 0);
+        cartridge.saveState(buffer);
+    }
+
+    /**
+     * Restaure l'état du contrôleur et de sa cartouche
+     *
+     * @param buffer : tampon source
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+
+        alreadyBooted = buffer.getInt() != 0;
+        cartridge.loadState(buffer);
+    }
+
+    /**
+     * Reprend l'état du contrôleur donné et de sa cartouche, dont la mémoire vive partage ses pages
+     *
+     * @param source : contrôleur dont l'état est repris
+     */
+    @Override
+    public void copyStateFrom(Stateful source) {
+
+        BootRomController that = (BootRomController) source;
+        alreadyBooted = that.alreadyBooted;
+        cartridge.copyStateFrom(that.cartridge);
+    }
 }
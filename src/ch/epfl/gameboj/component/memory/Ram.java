@@ -1,17 +1,33 @@
 package ch.epfl.gameboj.component.memory;
 
+import ch.epfl.gameboj.component.Stateful;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import static ch.epfl.gameboj.Preconditions.checkArgument;
 import static ch.epfl.gameboj.Preconditions.checkBits8;
 
 /**
  * Classe représentant une mémoire vive
  *
+ * Le contenu est découpé en pages de PAGE_SIZE octets, qui peuvent être partagées entre plusieurs mémoires (voir
+ * copyStateFrom) : une page partagée n'est plus jamais modifiée, et une mémoire qui y écrit en fait d'abord sa propre
+ * copie. Toutes les pages complètes d'une nouvelle mémoire partagent la même page nulle
+ *
  * @author Armen Homberger (154511)
  * @author Justin Deschenaux (288424)
  */
-public final class Ram {
+public final class Ram implements Stateful {
+
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final byte[] ZERO_PAGE = new byte[PAGE_SIZE];
 
-    private final byte[] data;
+    private final int size;
+    private final byte[][] pages;
+    //Pages appartenant à cette seule mémoire, dans lesquelles elle peut donc écrire directement
+    private final boolean[] owned;
 
     /**
      * Construit une Ram de taille donnée
@@ -21,7 +37,17 @@ public final class Ram {
      */
     public Ram(int size) {
         checkArgument(size >= 0);
-        data = new byte[size];
+        this.size = size;
+        pages = new byte[(size + PAGE_SIZE - 1) >>> PAGE_BITS][];
+        owned = new boolean[pages.length];
+
+        Arrays.fill(pages, ZERO_PAGE);
+        //La dernière page, si elle est incomplète, a exactement la taille restante, afin que les accès au-delà de
+        //la fin de la mémoire restent invalides
+        if (size % PAGE_SIZE != 0) {
+            pages[pages.length - 1] = new byte[size % PAGE_SIZE];
+            owned[pages.length - 1] = true;
+        }
     }
 
     /**
@@ -32,11 +58,11 @@ public final class Ram {
      */
     public int read(int index) {
 
-        return Byte.toUnsignedInt(data[index]);
+        return Byte.toUnsignedInt(pages[index >>> PAGE_BITS][index & (PAGE_SIZE - 1)]);
     }
 
     /**
-     * Ecrit un octet à une adresse donnée
+     * Ecrit un octet à une adresse donnée, après avoir copié sa page si elle est partagée
      * @param index : index de l'octet à écrire
      * @param value : valeur à attribuer à l'octet spécifié
      * @throws IllegalArgumentException  : si value n'est pas une valeur 8 bits
@@ -44,7 +70,12 @@ public final class Ram {
      */
     public void write(int index, int value) {
         checkBits8(value);
-        data[index] = (byte) value;
+        int page = index >>> PAGE_BITS;
+        if (!owned[page]) {
+            pages[page] = pages[page].clone();
+            owned[page] = true;
+        }
+        pages[page][index & (PAGE_SIZE - 1)] = (byte) value;
     }
 
     /**
@@ -52,7 +83,69 @@ public final class Ram {
      * @return la taille de la RAM
      */
     public int size() {
-        return data.length;
+        return size;
+    }
+
+    /**
+     * Taille de l'état de la RAM, qui se résume à son contenu
+     *
+     * @return la taille de la RAM
+     */
+    @Override
+    public int stateSize() {
+        return size;
+    }
+
+    /**
+     * Ecrit le contenu de la RAM dans le tampon donné
+     *
+     * @param buffer : tampon de destination
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        for (byte[] page : pages)
+            buffer.put(page);
+    }
+
+    /**
+     * Remplace le contenu de la RAM par celui lu dans le tampon donné. Les pages partagées sont remplacées par des
+     * pages propres à cette mémoire
+     *
+     * @param buffer : tampon source
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        for (int page = 0; page < pages.length; ++page) {
+            if (!owned[page]) {
+                pages[page] = new byte[pages[page].length];
+                owned[page] = true;
+            }
+            buffer.get(pages[page]);
+        }
+    }
+
+    /**
+     * Remplace le contenu de la RAM par celui de la RAM donnée, de même taille, en partageant ses pages : aucun octet
+     * n'est copié avant la première écriture dans une page, par l'une ou l'autre des deux mémoires.
+     *
+     * La RAM donnée est elle aussi modifiée, puisqu'elle ne possède plus seule ses pages : cette méthode ne doit donc
+     * pas être appelée pendant qu'un autre fil écrit dans la RAM donnée, une écriture concurrente pouvant alors
+     * modifier une page déjà partagée
+     *
+     * @param source : RAM dont le contenu est repris
+     * @throws ClassCastException       : si source n'est pas une RAM
+     * @throws IllegalArgumentException : si les deux RAM n'ont pas la même taille
+     */
+    @Override
+    public void copyStateFrom(Stateful source) {
+        Ram that = (Ram) source;
+        checkArgument(that.size == size);
+        if (that == this)
+            return;
+
+        System.arraycopy(that.pages, 0, pages, 0, pages.length);
+        Arrays.fill(owned, false);
+        Arrays.fill(that.owned, false);
     }
 
 }
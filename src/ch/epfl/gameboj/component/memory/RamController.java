@@ -1,5 +1,6 @@
 package ch.epfl.gameboj.component.memory;
 
+import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.component.Component;
 
 import java.util.Objects;
@@ -55,6 +56,16 @@ public final class RamController implements Component {
     }
 
 
+    /**
+     * Attache le contrôleur au bus, pour sa plage d'adresses uniquement
+     *
+     * @param bus : bus auquel attacher le contrôleur
+     */
+    @Override
+    public void attachTo(Bus bus) {
+        bus.attach(this, startAdress, endAdress);
+    }
+
     /**
      * méthode de lecture d'octet
      *
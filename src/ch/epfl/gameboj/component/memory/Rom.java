@@ -1,17 +1,22 @@
 package ch.epfl.gameboj.component.memory;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
+import static ch.epfl.gameboj.Preconditions.checkArgument;
+
 /**
  * Classe représentant une mémoire morte
  *
+ * Le contenu est stocké dans un tampon en lecture seule, qui peut être une copie privée d'un tableau ou un tampon
+ * partagé entre plusieurs mémoires (par exemple le fichier d'une ROM projeté en mémoire).
+ *
  * @author Armen Homberger (154511)
  * @author Justin Deschenaux (288424)
  */
 public final class Rom {
 
-    private final byte[] data;
+    private final ByteBuffer data;
 
     /**
      * Construit une Rom avec le tableau d'octet donné
@@ -22,7 +27,30 @@ public final class Rom {
 
         Objects.requireNonNull(data);
 
-        this.data = Arrays.copyOf(data, data.length);
+        this.data = ByteBuffer.wrap(data.clone()).asReadOnlyBuffer();
+    }
+
+    private Rom(ByteBuffer data) {
+        this.data = data;
+    }
+
+    /**
+     * Crée une Rom partageant le tampon donné, sans le copier : son contenu est celui du tampon entre sa position
+     * et sa limite. Un tampon couvrant toute sa capacité est conservé tel quel plutôt que sous la forme d'une vue, si
+     * bien qu'il reste accessible tant que la Rom l'est (ce dont dépend le partage des ROM chargées, voir RomLoader)
+     *
+     * @param data : tampon en lecture seule, contenu de la ROM
+     * @return Rom dont le contenu est celui du tampon
+     * @throws NullPointerException     si le tampon est "null"
+     * @throws IllegalArgumentException si le tampon n'est pas en lecture seule
+     */
+    public static Rom ofBuffer(ByteBuffer data) {
+
+        Objects.requireNonNull(data);
+        checkArgument(data.isReadOnly());
+
+        boolean whole = data.position() == 0 && data.limit() == data.capacity();
+        return new Rom(whole ? data : data.slice());
     }
 
     /**
@@ -30,7 +58,7 @@ public final class Rom {
      * @return taille de la ROM
      */
     public int size() {
-        return data.length;
+        return data.capacity();
     }
 
     /**
@@ -39,6 +67,6 @@ public final class Rom {
      * @return contenu de la ROM à l'index passé en argument
      */
     public int read(int index) {
-        return Byte.toUnsignedInt(data[index]);
+        return Byte.toUnsignedInt(data.get(index));
     }
 }
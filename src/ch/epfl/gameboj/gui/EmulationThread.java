@@ -0,0 +1,272 @@
+package ch.epfl.gameboj.gui;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.InputMovie;
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static ch.epfl.gameboj.Preconditions.checkArgument;
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_HEIGHT;
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_WIDTH;
+
+/**
+ * Fil d'exécution simulant un Game Boy en temps réel, indépendamment du fil JavaFX.
+ *
+ * Le fil simule le Game Boy par tranches d'une image, en attendant entre deux tranches que le temps réel rattrape le
+ * temps simulé. Chaque nouvelle image est transmise au fil JavaFX au moyen d'un triple tampon, et les touches
+ * pressées ou relâchées sont transmises au fil d'émulation au moyen d'une file. Si la simulation prend plus de retard
+ * que le maximum donné (par exemple après une mise en veille), le temps excédentaire est abandonné au lieu d'être
+ * rattrapé.
+ *
+ * Le fil peut enregistrer l'état du Game Boy à chaque image dans un historique. Tant que le retour en arrière est
+ * demandé, il remonte alors cet historique de REWIND_STEP images à chaque image affichée, au lieu de simuler le Game
+ * Boy.
+ *
+ * Le fil peut aussi enregistrer les touches pressées et relâchées, datées du cycle auquel il les applique, dans un
+ * film (voir InputMovie) permettant de rejouer la session. Les changements postérieurs à un retour en arrière sont
+ * alors oubliés.
+ *
+ * Pour masquer la latence des touches, le fil peut enfin afficher à chaque image celle que le Game Boy affichera
+ * quelques images plus tard si les touches restent dans leur état actuel (voir setRunAhead). Ces images sont
+ * calculées sur une copie du Game Boy (voir GameBoy.fork), remise à chaque image dans l'état du Game Boy simulé, et
+ * seule la dernière d'entre elles est dessinée.
+ *
+ * @author Armen Homberger (154511)
+ * @author Justin Deschenaux (288424)
+ */
+public final class EmulationThread extends Thread {
+
+    private static final long CYCLES_PER_FRAME = 154 * 114;
+    //Nombre d'images remontées par image affichée lors d'un retour en arrière
+    private static final int REWIND_STEP = 2;
+    //Durée du retour vertical : le dessin d'une image calculée à l'avance reprend au plus tard à sa fin
+    private static final long VBLANK_CYCLES = 10 * 114;
+
+    private final GameBoy gameBoy;
+    private final long maxLagCycles;
+    private final TripleBuffer frames;
+    private final Queue<Runnable> inputs;
+    private final RewindBuffer rewind;
+    private InputMovie.Recorder recorder;
+    private GameBoy runAheadGameBoy;
+    private volatile boolean running;
+    private volatile boolean rewinding;
+    private volatile int runAheadFrames;
+
+    /**
+     * Construit le fil d'émulation du Game Boy donné, qui ne doit plus être utilisé que par ce fil une fois celui-ci
+     * démarré
+     *
+     * @param gameBoy     Game Boy à simuler
+     * @param maxLagNanos retard maximal (en nanosecondes) que la simulation peut rattraper
+     * @throws NullPointerException     si le Game Boy est "null"
+     * @throws IllegalArgumentException si le retard maximal est négatif
+     */
+    public EmulationThread(GameBoy gameBoy, long maxLagNanos) {
+        this(gameBoy, maxLagNanos, Optional.empty());
+    }
+
+    /**
+     * Construit le fil d'émulation du Game Boy donné, qui enregistre son état à chaque image dans l'historique donné
+     * et peut y revenir (voir setRewinding). L'historique est arrêté avec le fil
+     *
+     * @param gameBoy     Game Boy à simuler
+     * @param maxLagNanos retard maximal (en nanosecondes) que la simulation peut rattraper
+     * @param rewind      historique des états du Game Boy
+     * @throws NullPointerException     si le Game Boy ou l'historique est "null"
+     * @throws IllegalArgumentException si le retard maximal est négatif
+     */
+    public EmulationThread(GameBoy gameBoy, long maxLagNanos, RewindBuffer rewind) {
+        this(gameBoy, maxLagNanos, Optional.of(rewind));
+    }
+
+    private EmulationThread(GameBoy gameBoy, long maxLagNanos, Optional<RewindBuffer> rewind) {
+        super("gameboj-emulation");
+        checkArgument(maxLagNanos >= 0);
+
+        this.gameBoy = Objects.requireNonNull(gameBoy);
+        this.maxLagCycles = (long) (maxLagNanos * GameBoy.CYCLES_PER_NANOSECOND);
+        this.rewind = rewind.orElse(null);
+        frames = new TripleBuffer(LCD_WIDTH * LCD_HEIGHT);
+        inputs = new ConcurrentLinkedQueue<>();
+        running = true;
+        setDaemon(true);
+    }
+
+    /**
+     * Retourne le triple tampon par lequel les images du Game Boy sont transmises au fil JavaFX
+     *
+     * @return triple tampon des images
+     */
+    public TripleBuffer frames() {
+        return frames;
+    }
+
+    /**
+     * Enregistre dans l'enregistreur donné les touches que le fil applique au Game Boy. L'enregistreur ne doit être
+     * lu (voir InputMovie.Recorder.toMovie) qu'une fois le fil terminé
+     *
+     * @param recorder enregistreur des touches, créé pour la cartouche du Game Boy
+     * @throws NullPointerException  si l'enregistreur est "null"
+     * @throws IllegalStateException si le fil est déjà démarré
+     */
+    public void setRecorder(InputMovie.Recorder recorder) {
+        if (getState() != State.NEW)
+            throw new IllegalStateException();
+        this.recorder = Objects.requireNonNull(recorder);
+    }
+
+    /**
+     * Transmet au fil d'émulation la pression de la touche donnée
+     *
+     * @param key touche pressée
+     */
+    public void keyPressed(Key key) {
+        inputs.add(() -> {
+            if (recorder != null)
+                recorder.keyPressed(gameBoy.cycles(), key);
+            gameBoy.joypad().keyPressed(key);
+        });
+    }
+
+    /**
+     * Transmet au fil d'émulation le relâchement de la touche donnée
+     *
+     * @param key touche relâchée
+     */
+    public void keyReleased(Key key) {
+        inputs.add(() -> {
+            if (recorder != null)
+                recorder.keyReleased(gameBoy.cycles(), key);
+            gameBoy.joypad().keyReleased(key);
+        });
+    }
+
+    /**
+     * Demande le retour en arrière dans l'historique, ou sa fin. Sans effet si le fil n'a pas d'historique
+     *
+     * @param rewinding vrai pour remonter l'historique, faux pour reprendre la simulation
+     */
+    public void setRewinding(boolean rewinding) {
+        this.rewinding = rewinding;
+    }
+
+    /**
+     * Choisit le nombre d'images calculées à l'avance : l'image affichée est celle que le Game Boy affichera ce nombre
+     * d'images plus tard si les touches restent dans leur état actuel, ce qui masque autant d'images de latence des
+     * touches au prix d'autant d'images simulées en plus par image affichée
+     *
+     * @param frames nombre d'images calculées à l'avance, 0 pour afficher l'image actuelle du Game Boy
+     * @throws IllegalArgumentException si le nombre d'images est négatif
+     */
+    public void setRunAhead(int frames) {
+        checkArgument(frames >= 0);
+        runAheadFrames = frames;
+    }
+
+    /**
+     * Demande l'arrêt du fil d'émulation, qui se termine à la fin de la tranche en cours
+     */
+    public void shutdown() {
+        running = false;
+        if (rewind != null)
+            rewind.shutdown();
+        LockSupport.unpark(this);
+    }
+
+    @Override
+    public void run() {
+        LcdController lcdController = gameBoy.lcdController();
+        long lastFrameCount = -1;
+        long timeOrigin = System.nanoTime() - toNanos(gameBoy.cycles());
+
+        while (running) {
+            Runnable input;
+            while ((input = inputs.poll()) != null)
+                input.run();
+
+            //Le temps passé à remonter l'historique n'est pas rattrapé ensuite
+            if (rewinding && rewind != null) {
+                if (rewind.rewind(gameBoy, REWIND_STEP)) {
+                    if (recorder != null)
+                        recorder.truncate(gameBoy.cycles());
+                    lcdController.copyCurrentFrame(frames.backBuffer());
+                    frames.publish();
+                    lastFrameCount = lcdController.frameCount();
+                }
+                LockSupport.parkNanos(this, toNanos(CYCLES_PER_FRAME));
+                timeOrigin = System.nanoTime() - toNanos(gameBoy.cycles());
+                continue;
+            }
+
+            long now = System.nanoTime();
+            long target = (long) ((now - timeOrigin) * GameBoy.CYCLES_PER_NANOSECOND);
+
+            //Abandon du temps excédentaire plutôt que de tenter de le rattraper
+            if (target - gameBoy.cycles() > maxLagCycles) {
+                target = gameBoy.cycles() + maxLagCycles;
+                timeOrigin = now - toNanos(target);
+            }
+
+            if (target > gameBoy.cycles())
+                gameBoy.runUntil(target);
+
+            if (lcdController.frameCount() != lastFrameCount) {
+                int ahead = runAheadFrames;
+                if (ahead == 0 || !runAhead(ahead))
+                    lcdController.copyCurrentFrame(frames.backBuffer());
+                frames.publish();
+                lastFrameCount = lcdController.frameCount();
+                if (rewind != null)
+                    rewind.record(gameBoy);
+            }
+
+            long wakeUp = timeOrigin + toNanos(target + CYCLES_PER_FRAME);
+            long delay = wakeUp - System.nanoTime();
+            if (delay > 0)
+                LockSupport.parkNanos(this, Math.min(delay, TimeUnit.SECONDS.toNanos(1)));
+        }
+    }
+
+    /**
+     * Calcule, sur la copie du Game Boy remise dans l'état de celui-ci, l'image qu'il affichera dans le nombre donné
+     * d'images, et la copie dans le tampon arrière. Les images précédentes ne sont pas dessinées : le dessin reprend
+     * pendant le retour vertical précédant la dernière image, avant que sa première ligne ne soit dessinée
+     *
+     * @param ahead nombre d'images à calculer, strictement positif
+     * @return vrai ssi l'image a été calculée, faux si l'écran s'est éteint avant
+     */
+    private boolean runAhead(int ahead) {
+        if (runAheadGameBoy == null)
+            runAheadGameBoy = gameBoy.fork();
+        else
+            runAheadGameBoy.copyStateFrom(gameBoy);
+
+        LcdController lcdController = runAheadGameBoy.lcdController();
+        long targetFrame = lcdController.frameCount() + ahead;
+        long maxCycles = runAheadGameBoy.cycles() + (ahead + 1) * CYCLES_PER_FRAME;
+
+        lcdController.setRenderingSkipped(true);
+        while (lcdController.frameCount() < targetFrame - 1 && runAheadGameBoy.cycles() < maxCycles)
+            runAheadGameBoy.runUntil(runAheadGameBoy.cycles() + VBLANK_CYCLES);
+        lcdController.setRenderingSkipped(false);
+        while (lcdController.frameCount() < targetFrame && runAheadGameBoy.cycles() < maxCycles)
+            runAheadGameBoy.runUntil(runAheadGameBoy.cycles() + VBLANK_CYCLES);
+
+        if (lcdController.frameCount() < targetFrame)
+            return false;
+        lcdController.copyCurrentFrame(frames.backBuffer());
+        return true;
+    }
+
+    private static long toNanos(long cycles) {
+        return (long) (cycles / GameBoy.CYCLES_PER_NANOSECOND);
+    }
+}
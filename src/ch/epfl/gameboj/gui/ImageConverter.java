@@ -4,10 +4,21 @@ import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.lcd.LcdController;
 import ch.epfl.gameboj.component.lcd.LcdImage;
 import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
 
+import java.nio.IntBuffer;
+
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_HEIGHT;
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_WIDTH;
+
 /**
+ * Convertisseur d'images Game Boy en images JavaFX
+ *
+ * Une instance est associée à un écran : elle réutilise la même image JavaFX d'une image Game Boy à l'autre et la
+ * remplit en un seul appel à setPixels, uniquement lorsque le contrôleur a terminé une nouvelle image.
+ *
  * @author Armen Homberger (154511)
  * @author Justin Deschenaux (288424)
  */
@@ -16,6 +27,56 @@ public final class ImageConverter {
     private static final int[] COLOR_MAP = new int[] {
             0xFF_FF_FF_FF, 0xFF_D3_D3_D3, 0xFF_A9_A9_A9, 0xFF_00_00_00
     };
+    private static final PixelFormat<IntBuffer> PIXEL_FORMAT = PixelFormat.getIntArgbInstance();
+
+    private final WritableImage image;
+    private final byte[] frame;
+    private final int[] pixels;
+    private long lastFrameCount;
+
+    /**
+     * Construit un convertisseur dont l'image, blanche, a la taille de l'écran du Game Boy
+     */
+    public ImageConverter() {
+        image = new WritableImage(LCD_WIDTH, LCD_HEIGHT);
+        frame = new byte[LCD_WIDTH * LCD_HEIGHT];
+        pixels = new int[LCD_WIDTH * LCD_HEIGHT];
+        lastFrameCount = -1;
+    }
+
+    /**
+     * Met à jour l'image JavaFX avec l'image affichée par le contrôleur donné, si celle-ci a changé depuis le
+     * dernier appel
+     *
+     * @param lcdController contrôleur dont l'image est à convertir
+     * @return image JavaFX (toujours la même instance) correspondant à l'image affichée par le contrôleur
+     */
+    public Image convert(LcdController lcdController) {
+        long frameCount = lcdController.frameCount();
+        if (frameCount != lastFrameCount) {
+            lcdController.copyCurrentFrame(frame);
+            convert(frame);
+            lastFrameCount = frameCount;
+        }
+        return image;
+    }
+
+    /**
+     * Met à jour l'image JavaFX avec l'image Game Boy donnée sous forme d'un octet (couleur de 0 à 3) par pixel, ligne
+     * après ligne
+     *
+     * @param frame image Game Boy à convertir
+     * @return image JavaFX (toujours la même instance) correspondant à l'image donnée
+     * @throws IllegalArgumentException si l'image n'a pas la taille de l'écran
+     */
+    public Image convert(byte[] frame) {
+        Preconditions.checkArgument(frame.length == pixels.length);
+        for (int i = 0; i < frame.length; ++i)
+            pixels[i] = COLOR_MAP[frame[i]];
+
+        image.getPixelWriter().setPixels(0, 0, LCD_WIDTH, LCD_HEIGHT, PIXEL_FORMAT, pixels, 0, LCD_WIDTH);
+        return image;
+    }
 
     /**
      * Convertisseur d'image Game Boy en image JavaFX
@@ -1,8 +1,10 @@
 package ch.epfl.gameboj.gui;
 
 import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.InputMovie;
 import ch.epfl.gameboj.component.Joypad.*;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.scene.Scene;
@@ -12,8 +14,14 @@ import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.stage.Stage;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Armen Homberger (154511)
@@ -21,13 +29,24 @@ import java.util.HashMap;
  */
 public final class Main extends Application{
 
+    private static final long DEFAULT_MAX_LAG_MILLIS = 100;
+    private static final int DEFAULT_REWIND_SECONDS = 60;
+    //Nombre (arrondi) d'images par seconde ; l'historique conserve un instantané clé par seconde
+    private static final int FRAMES_PER_SECOND = 60;
+    private static final KeyCode REWIND_KEY = KeyCode.BACK_SPACE;
+
     private final HashMap<String, Key> textMap = new HashMap<>();
     private final HashMap<KeyCode, Key> codeMap = new HashMap<>();
 
 
     /**
      * Méthode appelant la méthode launch
-     * @param args fichier ROM reçu
+     * @param args fichier ROM reçu, éventuellement suivi de --maxLag=... (retard maximal rattrapable, en ms), de
+     *             --skipBootRom=true (démarrage directement sur le code de la cartouche), de --rewindSeconds=...
+     *             (durée de l'historique parcouru en maintenant la touche d'effacement arrière, 0 pour le désactiver),
+     *             de --recordMovie=... (fichier dans lequel le film des touches est écrit à la fermeture, voir
+     *             InputMovie) et de --runAhead=... (nombre d'images calculées à l'avance pour masquer la latence des
+     *             touches, 0 par défaut)
      */
     public static void main(String[] args) {
         Application.launch(args);
@@ -53,47 +72,90 @@ public final class Main extends Application{
 
 
 
-        if(getParameters().getRaw().size() != 1)
+        if(getParameters().getUnnamed().size() != 1)
             System.exit(1);
 
-        File romFile = new File(getParameters().getRaw().get(0));
-        GameBoy gb = new GameBoy(Cartridge.ofFile(romFile));
-
+        File romFile = new File(getParameters().getUnnamed().get(0));
+        boolean skipBootRom = Boolean.parseBoolean(getParameters().getNamed().get("skipBootRom"));
+        Cartridge cartridge = Cartridge.ofFile(romFile);
+
+        //Fichier du film des touches, écrit une fois le fil d'émulation terminé (paramètre --recordMovie=...)
+        String movieFile = getParameters().getNamed().get("recordMovie");
+        InputMovie.Recorder recorder = movieFile == null ? null : new InputMovie.Recorder(cartridge, skipBootRom);
+        GameBoy gb = new GameBoy(cartridge, skipBootRom);
+
+        //Retard maximal rattrapable par l'émulation, en millisecondes (paramètre --maxLag=...)
+        String maxLag = getParameters().getNamed().get("maxLag");
+        long maxLagMillis = maxLag == null ? DEFAULT_MAX_LAG_MILLIS : Long.parseLong(maxLag);
+        long maxLagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMillis);
+
+        //Durée de l'historique, en secondes (paramètre --rewindSeconds=...)
+        String rewindSeconds = getParameters().getNamed().get("rewindSeconds");
+        int rewindFrames = FRAMES_PER_SECOND
+                * (rewindSeconds == null ? DEFAULT_REWIND_SECONDS : Integer.parseInt(rewindSeconds));
+        EmulationThread emulation = rewindFrames > 0
+                ? new EmulationThread(gb, maxLagNanos,
+                        new RewindBuffer(gb.stateSize(), rewindFrames + FRAMES_PER_SECOND, FRAMES_PER_SECOND))
+                : new EmulationThread(gb, maxLagNanos);
+        if (recorder != null)
+            emulation.setRecorder(recorder);
+
+        //Nombre d'images calculées à l'avance (paramètre --runAhead=...)
+        String runAhead = getParameters().getNamed().get("runAhead");
+        if (runAhead != null)
+            emulation.setRunAhead(Integer.parseInt(runAhead));
 
         ImageView imageView = new ImageView();
         BorderPane mainPane = new BorderPane(imageView);
+        ImageConverter converter = new ImageConverter();
 
-        imageView.setFitWidth(gb.lcdController().currentImage().width()*2);
-        imageView.setFitHeight(gb.lcdController().currentImage().height()*2);
-        imageView.setImage(ImageConverter.convert(gb.lcdController().currentImage()));
+        imageView.setFitWidth(LcdController.LCD_WIDTH*2);
+        imageView.setFitHeight(LcdController.LCD_HEIGHT*2);
+        imageView.setImage(converter.convert(emulation.frames().frontBuffer()));
 
         imageView.setOnKeyPressed(e -> {
+            if (e.getCode() == REWIND_KEY)
+                emulation.setRewinding(true);
             Key key = getKey(e);
             if(key != null) {
-                gb.joypad().keyPressed(key);
+                emulation.keyPressed(key);
             }
         });
 
 
         imageView.setOnKeyReleased(e -> {
+            if (e.getCode() == REWIND_KEY)
+                emulation.setRewinding(false);
             Key key = getKey(e);
             if(key != null) {
-                gb.joypad().keyReleased(key);
+                emulation.keyReleased(key);
             }
         });
 
-        long start = System.nanoTime();
+        //L'image est mise à jour sur place, uniquement lorsque le fil d'émulation a publié une nouvelle image
         AnimationTimer timer = new AnimationTimer() {
             @Override
             public void handle(long now) {
-                long elapsed = now - start;
-                long cycles = (long)(elapsed * GameBoy.CYCLES_PER_NANOSECOND);
-                gb.runUntil(cycles);
-                imageView.setImage(ImageConverter.convert(gb.lcdController().currentImage()));
+                if (emulation.frames().update())
+                    converter.convert(emulation.frames().frontBuffer());
             }
         };
+        emulation.start();
         timer.start();
 
+        primaryStage.setOnHidden(e -> {
+            emulation.shutdown();
+            if (recorder != null) {
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(movieFile))) {
+                    emulation.join();
+                    recorder.toMovie(gb.cycles()).writeTo(out);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
         primaryStage.setScene(new Scene(mainPane));
         primaryStage.show();
         imageView.requestFocus();
@@ -0,0 +1,305 @@
+package ch.epfl.gameboj.gui;
+
+import ch.epfl.gameboj.GameBoy;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static ch.epfl.gameboj.Preconditions.checkArgument;
+
+/**
+ * Historique des derniers états d'un Game Boy, permettant de revenir en arrière.
+ *
+ * Le fil d'émulation enregistre un instantané (voir GameBoy.saveState) à chaque image, dans l'un des quelques tampons
+ * d'un réservoir : l'enregistrement ne coûte que l'écriture de l'instantané, et il est abandonné si aucun tampon
+ * n'est libre. Un fil d'arrière-plan compresse ensuite chaque instantané : tous les keyframeInterval instantanés, un
+ * instantané clé est conservé en entier, les suivants ne l'étant que sous forme de la différence (ou exclusif) avec
+ * le précédent. Dans les deux cas, les suites d'octets nuls (les octets inchangés, pour une différence) sont codées
+ * par leur seule longueur.
+ *
+ * Les instantanés compressés sont conservés dans un anneau de capacité fixe. Lorsqu'il est plein, l'instantané clé le
+ * plus ancien est oublié avec toutes les différences qui en dépendent.
+ *
+ * @author Armen Homberger (154511)
+ * @author Justin Deschenaux (288424)
+ */
+public final class RewindBuffer {
+
+    private static final int POOL_SIZE = 6;
+    //Nombre minimal d'octets nuls interrompant une suite d'octets non nuls
+    private static final int MIN_ZERO_RUN = 4;
+
+    private final int stateSize;
+    private final int keyframeInterval;
+    private final BlockingQueue<Snapshot> free, pending;
+    private final Thread compressor;
+
+    //Anneau des instantanés compressés, du plus ancien (à l'indice first) au plus récent, et génération des
+    //instantanés acceptés, qui change à chaque retour en arrière
+    private final byte[][] entries;
+    private final boolean[] keyframes;
+    private int first, count;
+    private int generation;
+
+    //Tampon de décompression utilisé par rewind, et tampon de compression du fil d'arrière-plan
+    private final byte[] decoded;
+    private final byte[] encoded;
+
+    /**
+     * Instantané non compressé, et génération de l'historique à laquelle il appartient
+     */
+    private static final class Snapshot {
+        private final ByteBuffer state;
+        private int generation;
+
+        private Snapshot(int size) {
+            state = ByteBuffer.allocate(size);
+        }
+    }
+
+    /**
+     * Construit un historique vide, et démarre son fil de compression
+     *
+     * @param stateSize        taille des instantanés du Game Boy enregistré (voir GameBoy.stateSize)
+     * @param capacity         nombre maximal d'instantanés conservés
+     * @param keyframeInterval nombre d'instantanés séparant deux instantanés clés
+     * @throws IllegalArgumentException si la taille est négative, si l'intervalle n'est pas strictement positif ou si
+     *                                  la capacité ne lui est pas strictement supérieure
+     */
+    public RewindBuffer(int stateSize, int capacity, int keyframeInterval) {
+        checkArgument(stateSize >= 0 && keyframeInterval > 0 && capacity > keyframeInterval);
+
+        this.stateSize = stateSize;
+        this.keyframeInterval = keyframeInterval;
+        free = new ArrayBlockingQueue<>(POOL_SIZE);
+        pending = new ArrayBlockingQueue<>(POOL_SIZE);
+        for (int i = 0; i < POOL_SIZE; ++i)
+            free.add(new Snapshot(stateSize));
+
+        entries = new byte[capacity][];
+        keyframes = new boolean[capacity];
+        decoded = new byte[stateSize];
+        encoded = new byte[2 * stateSize + 16];
+
+        compressor = new Thread(this::compressAll, "gameboj-rewind");
+        compressor.setDaemon(true);
+        compressor.start();
+    }
+
+    /**
+     * Enregistre l'état actuel du Game Boy donné, sans jamais attendre le fil de compression : l'état n'est pas
+     * enregistré si celui-ci a pris trop de retard
+     *
+     * @param gameBoy Game Boy dont l'état est enregistré, dont les instantanés ont la taille donnée à la construction
+     * @throws IllegalArgumentException si les instantanés du Game Boy n'ont pas la bonne taille
+     */
+    public void record(GameBoy gameBoy) {
+        Snapshot snapshot = free.poll();
+        if (snapshot == null)
+            return;
+
+        try {
+            gameBoy.saveState(snapshot.state.clear());
+        } catch (IllegalArgumentException e) {
+            free.add(snapshot);
+            throw e;
+        }
+        synchronized (this) {
+            snapshot.generation = generation;
+        }
+        pending.add(snapshot);
+    }
+
+    /**
+     * Restaure dans le Game Boy donné l'instantané enregistré le nombre donné d'instantanés avant le plus récent (ou
+     * le plus ancien instantané conservé s'il y en a moins), et oublie les instantanés suivants, ainsi que ceux qui
+     * n'ont pas encore été compressés. L'instantané restauré devient le plus récent
+     *
+     * @param gameBoy Game Boy dont l'état est remplacé
+     * @param frames  nombre d'instantanés à remonter
+     * @return vrai ssi un instantané a été restauré, faux si l'historique est vide
+     * @throws IllegalArgumentException si le nombre d'instantanés est négatif
+     */
+    public synchronized boolean rewind(GameBoy gameBoy, int frames) {
+        checkArgument(frames >= 0);
+        if (count == 0)
+            return false;
+
+        int target = Math.max(0, count - 1 - frames);
+        int keyframe = target;
+        while (!keyframes[indexOf(keyframe)])
+            --keyframe;
+
+        Arrays.fill(decoded, (byte) 0);
+        for (int i = keyframe; i <= target; ++i)
+            applyDelta(entries[indexOf(i)], decoded);
+        gameBoy.loadState(ByteBuffer.wrap(decoded));
+
+        for (int i = target + 1; i < count; ++i)
+            entries[indexOf(i)] = null;
+        count = target + 1;
+        ++generation;
+        return true;
+    }
+
+    /**
+     * Retourne le nombre d'instantanés compressés conservés
+     *
+     * @return nombre d'instantanés pouvant être restaurés
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Arrête le fil de compression, les instantanés enregistrés par la suite n'étant plus conservés
+     */
+    public void shutdown() {
+        compressor.interrupt();
+    }
+
+    /**
+     * Compresse les instantanés enregistrés, jusqu'à l'interruption du fil
+     */
+    private void compressAll() {
+        Snapshot previous = null;
+        int sinceKeyframe = 0;
+
+        try {
+            while (true) {
+                Snapshot snapshot = pending.take();
+                boolean keyframe = previous == null || previous.generation != snapshot.generation
+                        || sinceKeyframe == keyframeInterval;
+                int length = encode(snapshot.state.array(), keyframe ? null : previous.state.array(), encoded);
+
+                if (append(Arrays.copyOf(encoded, length), keyframe, snapshot.generation)) {
+                    sinceKeyframe = keyframe ? 1 : sinceKeyframe + 1;
+                    if (previous != null)
+                        free.add(previous);
+                    previous = snapshot;
+                } else {
+                    free.add(snapshot);
+                }
+            }
+        } catch (InterruptedException e) {
+            //Arrêt demandé par shutdown
+        }
+    }
+
+    /**
+     * Ajoute un instantané compressé à l'anneau, en oubliant si nécessaire l'instantané clé le plus ancien et les
+     * différences qui en dépendent
+     *
+     * @return vrai ssi l'instantané a été ajouté, faux s'il a été enregistré avant le dernier retour en arrière
+     */
+    private synchronized boolean append(byte[] entry, boolean keyframe, int entryGeneration) {
+        if (entryGeneration != generation)
+            return false;
+
+        if (count == entries.length) {
+            do {
+                entries[first] = null;
+                first = (first + 1) % entries.length;
+                --count;
+            } while (count > 0 && !keyframes[first]);
+        }
+        int index = indexOf(count);
+        entries[index] = entry;
+        keyframes[index] = keyframe;
+        ++count;
+        return true;
+    }
+
+    private int indexOf(int i) {
+        return (first + i) % entries.length;
+    }
+
+    /**
+     * Code la différence entre deux instantanés par une suite de paires de suites : la longueur d'une suite d'octets
+     * inchangés, puis la longueur d'une suite d'octets modifiés suivie de leur ou exclusif avec les octets précédents.
+     * Les longueurs sont codées sur un nombre variable d'octets, 7 bits par octet
+     *
+     * @param state    instantané à coder
+     * @param previous instantané précédent, ou null pour coder l'instantané en entier
+     * @param out      tampon de destination, d'au moins 2 * state.length + 16 octets
+     * @return nombre d'octets écrits dans out
+     */
+    static int encode(byte[] state, byte[] previous, byte[] out) {
+        int length = 0;
+        int i = 0;
+        while (i < state.length) {
+            int zeroStart = i;
+            while (i < state.length && xorAt(state, previous, i) == 0)
+                ++i;
+            length = putVarint(out, length, i - zeroStart);
+
+            int literalStart = i;
+            int zeros = 0;
+            while (i < state.length && zeros < MIN_ZERO_RUN) {
+                zeros = xorAt(state, previous, i) == 0 ? zeros + 1 : 0;
+                ++i;
+            }
+            if (zeros == MIN_ZERO_RUN)
+                i -= zeros;
+            length = putVarint(out, length, i - literalStart);
+            for (int j = literalStart; j < i; ++j)
+                out[length++] = (byte) xorAt(state, previous, j);
+        }
+        return length;
+    }
+
+    /**
+     * Applique à l'instantané donné (nul pour un instantané clé) la différence codée par encode
+     *
+     * @param delta différence codée
+     * @param state instantané, modifié sur place
+     */
+    static void applyDelta(byte[] delta, byte[] state) {
+        int i = 0;
+        int p = 0;
+        while (p < delta.length) {
+            int zeros = getVarint(delta, p);
+            p += varintSize(zeros);
+            i += zeros;
+
+            int literals = getVarint(delta, p);
+            p += varintSize(literals);
+            for (int end = i + literals; i < end; ++i)
+                state[i] ^= delta[p++];
+        }
+    }
+
+    private static int xorAt(byte[] state, byte[] previous, int i) {
+        return previous == null ? state[i] : state[i] ^ previous[i];
+    }
+
+    private static int putVarint(byte[] out, int position, int value) {
+        while (value >= 0x80) {
+            out[position++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+
+    private static int getVarint(byte[] in, int position) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in[position++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while (value >= 0x80) {
+            value >>>= 7;
+            ++size;
+        }
+        return size;
+    }
+}
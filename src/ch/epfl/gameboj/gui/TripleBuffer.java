@@ -0,0 +1,78 @@
+package ch.epfl.gameboj.gui;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ch.epfl.gameboj.Preconditions.checkArgument;
+
+/**
+ * Triple tampon d'images, permettant à un unique producteur (le fil d'émulation) de transmettre des images à un
+ * unique consommateur (le fil JavaFX) sans verrou.
+ *
+ * Le producteur écrit dans son tampon puis le publie, ce qui l'échange avec le tampon intermédiaire ; le consommateur
+ * échange son tampon avec le tampon intermédiaire lorsque celui-ci contient une image qu'il n'a pas encore vue.
+ * Aucun des deux fils n'attend l'autre, et le consommateur obtient toujours la dernière image publiée.
+ *
+ * @author Armen Homberger (154511)
+ * @author Justin Deschenaux (288424)
+ */
+public final class TripleBuffer {
+
+    private static final int INDEX_MASK = 0b11;
+    private static final int FRESH = 0b100;
+
+    private final byte[][] buffers;
+    private final AtomicInteger middle;
+    private int back, front;
+
+    /**
+     * Construit un triple tampon dont les tampons ont la taille donnée
+     *
+     * @param size taille de chaque tampon
+     * @throws IllegalArgumentException si la taille est négative
+     */
+    public TripleBuffer(int size) {
+        checkArgument(size >= 0);
+        buffers = new byte[3][size];
+        back = 0;
+        middle = new AtomicInteger(1);
+        front = 2;
+    }
+
+    /**
+     * Retourne le tampon dans lequel le producteur écrit la prochaine image
+     *
+     * @return tampon du producteur
+     */
+    public byte[] backBuffer() {
+        return buffers[back];
+    }
+
+    /**
+     * Publie l'image écrite dans le tampon du producteur, qui reçoit en échange le tampon intermédiaire
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Obtient, pour le consommateur, la dernière image publiée s'il ne l'a pas encore obtenue
+     *
+     * @return vrai ssi le tampon du consommateur contient désormais une nouvelle image
+     */
+    public boolean update() {
+        if ((middle.get() & FRESH) == 0)
+            return false;
+
+        front = middle.getAndSet(front) & INDEX_MASK;
+        return true;
+    }
+
+    /**
+     * Retourne le tampon contenant la dernière image obtenue par le consommateur
+     *
+     * @return tampon du consommateur
+     */
+    public byte[] frontBuffer() {
+        return buffers[front];
+    }
+}
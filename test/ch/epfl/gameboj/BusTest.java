@@ -5,6 +5,7 @@ package ch.epfl.gameboj;
 import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
 import static ch.epfl.test.TestRandomizer.newRandom;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -90,6 +91,47 @@ class BusTest {
             assertEquals((i * 2018) & 0xFF, b.read(i));
     }
 
+    @Test
+    void attachFailsForInvalidRange() {
+        Bus b = new Bus();
+        SimpleComponent c = new SimpleComponent(0, 0);
+        assertThrows(IllegalArgumentException.class,
+                () -> b.attach(c, -1, 0x100));
+        assertThrows(IllegalArgumentException.class,
+                () -> b.attach(c, 0x200, 0x100));
+        assertThrows(IllegalArgumentException.class,
+                () -> b.attach(c, 0, 0x10001));
+    }
+
+    @Test
+    void rangedComponentOnlyReceivesAccessesToItsPages() {
+        Bus b = new Bus();
+        SimpleComponent c = new SimpleComponent(0xC012, 42);
+        b.attach(c, 0xC000, 0xE000);
+        b.write(0x1234, 1);
+        assertEquals(0xFF, b.read(0x1234));
+        assertFalse(c.wasRead());
+        assertFalse(c.wasWritten());
+        assertEquals(42, b.read(0xC012));
+        b.write(0xC012, 43);
+        assertEquals(43, b.read(0xC012));
+    }
+
+    @Test
+    void sharedPageKeepsAttachmentOrder() {
+        Bus b = new Bus();
+        SimpleComponent c1 = new SimpleComponent(0xFF05, 1);
+        SimpleComponent c2 = new SimpleComponent(0xFF05, 2);
+        SimpleComponent c3 = new SimpleComponent(0xFF05, 3);
+        b.attach(c1, 0xFF04, 0xFF08);
+        b.attach(c2);
+        b.attach(c3, 0xFF80, 0x10000);
+        assertEquals(1, b.read(0xFF05));
+        b.write(0xFF05, 7);
+        assertTrue(c1.wasWritten());
+        assertTrue(c2.wasWritten());
+    }
+
     @Test
     void writeFailsForInvalidAddress() {
         Random rng = newRandom();
@@ -0,0 +1,64 @@
+package ch.epfl.gameboj;
+
+import ch.epfl.gameboj.component.cartridge.CartridgeTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public final class GameBoyBootTest {
+
+    private static byte[] randomRom(Random rng) {
+        byte[] rom = new byte[0x8000];
+        for (int i = 0x104; i < 0x134; ++i)
+            rom[i] = (byte) rng.nextInt(0x100);
+        rom[0x100] = 0x18;  // JR -2
+        rom[0x101] = (byte) 0xFE;
+        return rom;
+    }
+
+    private static GameBoy bootedGameBoy(byte[] rom) {
+        GameBoy gameBoy = new GameBoy(CartridgeTest.cartridgeWithData(rom));
+        long cycle = 0;
+        while (gameBoy.cpu()._testGetPcSpAFBCDEHL()[0] != 0x100)
+            gameBoy.runUntil(++cycle);
+        return gameBoy;
+    }
+
+    @Test
+    void skippedBootRomLeavesSameStateAsBootRom() {
+        Random rng = newRandom();
+        for (int i = 0; i < 4; ++i) {
+            byte[] rom = randomRom(rng);
+            GameBoy booted = bootedGameBoy(rom);
+            GameBoy skipped = new GameBoy(CartridgeTest.cartridgeWithData(rom), true);
+
+            assertArrayEquals(booted.cpu()._testGetPcSpAFBCDEHL(), skipped.cpu()._testGetPcSpAFBCDEHL());
+            for (int address = AddressMap.VIDEO_RAM_START; address < AddressMap.VIDEO_RAM_END; ++address)
+                assertEquals(booted.bus().read(address), skipped.bus().read(address));
+            //La mémoire de démarrage se termine au milieu d'une image, alors que l'écran est allumé au début de la
+            //première ligne lorsqu'elle est sautée : STAT et LY diffèrent
+            for (int address = AddressMap.REGS_LCDC_START; address < AddressMap.REGS_LCDC_END; ++address) {
+                if (address != 0xFF41 && address != 0xFF44)
+                    assertEquals(booted.bus().read(address), skipped.bus().read(address));
+            }
+            assertEquals(booted.bus().read(AddressMap.REG_IF), skipped.bus().read(AddressMap.REG_IF));
+        }
+    }
+
+    @Test
+    void skippedBootRomIsUnmapped() {
+        byte[] rom = randomRom(newRandom());
+        for (int i = 0; i < 0x100; ++i)
+            rom[i] = (byte) i;
+        GameBoy gameBoy = new GameBoy(CartridgeTest.cartridgeWithData(rom), true);
+
+        for (int address = 0; address < 0x100; ++address)
+            assertEquals(address, gameBoy.bus().read(address));
+        gameBoy.runUntil(1000);
+        assertEquals(0x100, gameBoy.cpu()._testGetPcSpAFBCDEHL()[0]);
+    }
+}
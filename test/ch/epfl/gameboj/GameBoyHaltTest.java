@@ -0,0 +1,103 @@
+package ch.epfl.gameboj;
+
+import ch.epfl.gameboj.component.cartridge.CartridgeTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class GameBoyHaltTest {
+
+    private static final int[] PROGRAM = {
+            0x3E, 0x40,       // LD A,40      (interruption STAT à LY = LYC)
+            0xE0, 0x41,       // LDH (41),A
+            0x3E, 0x20,       // LD A,20
+            0xE0, 0x45,       // LDH (45),A
+            0x3E, 0x05,       // LD A,05      (minuteur activé, période de 4 cycles)
+            0xE0, 0x07,       // LDH (07),A
+            0x3E, 0x07,       // LD A,07      (VBLANK, LCD_STAT et TIMER)
+            0xE0, 0xFF,       // LDH (FF),A
+            0xFB,             // EI
+            0x76,             // HALT
+            0xF0, 0x05,       // LDH A,(05)   (TIMA, qui dépend du cycle exact du réveil)
+            0x84,             // ADD A,H
+            0x67,             // LD H,A
+            0x04,             // INC B
+            0x78,             // LD A,B
+            0xE6, 0x0F,       // AND 0F
+            0x20, 0xF5,       // JR NZ,-11    (HALT)
+            0xF3,             // DI
+            0x76,             // HALT         (réveil sans gestion de l'interruption)
+            0x1C,             // INC E
+            0xFB,             // EI
+            0x18, 0xEF,       // JR -17       (HALT)
+    };
+
+    private static GameBoy newGameBoy() {
+        byte[] rom = CartridgeTest.romWithProgram(0x8000, PROGRAM);
+        rom[0x40] = (byte) 0xD9;   // VBLANK : RETI
+        rom[0x48] = 0x14;          // LCD_STAT : INC D; RETI
+        rom[0x49] = (byte) 0xD9;
+        rom[0x50] = 0x0C;          // TIMER : INC C; RETI
+        rom[0x51] = (byte) 0xD9;
+        return new GameBoy(CartridgeTest.cartridgeWithData(rom));
+    }
+
+    private static void assertSameState(GameBoy expected, GameBoy actual) {
+        assertEquals(expected.cycles(), actual.cycles());
+        assertArrayEquals(expected.cpu()._testGetPcSpAFBCDEHL(), actual.cpu()._testGetPcSpAFBCDEHL());
+        assertEquals(expected.lcdController().frameCount(), actual.lcdController().frameCount());
+        for (int address = 0xFF00; address < 0x10000; ++address)
+            assertEquals(expected.bus().read(address), actual.bus().read(address));
+    }
+
+    @Test
+    void haltedRunMatchesReferenceScheduling() {
+        Random rng = newRandom();
+        GameBoy reference = newGameBoy();
+        GameBoy skipped = newGameBoy();
+        reference.setReferenceScheduling(true);
+
+        //La ROM de démarrage s'exécute pendant environ 2 100 000 cycles
+        long cycle = 2_000_000;
+        for (int i = 0; i < 50; ++i) {
+            cycle += rng.nextInt(50_000);
+            reference.runUntil(cycle);
+            skipped.runUntil(cycle);
+            assertSameState(reference, skipped);
+        }
+        assertTrue(reference.lcdController().frameCount() > 0);
+    }
+
+    @Test
+    void timerRegistersAreUpToDateAfterHaltedRun() {
+        int[] program = {
+                0x3E, 0x05,       // LD A,05      (minuteur activé, période de 4 cycles)
+                0xE0, 0x07,       // LDH (07),A
+                0xAF,             // XOR A        (aucune interruption ne réveille le processeur)
+                0xE0, 0xFF,       // LDH (FF),A
+                0xF3,             // DI
+                0x76,             // HALT
+                0x18, 0xFD,       // JR -3        (HALT)
+        };
+        GameBoy gameBoy = new GameBoy(CartridgeTest.cartridgeWithProgram(program), true);
+        GameBoy synced = new GameBoy(CartridgeTest.cartridgeWithProgram(program), true);
+
+        Random rng = newRandom();
+        long cycle = 0;
+        for (int i = 0; i < 500; ++i) {
+            cycle += 1 + rng.nextInt(2_000);
+            gameBoy.runUntil(cycle);
+            synced.runUntil(cycle);
+            //Le minuteur est explicitement mis à jour jusqu'au dernier cycle simulé
+            synced.timer().cycle(cycle - 1);
+            assertEquals(synced.timer().read(AddressMap.REG_DIV), gameBoy.bus().read(AddressMap.REG_DIV));
+            assertEquals(synced.timer().read(AddressMap.REG_TIMA), gameBoy.bus().read(AddressMap.REG_TIMA));
+        }
+        assertTrue(gameBoy.cpu().isHalted());
+    }
+}
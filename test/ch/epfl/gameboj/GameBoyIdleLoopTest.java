@@ -0,0 +1,86 @@
+package ch.epfl.gameboj;
+
+import ch.epfl.gameboj.component.cartridge.CartridgeTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class GameBoyIdleLoopTest {
+
+    private static final int[] PROGRAM = {
+            0x3E, 0x05,       // LD A,05      (minuteur activé, période de 4 cycles)
+            0xE0, 0x07,       // LDH (07),A
+            0x3E, 0x04,       // LD A,04      (TIMER)
+            0xE0, 0xFF,       // LDH (FF),A
+            0xFB,             // EI
+            0xF0, 0x44,       // LDH A,(44)   (attente de LY = 90)
+            0xFE, 0x90,       // CP 90
+            0x20, 0xFA,       // JR NZ,-6
+            0xF0, 0x41,       // LDH A,(41)   (attente du mode 0)
+            0xE6, 0x03,       // AND 03
+            0x20, 0xFA,       // JR NZ,-6
+            0xF0, 0x04,       // LDH A,(04)   (attente de DIV multiple de 8)
+            0xE6, 0x07,       // AND 07
+            0x20, 0xFA,       // JR NZ,-6
+            0xF0, 0x05,       // LDH A,(05)   (TIMA, qui dépend du cycle exact de la sortie des boucles)
+            0x84,             // ADD A,H
+            0x67,             // LD H,A
+            0x04,             // INC B
+            0x18, 0xE7,       // JR -25       (attente de LY = 90)
+    };
+
+    private static GameBoy newGameBoy() {
+        byte[] rom = CartridgeTest.romWithProgram(0x8000, PROGRAM);
+        rom[0x50] = 0x0C;          // TIMER : INC C; RETI
+        rom[0x51] = (byte) 0xD9;
+        return new GameBoy(CartridgeTest.cartridgeWithData(rom));
+    }
+
+    private static void assertSameRun(Random rng, GameBoy reference, GameBoy skipped) {
+        reference.setReferenceScheduling(true);
+
+        long cycle = 0;
+        for (int i = 0; i < 100; ++i) {
+            cycle += rng.nextInt(100_000);
+            reference.runUntil(cycle);
+            skipped.runUntil(cycle);
+
+            assertArrayEquals(reference.cpu()._testGetPcSpAFBCDEHL(), skipped.cpu()._testGetPcSpAFBCDEHL());
+            for (int address = 0xFF00; address < 0x10000; ++address)
+                assertEquals(reference.bus().read(address), skipped.bus().read(address));
+        }
+        assertEquals(0, reference.skippedIdleCycles());
+    }
+
+    @Test
+    void idleLoopSkippingMatchesReferenceScheduling() {
+        GameBoy skipped = newGameBoy();
+        assertSameRun(newRandom(), newGameBoy(), skipped);
+        assertTrue(skipped.skippedIdleCycles() > 0);
+    }
+
+    @Test
+    void timerPollingLoopsAreSkipped() {
+        int[] program = {
+                0x3E, 0x04,       // LD A,04      (minuteur activé, période de 256 cycles)
+                0xE0, 0x07,       // LDH (07),A
+                0xF0, 0x05,       // LDH A,(05)   (attente de TIMA = 80)
+                0xFE, 0x80,       // CP 80
+                0x20, 0xFA,       // JR NZ,-6
+                0xF0, 0x04,       // LDH A,(04)   (attente de DIV multiple de 16)
+                0xE6, 0x0F,       // AND 0F
+                0x20, 0xFA,       // JR NZ,-6
+                0x04,             // INC B
+                0x18, 0xF1,       // JR -15       (attente de TIMA = 80)
+        };
+        GameBoy skipped = new GameBoy(CartridgeTest.cartridgeWithProgram(program), true);
+        assertSameRun(newRandom(), new GameBoy(CartridgeTest.cartridgeWithProgram(program), true), skipped);
+        //DIV change tous les 64 cycles, et chaque itération dure 8 cycles
+        assertTrue(skipped.skippedIdleCycles() > skipped.cycles() / 4);
+    }
+}
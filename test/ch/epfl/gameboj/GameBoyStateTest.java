@@ -0,0 +1,165 @@
+package ch.epfl.gameboj;
+
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.cartridge.CartridgeTest;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class GameBoyStateTest {
+
+    private static final int[] PROGRAM = {
+            0x3E, 0x0A,             // LD A,0A      (mémoire vive de la cartouche activée)
+            0xEA, 0x00, 0x00,       // LD (0000),A
+            0x3E, 0x05,             // LD A,05      (minuteur activé)
+            0xE0, 0x07,             // LDH (07),A
+            0x3E, 0x07,             // LD A,07      (VBLANK, LCD_STAT et TIMER)
+            0xE0, 0xFF,             // LDH (FF),A
+            0x3E, 0xC9,             // LD A,C9      (RET en FF81)
+            0xE0, 0x81,             // LDH (81),A
+            0xFB,                   // EI
+            0x21, 0x00, 0xC0,       // LD HL,C000
+            0x11, 0x00, 0x80,       // LD DE,8000
+            0x01, 0x00, 0xA0,       // LD BC,A000
+            0xF0, 0x04,             // LDH A,(04)   (boucle, à l'adresse 016B)
+            0xAE,                   // XOR (HL)
+            0x22,                   // LD (HL+),A   (mémoire de travail)
+            0x12,                   // LD (DE),A    (mémoire vidéo)
+            0x13,                   // INC DE
+            0x02,                   // LD (BC),A    (mémoire vive de la cartouche)
+            0x03,                   // INC BC
+            0xE0, 0x90,             // LDH (90),A   (mémoire haute)
+            0xFA, 0x00, 0x40,       // LD A,(4000)  (octet propre à la banque choisie au tour précédent)
+            0xE6, 0x01, 0xF6, 0x3C, // AND 01; OR 3C
+            0xE0, 0x80,             // LDH (80),A   (INC A ou DEC A en FF80)
+            0x7C, 0xE6, 0x1F, 0xF6, 0xC0, 0x67,   // H = C0 | (H & 1F)
+            0x7A, 0xE6, 0x1F, 0xF6, 0x80, 0x57,   // D = 80 | (D & 1F)
+            0x78, 0xE6, 0x1F, 0xF6, 0xA0, 0x47,   // B = A0 | (B & 1F)
+            0xC5,                   // PUSH BC
+            0x7D, 0xE6, 0x0F, 0xF6, 0x40, 0x4F,   // C = 40 | (L & 0F)
+            0xF0, 0x04,             // LDH A,(04)
+            0xF6, 0x81,             // OR 81        (écran et arrière-plan allumés si C = 40)
+            0xE2,                   // LD (C),A     (registre du contrôleur d'écran)
+            0xC1,                   // POP BC
+            0xF0, 0x91,             // LDH A,(91)
+            0xCD, 0x80, 0xFF,       // CALL FF80    (compteur en FF91)
+            0xE0, 0x91,             // LDH (91),A
+            0xF0, 0x04,             // LDH A,(04)
+            0xEA, 0x00, 0x20,       // LD (2000),A  (banque de la ROM, lue au tour suivant)
+            0xC3, 0x6B, 0x01,       // JP 016B
+    };
+
+    private static byte[] programRom() {
+        byte[] rom = CartridgeTest.romWithProgram(0x10000, PROGRAM);
+        rom[0x147] = 2;            // MBC1 avec mémoire vive
+        rom[0x148] = 1;            // 64 Kio de ROM
+        rom[0x149] = 2;            // 8 Kio de mémoire vive
+        for (int vector = 0x40; vector <= 0x60; vector += 8)
+            rom[vector] = (byte) 0xD9;  // RETI
+        for (int bank = 1; bank < 4; ++bank)
+            rom[bank * 0x4000] = (byte) bank;
+        return rom;
+    }
+
+    private static ByteBuffer stateOf(GameBoy gameBoy) {
+        ByteBuffer state = ByteBuffer.allocateDirect(gameBoy.stateSize());
+        gameBoy.saveState(state);
+        assertEquals(0, state.remaining());
+        return state.flip();
+    }
+
+    @Test
+    void restoredGameBoyEvolvesIdentically() {
+        Random rng = newRandom();
+        byte[] rom = programRom();
+        GameBoy original = new GameBoy(CartridgeTest.cartridgeWithData(rom), true);
+
+        for (int i = 0; i < 10; ++i) {
+            original.runUntil(original.cycles() + rng.nextInt(200_000));
+            ByteBuffer saved = stateOf(original);
+
+            long end = original.cycles() + rng.nextInt(200_000);
+            original.runUntil(end);
+            ByteBuffer expected = stateOf(original);
+
+            GameBoy restored = new GameBoy(CartridgeTest.cartridgeWithData(rom), true);
+            restored.loadState(saved);
+            assertEquals(0, saved.remaining());
+            restored.runUntil(end);
+            assertEquals(expected, stateOf(restored));
+
+            original.loadState(saved.rewind());
+            original.runUntil(end);
+            assertEquals(expected, stateOf(original));
+        }
+    }
+
+    @Test
+    void forkedGameBoysEvolveIndependently() {
+        Random rng = newRandom();
+        byte[] rom = programRom();
+        GameBoy original = new GameBoy(CartridgeTest.cartridgeWithData(rom), true);
+        GameBoy reused = new GameBoy(CartridgeTest.cartridgeWithData(rom), true);
+
+        for (int i = 0; i < 10; ++i) {
+            original.runUntil(original.cycles() + rng.nextInt(200_000));
+            Key key = Key.values()[rng.nextInt(Key.values().length)];
+            if (rng.nextBoolean())
+                original.joypad().keyPressed(key);
+            else
+                original.joypad().keyReleased(key);
+            ByteBuffer saved = stateOf(original);
+            GameBoy fork = original.fork();
+            reused.copyStateFrom(original);
+            assertEquals(saved, stateOf(fork));
+            assertEquals(saved, stateOf(reused));
+
+            long end = original.cycles() + rng.nextInt(200_000);
+            original.runUntil(end + rng.nextInt(200_000));
+            fork.runUntil(end);
+            reused.runUntil(end);
+
+            GameBoy restored = new GameBoy(CartridgeTest.cartridgeWithData(rom), true);
+            restored.loadState(saved);
+            restored.runUntil(end);
+            ByteBuffer expected = stateOf(restored);
+            assertEquals(expected, stateOf(fork));
+            assertEquals(expected, stateOf(reused));
+
+            original = rng.nextBoolean() ? original : fork;
+        }
+    }
+
+    @Test
+    void saveStateReusesBuffer() {
+        GameBoy gameBoy = new GameBoy(CartridgeTest.cartridgeWithData(programRom()), true);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(gameBoy.stateSize());
+        for (int i = 1; i <= 5; ++i) {
+            gameBoy.runUntil(i * 10_000);
+            gameBoy.saveState(buffer.clear());
+            assertEquals(stateOf(gameBoy), buffer.flip());
+        }
+    }
+
+    @Test
+    void loadStateFailsForInvalidState() {
+        GameBoy gameBoy = new GameBoy(CartridgeTest.cartridgeWithData(programRom()), true);
+        ByteBuffer state = stateOf(gameBoy);
+
+        for (int i = 0; i < 3 * Integer.BYTES; ++i) {
+            ByteBuffer corrupted = ByteBuffer.allocate(state.capacity()).put(state.duplicate()).flip();
+            corrupted.put(i, (byte) (corrupted.get(i) ^ 1));
+            assertThrows(IllegalArgumentException.class, () -> gameBoy.loadState(corrupted));
+            assertEquals(0, corrupted.position());
+        }
+
+        GameBoy other = new GameBoy(CartridgeTest.cartridgeWithData(new byte[0x8000]), true);
+        assertThrows(IllegalArgumentException.class, () -> other.loadState(state.duplicate()));
+        assertThrows(IllegalArgumentException.class, () -> gameBoy.saveState(ByteBuffer.allocate(10)));
+    }
+}
@@ -0,0 +1,138 @@
+package ch.epfl.gameboj;
+
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.cartridge.CartridgeTest;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class InputMovieTest {
+
+    private static final int[] PROGRAM = {
+            0x21, 0x00, 0xC0,       // LD HL,C000
+            0x3E, 0x10,             // LD A,10      (boucle, à l'adresse 0153 : boutons)
+            0xE0, 0x00,             // LDH (00),A
+            0xF0, 0x00,             // LDH A,(00)
+            0x47,                   // LD B,A
+            0x3E, 0x20,             // LD A,20      (direction)
+            0xE0, 0x00,             // LDH (00),A
+            0xF0, 0x00,             // LDH A,(00)
+            0xA8,                   // XOR B
+            0x86,                   // ADD A,(HL)
+            0x77,                   // LD (HL),A    (état du joypad accumulé en mémoire de travail)
+            0x2C,                   // INC L
+            0xC3, 0x53, 0x01,       // JP 0153
+    };
+
+    private static byte[] programRom() {
+        byte[] rom = CartridgeTest.romWithProgram(0x8000, PROGRAM);
+        rom[0x147] = 2;            // MBC1 avec mémoire vive
+        rom[0x149] = 2;            // 8 Kio de mémoire vive
+        return rom;
+    }
+
+    private static ByteBuffer stateOf(GameBoy gameBoy) {
+        ByteBuffer state = ByteBuffer.allocate(gameBoy.stateSize());
+        gameBoy.saveState(state);
+        return state.flip();
+    }
+
+    private static InputMovie copyOf(InputMovie movie) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        movie.writeTo(out);
+        return InputMovie.readFrom(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    void replayedMovieReproducesSession() throws IOException {
+        Random rng = newRandom();
+        Cartridge cartridge = CartridgeTest.cartridgeWithData(programRom());
+        //Mémoire vive laissée par une session précédente
+        cartridge.write(0x0000, 0x0A);
+        for (int i = 0; i < 0x100; ++i)
+            cartridge.write(0xA000 + rng.nextInt(0x2000), rng.nextInt(0x100));
+        InputMovie.Recorder recorder = new InputMovie.Recorder(cartridge, true);
+        GameBoy session = new GameBoy(cartridge, true);
+        Key[] keys = Key.values();
+
+        for (int i = 0; i < 200; ++i) {
+            session.runUntil(session.cycles() + rng.nextInt(5_000));
+            Key key = keys[rng.nextInt(keys.length)];
+            if (rng.nextBoolean()) {
+                recorder.keyPressed(session.cycles(), key);
+                session.joypad().keyPressed(key);
+            } else {
+                recorder.keyReleased(session.cycles(), key);
+                session.joypad().keyReleased(key);
+            }
+        }
+        session.runUntil(session.cycles() + 10_000);
+        InputMovie movie = copyOf(recorder.toMovie(session.cycles()));
+        assertEquals(200, movie.size());
+
+        //Rejeu en une fois, puis par tranches quelconques avec le recompilateur
+        GameBoy replay = movie.newGameBoy(CartridgeTest.cartridgeWithData(programRom()));
+        movie.play(replay, movie.endCycle());
+        assertEquals(stateOf(session), stateOf(replay));
+
+        GameBoy chunked = movie.newGameBoy(CartridgeTest.cartridgeWithData(programRom()));
+        chunked.enableRecompiler();
+        while (chunked.cycles() < movie.endCycle())
+            movie.play(chunked, Math.min(movie.endCycle(), chunked.cycles() + rng.nextInt(20_000)));
+        assertEquals(stateOf(session), stateOf(chunked));
+
+        GameBoy withoutInputs = new GameBoy(cartridge.fork(), true);
+        withoutInputs.loadState(stateOf(movie.newGameBoy(cartridge)));
+        withoutInputs.runUntil(movie.endCycle());
+        assertNotEquals(stateOf(session), stateOf(withoutInputs));
+    }
+
+    @Test
+    void truncateForgetsLaterChanges() {
+        InputMovie.Recorder recorder = new InputMovie.Recorder(CartridgeTest.cartridgeWithData(programRom()), false);
+        recorder.keyPressed(10, Key.A);
+        recorder.keyReleased(20, Key.A);
+        recorder.keyPressed(30, Key.B);
+        recorder.truncate(20);
+        assertEquals(1, recorder.toMovie(20).size());
+
+        recorder.keyPressed(25, Key.START);
+        assertEquals(2, recorder.toMovie(25).size());
+    }
+
+    @Test
+    void recorderFailsForDecreasingCycles() {
+        InputMovie.Recorder recorder = new InputMovie.Recorder(CartridgeTest.cartridgeWithData(programRom()), false);
+        recorder.keyPressed(10, Key.A);
+        assertThrows(IllegalArgumentException.class, () -> recorder.keyReleased(9, Key.A));
+        assertThrows(IllegalArgumentException.class, () -> recorder.toMovie(9));
+    }
+
+    @Test
+    void movieFailsForOtherRomOrInvalidData() throws IOException {
+        InputMovie.Recorder recorder = new InputMovie.Recorder(CartridgeTest.cartridgeWithData(programRom()), false);
+        recorder.keyPressed(10, Key.A);
+        InputMovie movie = recorder.toMovie(100);
+        assertThrows(IllegalArgumentException.class,
+                () -> movie.newGameBoy(CartridgeTest.cartridgeWithData(new byte[0x8000])));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        movie.writeTo(out);
+        byte[] bytes = out.toByteArray();
+        for (int i : new int[] { 0, 4, bytes.length - 1, bytes.length - 9 }) {
+            byte[] corrupted = bytes.clone();
+            corrupted[i] ^= 0x40;
+            assertThrows(IOException.class, () -> InputMovie.readFrom(new ByteArrayInputStream(corrupted)));
+        }
+    }
+}
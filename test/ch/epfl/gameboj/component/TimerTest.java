@@ -158,4 +158,43 @@ public final class TimerTest implements ComponentTest {
             assertEquals(t.read(0xFF05), tma);
         }
     }
+
+    @Test
+    void cycleCatchesUpSkippedCycles() {
+        for (int tac = 0b100; tac <= 0b111; ++tac) {
+            Timer stepped = newComponent();
+            Timer skipped = newComponent();
+            stepped.write(0xFF07, tac);
+            skipped.write(0xFF07, tac);
+            for (int c = 0; c < 0x2345; ++c)
+                stepped.cycle(c);
+            skipped.cycle(0x1000);
+            skipped.cycle(0x2344);
+            assertEquals(stepped.read(0xFF04), skipped.read(0xFF04));
+            assertEquals(stepped.read(0xFF05), skipped.read(0xFF05));
+        }
+    }
+
+    @Test
+    void nextNonIdleCycleIsMaxWhenDisabled() {
+        Timer t = newComponent();
+        t.write(0xFF07, 0b011);
+        assertEquals(Long.MAX_VALUE, t.nextNonIdleCycle(0));
+    }
+
+    @Test
+    void nextNonIdleCycleIsCycleOfTimaOverflow() {
+        Cpu cpu = new Cpu();
+        Timer t = new Timer(cpu);
+        t.write(0xFF07, 0b101);
+        t.write(0xFF05, 0xFE);
+        long overflow = t.nextNonIdleCycle(0);
+        assertEquals(7, overflow);
+        for (long c = 0; c < overflow; ++c) {
+            t.cycle(c);
+            assertEquals(0, cpu.read(0xFF0F));
+        }
+        t.cycle(overflow);
+        assertEquals(Cpu.Interrupt.TIMER.mask(), cpu.read(0xFF0F));
+    }
 }
@@ -0,0 +1,129 @@
+package ch.epfl.gameboj.component.cartridge;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class BatteryRamTest {
+
+    private static File tempSaveFile() throws IOException {
+        File f = Files.createTempFile("TestSave_", ".sav").toFile();
+        f.deleteOnExit();
+        return f;
+    }
+
+    @Test
+    void factoriesFailForInvalidSize() {
+        assertThrows(IllegalArgumentException.class, () -> BatteryRam.inMemory(-1));
+        assertThrows(IllegalArgumentException.class, () -> BatteryRam.ofFile(tempSaveFile(), -1));
+    }
+
+    @Test
+    void writeFailsForInvalidValue() {
+        BatteryRam ram = BatteryRam.inMemory(10);
+        assertThrows(IllegalArgumentException.class, () -> ram.write(0, 0x100));
+    }
+
+    @Test
+    void readReturnsWrittenValue() {
+        Random rng = newRandom();
+        BatteryRam ram = BatteryRam.inMemory(0x2000);
+        assertEquals(0x2000, ram.size());
+        int[] expected = new int[ram.size()];
+        for (int i = 0; i < ram.size(); ++i) {
+            expected[i] = rng.nextInt(0x100);
+            ram.write(i, expected[i]);
+        }
+        ram.flush();
+        for (int i = 0; i < ram.size(); ++i)
+            assertEquals(expected[i], ram.read(i));
+    }
+
+    @Test
+    void savedContentSurvivesNewInstance() throws IOException {
+        Random rng = newRandom();
+        File f = tempSaveFile();
+        BatteryRam ram = BatteryRam.ofFile(f, 0x8000);
+        byte[] expected = new byte[ram.size()];
+        rng.nextBytes(expected);
+        for (int i = 0; i < ram.size(); ++i)
+            ram.write(i, Byte.toUnsignedInt(expected[i]));
+        ram.flush();
+
+        assertEquals(0x8000, f.length());
+        byte[] saved = Files.readAllBytes(f.toPath());
+        BatteryRam reopened = BatteryRam.ofFile(f, 0x8000);
+        for (int i = 0; i < expected.length; ++i) {
+            assertEquals(expected[i], saved[i]);
+            assertEquals(Byte.toUnsignedInt(expected[i]), reopened.read(i));
+        }
+    }
+
+    @Test
+    void copiedContentIsNotSavedInSourceFile() throws IOException {
+        Random rng = newRandom();
+        File f = tempSaveFile();
+        BatteryRam ram = BatteryRam.ofFile(f, 0x2000);
+        for (int i = 0; i < ram.size(); ++i)
+            ram.write(i, rng.nextInt(0x100));
+        ram.flush();
+        byte[] saved = Files.readAllBytes(f.toPath());
+
+        BatteryRam copy = BatteryRam.inMemory(0x2000);
+        copy.copyContentsFrom(ram);
+        for (int i = 0; i < copy.size(); ++i) {
+            assertEquals(ram.read(i), copy.read(i));
+            copy.write(i, (copy.read(i) + 1) & 0xFF);
+        }
+        copy.flush();
+        ram.flush();
+
+        byte[] after = Files.readAllBytes(f.toPath());
+        for (int i = 0; i < saved.length; ++i) {
+            assertEquals(saved[i], after[i]);
+            assertEquals(Byte.toUnsignedInt(saved[i]), ram.read(i));
+        }
+    }
+
+    @Test
+    void onlyFirstInstanceOfFileIsSaved() throws IOException {
+        Random rng = newRandom();
+        File f = tempSaveFile();
+        BatteryRam owner = BatteryRam.ofFile(f, 0x2000);
+        for (int i = 0; i < owner.size(); ++i)
+            owner.write(i, rng.nextInt(0x100));
+        owner.flush();
+
+        BatteryRam other = BatteryRam.ofFile(f, 0x2000);
+        assertTrue(owner.isSaved());
+        assertFalse(other.isSaved());
+        for (int i = 0; i < other.size(); ++i) {
+            assertEquals(owner.read(i), other.read(i));
+            other.write(i, (other.read(i) + 1) & 0xFF);
+        }
+        other.flush();
+
+        byte[] saved = Files.readAllBytes(f.toPath());
+        for (int i = 0; i < saved.length; ++i)
+            assertEquals(owner.read(i), Byte.toUnsignedInt(saved[i]));
+    }
+
+    @Test
+    void copyOfFileIsEmptyForMissingFile() throws IOException {
+        File f = tempSaveFile();
+        Files.delete(f.toPath());
+        BatteryRam ram = BatteryRam.copyOfFile(f, 0x100);
+        for (int i = 0; i < ram.size(); ++i)
+            assertEquals(0, ram.read(i));
+        assertFalse(f.exists());
+    }
+}
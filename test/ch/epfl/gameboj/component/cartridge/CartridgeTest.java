@@ -2,7 +2,9 @@
 
 package ch.epfl.gameboj.component.cartridge;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -30,6 +32,24 @@ public final class CartridgeTest implements ComponentTest {
         }
     }
     
+    /**
+     * Construit le contenu d'une ROM sans contrôleur de banque dont le point d'entrée (0100) saute au programme
+     * donné, placé en 0150 juste après l'en-tête
+     */
+    public static byte[] romWithProgram(int romSize, int[] program) {
+        byte[] rom = new byte[romSize];
+        rom[0x100] = (byte) 0xC3;  // JP 0150
+        rom[0x101] = 0x50;
+        rom[0x102] = 0x01;
+        for (int i = 0; i < program.length; ++i)
+            rom[0x150 + i] = (byte) program[i];
+        return rom;
+    }
+
+    public static Cartridge cartridgeWithProgram(int[] program) {
+        return cartridgeWithData(romWithProgram(0x8000, program));
+    }
+
     @Override
     public Component newComponent() {
         return cartridgeWithData(new byte[0x8000]);
@@ -50,4 +70,58 @@ public final class CartridgeTest implements ComponentTest {
             cartridgeWithData(romData);
         });
     }
+
+    @Test
+    void saveFileOfReplacesLastExtension() {
+        File dir = new File("roms").getAbsoluteFile();
+        assertEquals(new File(dir, "zelda.sav"), Cartridge.saveFileOf(new File(dir, "zelda.gb")));
+        assertEquals(new File(dir, "game.gb.sav"), Cartridge.saveFileOf(new File(dir, "game.gb.zip")));
+        assertEquals(new File(dir, "game.sav"), Cartridge.saveFileOf(new File(dir, "game")));
+    }
+
+    @Test
+    void batteryBackedRamIsRestoredFromSaveFile() throws IOException {
+        byte[] romData = new byte[0x10000];
+        romData[0x147] = 3;
+        romData[0x149] = 2;
+        File romFile = Files.createTempFile("TestROM_", ".gb").toFile();
+        romFile.deleteOnExit();
+        Files.write(romFile.toPath(), romData);
+        File saveFile = Cartridge.saveFileOf(romFile);
+        saveFile.deleteOnExit();
+
+        Cartridge c1 = Cartridge.ofFile(romFile);
+        c1.write(0x0000, 0x0A);
+        for (int a = 0xA000; a < 0xC000; ++a)
+            c1.write(a, a & 0xFF);
+        BatteryRam.flushAll();
+        assertEquals(0x2000, saveFile.length());
+
+        Cartridge c2 = Cartridge.ofFile(romFile);
+        c2.write(0x0000, 0x0A);
+        for (int a = 0xA000; a < 0xC000; ++a)
+            assertEquals(a & 0xFF, c2.read(a));
+    }
+
+    @Test
+    void unwritableSaveFileFallsBackToMemory() throws IOException {
+        byte[] romData = new byte[0x10000];
+        romData[0x147] = 3;
+        romData[0x149] = 2;
+        File romFile = Files.createTempFile("TestROM_", ".gb").toFile();
+        romFile.deleteOnExit();
+        Files.write(romFile.toPath(), romData);
+        //Un répertoire occupe la place du fichier de sauvegarde, qui ne peut donc pas être créé
+        File saveFile = Cartridge.saveFileOf(romFile);
+        Files.createDirectory(saveFile.toPath());
+        saveFile.deleteOnExit();
+
+        Cartridge c = Cartridge.ofFile(romFile);
+        c.write(0x0000, 0x0A);
+        for (int a = 0xA000; a < 0xC000; ++a)
+            c.write(a, a & 0xFF);
+        for (int a = 0xA000; a < 0xC000; ++a)
+            assertEquals(a & 0xFF, c.read(a));
+        assertTrue(saveFile.isDirectory());
+    }
 }
@@ -0,0 +1,135 @@
+package ch.epfl.gameboj.component.cartridge;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+class RomLoaderTest {
+
+    private static byte[] randomRom() {
+        Random rng = newRandom();
+        byte[] data = new byte[0x8000];
+        rng.nextBytes(data);
+        return data;
+    }
+
+    private static File tempFile(String suffix) throws IOException {
+        File f = Files.createTempFile("TestROM_", suffix).toFile();
+        f.deleteOnExit();
+        return f;
+    }
+
+    private static void assertContentEquals(byte[] expected, ByteBuffer actual) {
+        assertTrue(actual.isReadOnly());
+        assertEquals(0, actual.position());
+        assertEquals(expected.length, actual.remaining());
+        for (int i = 0; i < expected.length; ++i)
+            assertEquals(expected[i], actual.get(i));
+    }
+
+    @Test
+    void loadReadsPlainFile() throws IOException {
+        byte[] rom = randomRom();
+        File f = tempFile(".gb");
+        Files.write(f.toPath(), rom);
+        assertContentEquals(rom, RomLoader.load(f));
+    }
+
+    @Test
+    void loadDecompressesGzipFile() throws IOException {
+        byte[] rom = randomRom();
+        File f = tempFile(".bin.gz");
+        try (OutputStream s = new GZIPOutputStream(Files.newOutputStream(f.toPath()))) {
+            s.write(rom);
+        }
+        assertContentEquals(rom, RomLoader.load(f));
+    }
+
+    @Test
+    void loadDecompressesFirstRomOfZipFile() throws IOException {
+        byte[] rom = randomRom();
+        File f = tempFile(".gb.zip");
+        try (ZipOutputStream s = new ZipOutputStream(Files.newOutputStream(f.toPath()))) {
+            s.putNextEntry(new ZipEntry("game/"));
+            s.putNextEntry(new ZipEntry("game/README.md"));
+            s.write(new byte[] { 1, 2, 3 });
+            s.putNextEntry(new ZipEntry("game/build/game.gb"));
+            s.write(rom);
+        }
+        assertContentEquals(rom, RomLoader.load(f));
+    }
+
+    @Test
+    void loadFailsForZipFileWithoutRom() throws IOException {
+        File f = tempFile(".zip");
+        try (ZipOutputStream s = new ZipOutputStream(Files.newOutputStream(f.toPath()))) {
+            s.putNextEntry(new ZipEntry("README.md"));
+            s.write(new byte[] { 1, 2, 3 });
+        }
+        assertThrows(IOException.class, () -> RomLoader.load(f));
+    }
+
+    @Test
+    void loadSharesBufferOfUnchangedFile() throws IOException {
+        File f = tempFile(".gb");
+        Files.write(f.toPath(), randomRom());
+        assertSame(RomLoader.load(f), RomLoader.load(f));
+    }
+
+    @Test
+    void loadSharesBufferOfUsedRomAfterGarbageCollection() throws IOException, InterruptedException {
+        byte[] rom = randomRom();
+        rom[0x147] = 0;
+        File plain = tempFile(".gb");
+        Files.write(plain.toPath(), rom);
+        File zipped = tempFile(".zip");
+        try (ZipOutputStream s = new ZipOutputStream(Files.newOutputStream(zipped.toPath()))) {
+            s.putNextEntry(new ZipEntry("game.gb"));
+            s.write(rom);
+        }
+
+        for (File f : new File[] { plain, zipped }) {
+            //Seule la cartouche référence fortement le tampon chargé
+            Cartridge cartridge = Cartridge.ofFile(f);
+            WeakReference<ByteBuffer> loaded = new WeakReference<>(RomLoader.load(f));
+            for (int i = 0; i < 10 && loaded.get() != null; ++i) {
+                System.gc();
+                Thread.sleep(10);
+            }
+            assertSame(loaded.get(), RomLoader.load(f));
+            assertEquals(rom[0x150] & 0xFF, cartridge.read(0x150));
+        }
+    }
+
+    @Test
+    void loadReloadsModifiedFile() throws IOException {
+        File f = tempFile(".gb");
+        Files.write(f.toPath(), new byte[0x8000]);
+        ByteBuffer first = RomLoader.load(f);
+
+        byte[] rom = randomRom();
+        Files.write(f.toPath(), rom);
+        Files.setLastModifiedTime(f.toPath(), FileTime.fromMillis(f.lastModified() + 10_000));
+        ByteBuffer second = RomLoader.load(f);
+
+        assertNotSame(first, second);
+        assertContentEquals(rom, second);
+    }
+}
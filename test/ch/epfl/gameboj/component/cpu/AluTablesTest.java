@@ -0,0 +1,47 @@
+package ch.epfl.gameboj.component.cpu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.cpu.Alu.RotDir;
+
+class AluTablesTest {
+
+    @Test
+    void addAndSubTablesMatchAlu() {
+        for (int l = 0; l <= 0xFF; ++l) {
+            for (int r = 0; r <= 0xFF; ++r) {
+                for (boolean c : new boolean[] {false, true}) {
+                    assertEquals(Alu.add(l, r, c), AluTables.add(l, r, c));
+                    assertEquals(Alu.sub(l, r, c), AluTables.sub(l, r, c));
+                }
+            }
+        }
+    }
+
+    @Test
+    void rotateShiftAndSwapTablesMatchAlu() {
+        for (int v = 0; v <= 0xFF; ++v) {
+            for (RotDir d : RotDir.values()) {
+                assertEquals(Alu.rotate(d, v), AluTables.rotate(d, v));
+                assertEquals(Alu.rotate(d, v, false), AluTables.rotate(d, v, false));
+                assertEquals(Alu.rotate(d, v, true), AluTables.rotate(d, v, true));
+            }
+            assertEquals(Alu.shiftLeft(v), AluTables.shiftLeft(v));
+            assertEquals(Alu.shiftRightA(v), AluTables.shiftRightA(v));
+            assertEquals(Alu.shiftRightL(v), AluTables.shiftRightL(v));
+            assertEquals(Alu.swap(v), AluTables.swap(v));
+        }
+    }
+
+    @Test
+    void bcdAdjustTableMatchesAluForAllFlags() {
+        for (int v = 0; v <= 0xFF; ++v) {
+            for (int f = 0; f <= 0xF0; f += 0x10) {
+                boolean n = (f & 0x40) != 0, h = (f & 0x20) != 0, c = (f & 0x10) != 0;
+                assertEquals(Alu.bcdAdjust(v, n, h, c), AluTables.bcdAdjust(v, f));
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package ch.epfl.gameboj.component.cpu;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.lang.invoke.MethodHandles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.cartridge.MBC0;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+import ch.epfl.gameboj.component.memory.Rom;
+
+class BlockCompilerTest {
+    private static final int ROM_SIZE = 0x8000;
+    private static final int RAM_END = 0xFF80;
+    private static final int PROGRAMS = 20;
+    private static final int CYCLES = 50_000;
+    private static final int EVENT_PERIOD = 97;
+
+    private static final class Machine {
+        private final Cpu cpu = new Cpu();
+        private final Ram ram = new Ram(RAM_END - ROM_SIZE);
+
+        Machine(byte[] program, boolean recompiler) {
+            Bus bus = new Bus();
+            new MBC0(new Rom(program)).attachTo(bus);
+            new RamController(ram, ROM_SIZE, RAM_END).attachTo(bus);
+            cpu.attachTo(bus);
+            if (recompiler)
+                cpu.enableRecompiler(address -> 0);
+        }
+
+        Class<?> run(long cycle, long horizon) {
+            try {
+                cpu.setCycleHorizon(horizon);
+                cpu.cycle(cycle);
+                return null;
+            } catch (RuntimeException | Error e) {
+                return e.getClass();
+            }
+        }
+    }
+
+    //Programme fait surtout d'instructions compilables, entrecoupées de sauts relatifs et d'autres instructions
+    private static byte[] randomProgram(Random rng) {
+        List<Opcode> compilable = new ArrayList<>(), others = new ArrayList<>();
+        for (Opcode o : Opcode.values()) {
+            if (o.kind != Opcode.Kind.DIRECT || o == Opcode.STOP || o.encoding == 0xCB)
+                continue;
+            switch (o.family) {
+                case NOP: case LD_R8_N8: case LD_R16SP_N16: case LD_R8_R8: case ADD_A_R8: case ADD_A_N8:
+                case INC_R8: case INC_R16SP: case ADD_HL_R16SP: case SUB_A_R8: case SUB_A_N8: case DEC_R8:
+                case CP_A_R8: case CP_A_N8: case DEC_R16SP: case AND_A_R8: case OR_A_R8: case XOR_A_R8: case CPL:
+                case ROTCA: case ROTA: case DAA: case SCCF:
+                    compilable.add(o);
+                    break;
+                default:
+                    others.add(o);
+            }
+        }
+
+        byte[] program = new byte[ROM_SIZE];
+        for (int a = 0; a < program.length; ++a) {
+            int kind = rng.nextInt(20);
+            int b;
+            if (kind == 0)
+                b = others.get(rng.nextInt(others.size())).encoding;
+            else if (kind == 1)
+                b = rng.nextBoolean() ? Opcode.JR_E8.encoding : Opcode.JR_NZ_E8.encoding;
+            else if (kind == 2)
+                b = 0xCB;
+            else
+                b = compilable.get(rng.nextInt(compilable.size())).encoding;
+            program[a] = (byte) b;
+        }
+        return program;
+    }
+
+    @Test
+    void compiledBlocksMatchInterpreter() {
+        Random rng = newRandom();
+        for (int p = 0; p < PROGRAMS; ++p) {
+            byte[] program = randomProgram(rng);
+            Machine interpreted = new Machine(program, false);
+            Machine compiled = new Machine(program, true);
+
+            for (long c = 0; c < CYCLES; ++c) {
+                long horizon = (c / EVENT_PERIOD + 1) * EVENT_PERIOD;
+                if (c % EVENT_PERIOD == 0) {
+                    assertArrayEquals(interpreted.cpu._testGetPcSpAFBCDEHL(), compiled.cpu._testGetPcSpAFBCDEHL());
+                    assertEquals(interpreted.cpu.nextNonIdleCycle(c), compiled.cpu.nextNonIdleCycle(c));
+                    Cpu.Interrupt interrupt = Cpu.Interrupt.values()[rng.nextInt(Cpu.Interrupt.values().length)];
+                    interpreted.cpu.requestInterrupt(interrupt);
+                    compiled.cpu.requestInterrupt(interrupt);
+                }
+
+                Class<?> expectedFailure = interpreted.run(c, horizon);
+                assertEquals(expectedFailure, compiled.run(c, horizon));
+                if (expectedFailure != null)
+                    break;
+            }
+            for (int a = ROM_SIZE; a < RAM_END; ++a)
+                assertEquals(interpreted.ram.read(a - ROM_SIZE), compiled.ram.read(a - ROM_SIZE));
+        }
+    }
+
+    //LD A,01 ; INC A ; JR -3
+    private static final byte[] LOOP = {0x3E, 0x01, 0x3C, 0x18, (byte) 0xFB};
+
+    private static BlockCompiler compilerFor(byte[] code, MethodHandles.Lookup lookup) {
+        byte[] program = new byte[ROM_SIZE];
+        System.arraycopy(code, 0, program, 0, code.length);
+        Bus bus = new Bus();
+        new MBC0(new Rom(program)).attachTo(bus);
+        return new BlockCompiler(lookup, address -> 0, bus);
+    }
+
+    @Test
+    void hotBlockIsCompiled() throws IllegalAccessException {
+        BlockCompiler compiler = compilerFor(LOOP, MethodHandles.privateLookupIn(Cpu.class, MethodHandles.lookup()));
+        for (int i = 1; i < BlockCompiler.HOT_THRESHOLD; ++i)
+            assertNull(compiler.blockAt(0));
+        BlockCompiler.Block block = compiler.blockAt(0);
+        assertNotNull(block);
+        assertEquals(2 + 1 + 3, block.maxCycles);
+    }
+
+    @Test
+    void blockIsInterpretedWhenItsClassCannotBeDefined() {
+        BlockCompiler compiler = compilerFor(LOOP, MethodHandles.publicLookup());
+        for (int i = 0; i < 2 * BlockCompiler.HOT_THRESHOLD; ++i)
+            assertNull(compiler.blockAt(0));
+    }
+}
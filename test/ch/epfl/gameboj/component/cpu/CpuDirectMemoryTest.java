@@ -0,0 +1,91 @@
+package ch.epfl.gameboj.component.cpu;
+
+import static ch.epfl.gameboj.AddressMap.*;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.cartridge.MBC1;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+import ch.epfl.gameboj.component.memory.Rom;
+
+class CpuDirectMemoryTest {
+    private static final int ROM_SIZE = 0x10000;
+    private static final int PROGRAMS = 50;
+    private static final int CYCLES = 5_000;
+
+    private static final class Machine {
+        private final Cpu cpu = new Cpu();
+        private final Bus bus = new Bus();
+
+        Machine(byte[] rom, byte[] workRamData, boolean direct) {
+            Rom cartridgeRom = new Rom(rom);
+            MBC1 mbc = new MBC1(cartridgeRom, 0x2000);
+            Ram videoRam = new Ram(VIDEO_RAM_SIZE);
+            Ram workRam = new Ram(WORK_RAM_SIZE);
+            bus.attach(mbc, CARTRIDGE_ROM_START, CARTRIDGE_ROM_END);
+            bus.attach(mbc, CARTRIDGE_RAM_START, CARTRIDGE_RAM_END);
+            new RamController(videoRam, VIDEO_RAM_START).attachTo(bus);
+            new RamController(workRam, WORK_RAM_START).attachTo(bus);
+            new RamController(workRam, ECHO_RAM_START, ECHO_RAM_END).attachTo(bus);
+            cpu.attachTo(bus);
+            for (int a = 0; a < WORK_RAM_SIZE; ++a)
+                workRam.write(a, Byte.toUnsignedInt(workRamData[a]));
+            if (direct)
+                cpu.attachDirectMemory(cartridgeRom, mbc, workRam);
+        }
+
+        Class<?> run(long cycle) {
+            try {
+                cpu.cycle(cycle);
+                return null;
+            } catch (RuntimeException | Error e) {
+                return e.getClass();
+            }
+        }
+    }
+
+    private static byte[] randomProgram(Random rng, int size) {
+        boolean[] valid = new boolean[0x100];
+        for (Opcode o : Opcode.values()) {
+            if (o.kind == Opcode.Kind.DIRECT && o != Opcode.STOP)
+                valid[o.encoding] = true;
+        }
+        valid[0xCB] = true;
+
+        byte[] program = new byte[size];
+        for (int a = 0; a < program.length; ++a) {
+            int b = rng.nextInt(0x100);
+            program[a] = (byte) (valid[b] ? b : 0);
+        }
+        return program;
+    }
+
+    @Test
+    void directAccessesMatchBusAccesses() {
+        Random rng = newRandom();
+        for (int p = 0; p < PROGRAMS; ++p) {
+            byte[] rom = randomProgram(rng, ROM_SIZE);
+            byte[] workRam = randomProgram(rng, WORK_RAM_SIZE);
+            Machine viaBus = new Machine(rom, workRam, false);
+            Machine direct = new Machine(rom, workRam, true);
+
+            for (long c = 0; c < CYCLES; ++c) {
+                Class<?> expectedFailure = viaBus.run(c);
+                assertEquals(expectedFailure, direct.run(c));
+                if (expectedFailure != null)
+                    break;
+                assertArrayEquals(viaBus.cpu._testGetPcSpAFBCDEHL(), direct.cpu._testGetPcSpAFBCDEHL());
+                assertEquals(viaBus.cpu.nextNonIdleCycle(c), direct.cpu.nextNonIdleCycle(c));
+            }
+            for (int a = 0; a <= 0xFFFF; ++a)
+                assertEquals(viaBus.bus.read(a), direct.bus.read(a));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ch.epfl.gameboj.component.cpu;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+
+class CpuDispatchTest {
+    private static final int RAM_END = 0xFF80;
+    private static final int PROGRAMS = 50;
+    private static final int CYCLES = 2_000;
+
+    private static final class Machine {
+        private final Cpu cpu = new Cpu();
+        private final Ram ram = new Ram(RAM_END);
+
+        Machine(byte[] program, boolean referenceDispatch) {
+            Bus bus = new Bus();
+            new RamController(ram, 0, RAM_END).attachTo(bus);
+            cpu.attachTo(bus);
+            cpu.setReferenceDispatch(referenceDispatch);
+            for (int a = 0; a < program.length; ++a)
+                ram.write(a, Byte.toUnsignedInt(program[a]));
+        }
+
+        Class<?> run(long cycle) {
+            try {
+                cpu.cycle(cycle);
+                return null;
+            } catch (RuntimeException | Error e) {
+                return e.getClass();
+            }
+        }
+    }
+
+    private static byte[] randomProgram(Random rng) {
+        boolean[] valid = new boolean[0x100];
+        for (Opcode o : Opcode.values()) {
+            if (o.kind == Opcode.Kind.DIRECT && o != Opcode.STOP)
+                valid[o.encoding] = true;
+        }
+        valid[0xCB] = true;
+
+        byte[] program = new byte[RAM_END];
+        for (int a = 0; a < program.length; ++a) {
+            int b = rng.nextInt(0x100);
+            program[a] = (byte) (valid[b] ? b : 0);
+        }
+        return program;
+    }
+
+    @Test
+    void instructionTableMatchesFamilySwitch() {
+        Random rng = newRandom();
+        for (int p = 0; p < PROGRAMS; ++p) {
+            byte[] program = randomProgram(rng);
+            Machine table = new Machine(program, false);
+            Machine reference = new Machine(program, true);
+
+            for (long c = 0; c < CYCLES; ++c) {
+                Class<?> expectedFailure = reference.run(c);
+                assertEquals(expectedFailure, table.run(c));
+                if (expectedFailure != null)
+                    break;
+                assertArrayEquals(reference.cpu._testGetPcSpAFBCDEHL(), table.cpu._testGetPcSpAFBCDEHL());
+                assertEquals(reference.cpu.nextNonIdleCycle(c), table.cpu.nextNonIdleCycle(c));
+            }
+            for (int a = 0; a < RAM_END; ++a)
+                assertEquals(reference.ram.read(a), table.ram.read(a));
+        }
+    }
+}
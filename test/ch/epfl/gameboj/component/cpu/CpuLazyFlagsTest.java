@@ -0,0 +1,137 @@
+package ch.epfl.gameboj.component.cpu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+
+/**
+ * Vérifie, au moyen des vecteurs de test de l'ALU, que les fanions différés calculés par le processeur sont
+ * identiques à ceux de l'ALU, lorsqu'ils sont lus par PUSH AF
+ */
+class CpuLazyFlagsTest {
+    private static final int RAM_END = 0xFF80;
+    private static final int PROGRAM_START = 3;
+    private static final int OP_ADC_A_B = 0x88, OP_SBC_A_B = 0x98, OP_CP_A_B = 0xB8;
+    private static final int OP_AND_A_B = 0xA0, OP_XOR_A_B = 0xA8, OP_OR_A_B = 0xB0;
+    private static final int OP_INC_A = 0x3C, OP_DEC_A = 0x3D, OP_NOP = 0x00, OP_CCF = 0x3F;
+
+    private static final class Machine {
+        private final Cpu cpu = new Cpu();
+        private final Ram ram = new Ram(RAM_END);
+        private long cycle = 0;
+
+        Machine() {
+            Bus bus = new Bus();
+            new RamController(ram, 0, RAM_END).attachTo(bus);
+            cpu.attachTo(bus);
+
+            //LD SP,D000 ; LD A,l ; LD B,r ; SCF ; CCF/NOP ; op ; PUSH AF ; POP DE ; JP 3
+            int[] program = {0x31, 0x00, 0xD0, 0x3E, 0, 0x06, 0, 0x37, 0, 0, 0xF5, 0xD1, 0xC3, PROGRAM_START, 0};
+            for (int a = 0; a < program.length; ++a)
+                ram.write(a, program[a]);
+            run(3);
+        }
+
+        private void run(int cycles) {
+            for (long end = cycle + cycles; cycle < end; ++cycle)
+                cpu.cycle(cycle);
+        }
+
+        /**
+         * Exécute l'opération donnée avec A = l, B = r et la retenue donnée, et retourne A et F lus par PUSH AF,
+         * sous la forme d'un couple valeur / fanions
+         */
+        int execute(int opcode, int l, int r, boolean carry) {
+            ram.write(4, l);
+            ram.write(6, r);
+            ram.write(8, carry ? OP_NOP : OP_CCF);
+            ram.write(9, opcode);
+            run(18);
+            int[] state = cpu._testGetPcSpAFBCDEHL();
+            assertEquals(PROGRAM_START, state[0]);
+            return (state[6] << 8) | state[7];
+        }
+    }
+
+    private static DataInputStream openStream(String name) throws IOException {
+        return new DataInputStream(new GZIPInputStream(
+                CpuLazyFlagsTest.class.getResourceAsStream("/data/" + name + ".bin.gz")));
+    }
+
+    private static void assertSameAsAlu(int expectedValueFlags, int af) {
+        assertEquals(Alu.unpackValue(expectedValueFlags), af >>> 8);
+        assertEquals(Alu.unpackFlags(expectedValueFlags), af & 0xFF);
+    }
+
+    private static void testArithmetic(String fileName, int opcode, int incDecOpcode, int cpOpcode)
+            throws IOException {
+        Machine m = new Machine();
+        try (DataInputStream in = openStream(fileName)) {
+            for (int l = 0; l <= 0xFF; ++l) {
+                for (int r = 0; r <= 0xFF; ++r) {
+                    for (int c = 0; c <= 1; ++c) {
+                        int expected = in.readInt();
+                        assertSameAsAlu(expected, m.execute(opcode, l, r, c != 0));
+
+                        if (c == 0 && cpOpcode >= 0) {
+                            int af = m.execute(cpOpcode, l, r, true);
+                            assertEquals(l, af >>> 8);
+                            assertEquals(Alu.unpackFlags(expected), af & 0xFF);
+                        }
+                        if (c == 0 && r == 1) {
+                            //INC et DEC conservent le fanion C, mis à 1 par SCF
+                            int af = m.execute(incDecOpcode, l, r, true);
+                            int zh = Alu.unpackFlags(expected) & 0b1010_0000;
+                            int n = opcode == OP_SBC_A_B ? 0b0100_0000 : 0;
+                            assertEquals(Alu.unpackValue(expected), af >>> 8);
+                            assertEquals(zh | n | 0b0001_0000, af & 0xFF);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void testLogic(String fileName, int opcode) throws IOException {
+        Machine m = new Machine();
+        try (DataInputStream in = openStream(fileName)) {
+            for (int l = 0; l <= 0xFF; ++l) {
+                for (int r = 0; r <= 0xFF; ++r)
+                    assertSameAsAlu(in.readInt(), m.execute(opcode, l, r, true));
+            }
+        }
+    }
+
+    @Test
+    void deferredAddFlagsMatchAlu() throws IOException {
+        testArithmetic("ADD", OP_ADC_A_B, OP_INC_A, -1);
+    }
+
+    @Test
+    void deferredSubFlagsMatchAlu() throws IOException {
+        testArithmetic("SUB", OP_SBC_A_B, OP_DEC_A, OP_CP_A_B);
+    }
+
+    @Test
+    void deferredAndFlagsMatchAlu() throws IOException {
+        testLogic("AND", OP_AND_A_B);
+    }
+
+    @Test
+    void deferredOrFlagsMatchAlu() throws IOException {
+        testLogic("OR", OP_OR_A_B);
+    }
+
+    @Test
+    void deferredXorFlagsMatchAlu() throws IOException {
+        testLogic("XOR", OP_XOR_A_B);
+    }
+}
@@ -0,0 +1,108 @@
+package ch.epfl.gameboj.component.cpu;
+
+import static ch.epfl.gameboj.AddressMap.*;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.cartridge.MBC0;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+import ch.epfl.gameboj.component.memory.Rom;
+
+class DecodeCacheTest {
+    private static final int PROGRAMS = 50;
+    private static final int CYCLES = 5_000;
+
+    private static final class Machine {
+        private final Cpu cpu = new Cpu();
+        private final Bus bus = new Bus();
+
+        Machine(byte[] rom, byte[] ram, boolean cached) {
+            Ram videoRam = new Ram(WORK_RAM_START - VIDEO_RAM_START);
+            Ram workRam = new Ram(WORK_RAM_SIZE);
+            new MBC0(new Rom(rom)).attachTo(bus);
+            new RamController(videoRam, VIDEO_RAM_START).attachTo(bus);
+            new RamController(workRam, WORK_RAM_START).attachTo(bus);
+            new RamController(workRam, ECHO_RAM_START, ECHO_RAM_END).attachTo(bus);
+            cpu.attachTo(bus);
+            for (int a = VIDEO_RAM_START; a < ECHO_RAM_START; ++a)
+                bus.write(a, Byte.toUnsignedInt(ram[a - VIDEO_RAM_START]));
+            if (cached)
+                cpu.enableDecodeCache(address -> 0);
+        }
+
+        Class<?> run(long cycle) {
+            try {
+                cpu.cycle(cycle);
+                return null;
+            } catch (RuntimeException | Error e) {
+                return e.getClass();
+            }
+        }
+    }
+
+    private static byte[] randomProgram(Random rng, int size) {
+        boolean[] valid = new boolean[0x100];
+        for (Opcode o : Opcode.values()) {
+            if (o.kind == Opcode.Kind.DIRECT && o != Opcode.STOP)
+                valid[o.encoding] = true;
+        }
+        valid[0xCB] = true;
+
+        byte[] program = new byte[size];
+        for (int a = 0; a < program.length; ++a) {
+            int b = rng.nextInt(0x100);
+            program[a] = (byte) (valid[b] ? b : 0);
+        }
+        return program;
+    }
+
+    @Test
+    void cachedExecutionMatchesUncachedExecution() {
+        Random rng = newRandom();
+        for (int p = 0; p < PROGRAMS; ++p) {
+            byte[] rom = randomProgram(rng, CARTRIDGE_ROM_END);
+            byte[] ram = randomProgram(rng, ECHO_RAM_START - VIDEO_RAM_START);
+            Machine uncached = new Machine(rom, ram, false);
+            Machine cached = new Machine(rom, ram, true);
+
+            for (long c = 0; c < CYCLES; ++c) {
+                Class<?> expectedFailure = uncached.run(c);
+                assertEquals(expectedFailure, cached.run(c));
+                if (expectedFailure != null)
+                    break;
+                assertArrayEquals(uncached.cpu._testGetPcSpAFBCDEHL(), cached.cpu._testGetPcSpAFBCDEHL());
+                assertEquals(uncached.cpu.nextNonIdleCycle(c), cached.cpu.nextNonIdleCycle(c));
+            }
+            for (int a = VIDEO_RAM_START; a < ECHO_RAM_END; ++a)
+                assertEquals(uncached.bus.read(a), cached.bus.read(a));
+        }
+    }
+
+    @Test
+    void selfModifyingCodeInWorkRamIsDecodedAgain() {
+        //LD A,5 ; LD (E001),A ; INC A ; JR -8 : chaque exécution de LD A,n8 doit lire la valeur écrite par
+        //la précédente, au travers de l'écho de la mémoire de travail
+        byte[] ram = new byte[ECHO_RAM_START - VIDEO_RAM_START];
+        int[] code = {0x3E, 0x05, 0xEA, 0x01, 0xE0, 0x3C, 0x18, 0xF8};
+        for (int i = 0; i < code.length; ++i)
+            ram[WORK_RAM_START - VIDEO_RAM_START + i] = (byte) code[i];
+        byte[] rom = new byte[CARTRIDGE_ROM_END];
+        rom[0] = (byte) 0xC3;
+        rom[2] = (byte) 0xC0;
+
+        Machine uncached = new Machine(rom, ram, false);
+        Machine cached = new Machine(rom, ram, true);
+        for (long c = 0; c < 200; ++c) {
+            uncached.run(c);
+            cached.run(c);
+            assertArrayEquals(uncached.cpu._testGetPcSpAFBCDEHL(), cached.cpu._testGetPcSpAFBCDEHL());
+        }
+    }
+}
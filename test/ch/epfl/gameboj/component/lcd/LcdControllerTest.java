@@ -0,0 +1,158 @@
+package ch.epfl.gameboj.component.lcd;
+
+import ch.epfl.gameboj.component.ComponentTest;
+import ch.epfl.gameboj.component.cpu.Cpu;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static ch.epfl.gameboj.AddressMap.*;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class LcdControllerTest implements ComponentTest {
+
+    private static final int CYCLES_PER_FRAME = 17556;
+    private static final int REG_DMA = 0xFF46;
+
+    @Override
+    public LcdController newComponent() {
+        return new LcdController(new Cpu());
+    }
+
+    private LcdController newReferenceComponent() {
+        LcdController reference = newComponent();
+        reference.setReferenceRendering(true);
+        return reference;
+    }
+
+    private static void cycle(long from, long to, LcdController... lcds) {
+        for (long c = from; c < to; ++c) {
+            for (LcdController lcd : lcds)
+                lcd.cycle(c);
+        }
+    }
+
+    private static void assertSameImage(LcdImage expected, LcdImage actual, int fromLine) {
+        for (int y = fromLine; y < LcdController.LCD_HEIGHT; ++y) {
+            for (int x = 0; x < LcdController.LCD_WIDTH; ++x)
+                assertEquals(expected.get(x, y), actual.get(x, y));
+        }
+    }
+
+    private static void writeRandomState(Random rng, LcdController... lcds) {
+        for (int address = VIDEO_RAM_START; address < VIDEO_RAM_END; ++address) {
+            int data = rng.nextInt(0x100);
+            for (LcdController lcd : lcds)
+                lcd.write(address, data);
+        }
+        for (int address = OAM_START; address < OAM_END; ++address) {
+            int data = rng.nextInt(0x100);
+            for (LcdController lcd : lcds)
+                lcd.write(address, data);
+        }
+        for (int address = REGS_LCDC_START; address < REGS_LCDC_END; ++address) {
+            int data = address == REGS_LCDC_START ? 0x80 | rng.nextInt(0x80) : rng.nextInt(0x100);
+            if (address != REG_DMA) {
+                for (LcdController lcd : lcds)
+                    lcd.write(address, data);
+            }
+        }
+    }
+
+    @Test
+    void currentImageIsInitiallyWhite() {
+        assertSame(LcdImage.whiteLCD, newComponent().currentImage());
+    }
+
+    @Test
+    void directRenderingMatchesReferenceRendering() {
+        Random rng = newRandom();
+        for (int i = 0; i < 20; ++i) {
+            LcdController direct = newComponent();
+            LcdController reference = newReferenceComponent();
+            writeRandomState(rng, direct, reference);
+
+            cycle(0, 2 * CYCLES_PER_FRAME, direct, reference);
+            assertSameImage(reference.currentImage(), direct.currentImage(), 0);
+        }
+    }
+
+    @Test
+    void directRenderingFollowsVideoRamWrites() {
+        Random rng = newRandom();
+        LcdController direct = newComponent();
+        LcdController reference = newReferenceComponent();
+
+        for (int i = 0; i < 10; ++i) {
+            writeRandomState(rng, direct, reference);
+            cycle(i * CYCLES_PER_FRAME, (i + 1) * CYCLES_PER_FRAME, direct, reference);
+            assertSameImage(reference.currentImage(), direct.currentImage(), 0);
+        }
+    }
+
+    @Test
+    void directRenderingFollowsObjectMemoryWritesDuringFrame() {
+        Random rng = newRandom();
+        LcdController direct = newComponent();
+        LcdController reference = newReferenceComponent();
+        writeRandomState(rng, direct, reference);
+
+        for (long c = 0; c < 2 * CYCLES_PER_FRAME; c += 57) {
+            int address = OAM_START + rng.nextInt(OAM_END - OAM_START);
+            int data = rng.nextInt(0x100);
+            direct.write(address, data);
+            reference.write(address, data);
+            cycle(c, Math.min(c + 57, 2 * CYCLES_PER_FRAME), direct, reference);
+        }
+        assertSameImage(reference.currentImage(), direct.currentImage(), 0);
+    }
+
+    @Test
+    void copyCurrentFrameMatchesCurrentImage() {
+        Random rng = newRandom();
+        LcdController lcd = newComponent();
+        writeRandomState(rng, lcd);
+        assertEquals(0, lcd.frameCount());
+
+        for (long c = 0; c < 2 * CYCLES_PER_FRAME; ++c)
+            lcd.cycle(c);
+        assertEquals(2, lcd.frameCount());
+
+        byte[] frame = new byte[LcdController.LCD_WIDTH * LcdController.LCD_HEIGHT];
+        lcd.copyCurrentFrame(frame);
+        LcdImage image = lcd.currentImage();
+        for (int y = 0; y < LcdController.LCD_HEIGHT; ++y) {
+            for (int x = 0; x < LcdController.LCD_WIDTH; ++x)
+                assertEquals(image.get(x, y), frame[y * LcdController.LCD_WIDTH + x]);
+        }
+    }
+
+    @Test
+    void copyCurrentFrameFailsForInvalidLength() {
+        assertThrows(IllegalArgumentException.class, () -> newComponent().copyCurrentFrame(new byte[10]));
+    }
+
+    @Test
+    void skippedRenderingKeepsFrameTimingAndWindowLine() {
+        Random rng = newRandom();
+        int firstDrawnLine = 77;
+        for (int i = 0; i < 20; ++i) {
+            LcdController skipping = newComponent();
+            LcdController drawing = newComponent();
+            writeRandomState(rng, skipping, drawing);
+
+            //Les lignes sont sautées jusqu'au milieu de la seconde image
+            long firstDrawnCycle = CYCLES_PER_FRAME + firstDrawnLine * 114;
+            skipping.setRenderingSkipped(true);
+            cycle(0, firstDrawnCycle, skipping, drawing);
+            skipping.setRenderingSkipped(false);
+            cycle(firstDrawnCycle, 2 * CYCLES_PER_FRAME, skipping, drawing);
+            assertEquals(drawing.frameCount(), skipping.frameCount());
+
+            assertSameImage(drawing.currentImage(), skipping.currentImage(), firstDrawnLine);
+        }
+    }
+}
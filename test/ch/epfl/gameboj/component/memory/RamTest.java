@@ -74,6 +74,42 @@ class RamTest {
         }
     }
     
+    @Test
+    void copiedRamsEvolveIndependently() {
+        Random rng = newRandom();
+        int size = 1000;
+        Ram original = new Ram(size);
+        int[] expected = new int[size];
+        for (int i = 0; i < size; ++i) {
+            expected[i] = rng.nextInt(0x100);
+            original.write(i, expected[i]);
+        }
+
+        Ram copy = new Ram(size);
+        copy.copyStateFrom(original);
+        int[] copyExpected = expected.clone();
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            int a = rng.nextInt(size), b = rng.nextInt(0x100);
+            if (rng.nextBoolean()) {
+                original.write(a, b);
+                expected[a] = b;
+            } else {
+                copy.write(a, b);
+                copyExpected[a] = b;
+            }
+        }
+        for (int i = 0; i < size; ++i) {
+            assertEquals(expected[i], original.read(i));
+            assertEquals(copyExpected[i], copy.read(i));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> copy.write(size, 0));
+    }
+
+    @Test
+    void copyStateFromFailsForDifferentSize() {
+        assertThrows(IllegalArgumentException.class, () -> new Ram(10).copyStateFrom(new Ram(11)));
+    }
+
     @Test
     void writeFailsForInvalidValue() {
         Ram ram = new Ram(1);
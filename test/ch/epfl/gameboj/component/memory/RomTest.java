@@ -7,6 +7,7 @@ import static ch.epfl.test.TestRandomizer.newRandom;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Random;
 
@@ -44,6 +45,25 @@ class RomTest {
         }
     }
 
+    @Test
+    void ofBufferFailsForWritableBuffer() {
+        assertThrows(IllegalArgumentException.class,
+                () -> Rom.ofBuffer(ByteBuffer.allocate(10)));
+    }
+
+    @Test
+    void ofBufferSharesBufferFromItsPosition() {
+        byte[] a = new byte[100];
+        newRandom().nextBytes(a);
+        ByteBuffer b = ByteBuffer.wrap(a).asReadOnlyBuffer();
+        b.position(10);
+        Rom r = Rom.ofBuffer(b);
+        assertEquals(90, r.size());
+        a[50] = (byte) (a[50] + 1);
+        for (int j = 0; j < r.size(); ++j)
+            assertEquals(Byte.toUnsignedInt(a[j + 10]), r.read(j));
+    }
+
     @Test
     void readFailsForInvalidIndex() {
         Rom rom = new Rom(new byte[0]);
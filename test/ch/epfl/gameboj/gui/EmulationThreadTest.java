@@ -0,0 +1,119 @@
+package ch.epfl.gameboj.gui;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.InputMovie;
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.cartridge.CartridgeTest;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmulationThreadTest {
+
+    private static GameBoy newGameBoy() {
+        return new GameBoy(CartridgeTest.cartridgeWithData(new byte[0x8000]));
+    }
+
+    @Test
+    void constructorFailsForInvalidArguments() {
+        assertThrows(NullPointerException.class, () -> new EmulationThread(null, 0));
+        assertThrows(IllegalArgumentException.class, () -> new EmulationThread(newGameBoy(), -1));
+        assertThrows(NullPointerException.class, () -> new EmulationThread(newGameBoy(), 0, null));
+        assertThrows(IllegalArgumentException.class, () -> new EmulationThread(newGameBoy(), 0).setRunAhead(-1));
+    }
+
+    @Test
+    void threadPublishesFramesAndStopsOnShutdown() throws InterruptedException {
+        GameBoy gb = newGameBoy();
+        EmulationThread emulation = new EmulationThread(gb, TimeUnit.MILLISECONDS.toNanos(100));
+        emulation.start();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        boolean published = false;
+        while (!published && System.nanoTime() < deadline)
+            published = emulation.frames().update();
+
+        emulation.shutdown();
+        emulation.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertTrue(published);
+        assertFalse(emulation.isAlive());
+        assertTrue(gb.cycles() > 0);
+    }
+
+    @Test
+    void threadRecordsHistoryAndRewindsIt() throws InterruptedException {
+        GameBoy gb = newGameBoy();
+        RewindBuffer rewind = new RewindBuffer(gb.stateSize(), 40, 10);
+        EmulationThread emulation = new EmulationThread(gb, TimeUnit.MILLISECONDS.toNanos(100), rewind);
+        emulation.start();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (rewind.size() < 20 && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        assertTrue(rewind.size() >= 20);
+
+        emulation.setRewinding(true);
+        while (rewind.size() > 1 && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        emulation.shutdown();
+        emulation.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertEquals(1, rewind.size());
+        assertFalse(emulation.isAlive());
+    }
+
+    @Test
+    void threadRecordsAppliedKeys() throws InterruptedException {
+        GameBoy gb = newGameBoy();
+        InputMovie.Recorder recorder = new InputMovie.Recorder(CartridgeTest.cartridgeWithData(new byte[0x8000]), false);
+        EmulationThread emulation = new EmulationThread(gb, TimeUnit.MILLISECONDS.toNanos(100));
+        emulation.setRecorder(recorder);
+        emulation.start();
+        assertThrows(IllegalStateException.class, () -> emulation.setRecorder(recorder));
+
+        emulation.keyPressed(Key.A);
+        emulation.keyReleased(Key.A);
+        emulation.keyPressed(Key.START);
+        //La seconde image publiée après la transmission des touches l'est après leur application
+        emulation.frames().update();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        for (int published = 0; published < 2 && System.nanoTime() < deadline; )
+            published += emulation.frames().update() ? 1 : 0;
+        emulation.shutdown();
+        emulation.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertEquals(3, recorder.toMovie(gb.cycles()).size());
+    }
+
+    @Test
+    void runAheadDoesNotDisturbSimulatedGameBoy() throws InterruptedException {
+        GameBoy gb = newGameBoy();
+        EmulationThread emulation = new EmulationThread(gb, TimeUnit.MILLISECONDS.toNanos(100));
+        emulation.setRunAhead(2);
+        emulation.start();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        for (int published = 0; published < 30 && System.nanoTime() < deadline; )
+            published += emulation.frames().update() ? 1 : 0;
+        emulation.shutdown();
+        emulation.join(TimeUnit.SECONDS.toMillis(5));
+        assertFalse(emulation.isAlive());
+
+        GameBoy expected = newGameBoy();
+        expected.runUntil(gb.cycles());
+        assertEquals(stateOf(expected), stateOf(gb));
+    }
+
+    private static ByteBuffer stateOf(GameBoy gameBoy) {
+        ByteBuffer state = ByteBuffer.allocate(gameBoy.stateSize());
+        gameBoy.saveState(state);
+        return state.flip();
+    }
+}
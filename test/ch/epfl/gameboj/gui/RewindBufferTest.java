@@ -0,0 +1,110 @@
+package ch.epfl.gameboj.gui;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.cartridge.CartridgeTest;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RewindBufferTest {
+
+    private static final long CYCLES_PER_FRAME = 154 * 114;
+
+    private static ByteBuffer stateOf(GameBoy gameBoy) {
+        ByteBuffer state = ByteBuffer.allocate(gameBoy.stateSize());
+        gameBoy.saveState(state);
+        return state.flip();
+    }
+
+    //Enregistre l'état actuel et attend sa compression, afin qu'aucun enregistrement ne soit abandonné
+    private static void recordAndWait(RewindBuffer rewind, GameBoy gameBoy, int expectedSize) {
+        rewind.record(gameBoy);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (rewind.size() != expectedSize && System.nanoTime() < deadline)
+            Thread.yield();
+        assertEquals(expectedSize, rewind.size());
+    }
+
+    @Test
+    void constructorFailsForInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new RewindBuffer(-1, 10, 2));
+        assertThrows(IllegalArgumentException.class, () -> new RewindBuffer(10, 10, 0));
+        assertThrows(IllegalArgumentException.class, () -> new RewindBuffer(10, 4, 4));
+    }
+
+    @Test
+    void rewindFailsWhenEmpty() {
+        RewindBuffer rewind = new RewindBuffer(10, 4, 2);
+        assertFalse(rewind.rewind(new GameBoy(CartridgeTest.cartridgeWithData(new byte[0x8000])), 0));
+        assertThrows(IllegalArgumentException.class, () -> rewind.rewind(null, -1));
+        rewind.shutdown();
+    }
+
+    @Test
+    void deltasRestoreEncodedState() {
+        Random rng = newRandom();
+        byte[] previous = new byte[1000];
+        rng.nextBytes(previous);
+        byte[] out = new byte[2 * previous.length + 16];
+        for (int i = 0; i < 100; ++i) {
+            byte[] state = previous.clone();
+            for (int j = rng.nextInt(50); j > 0; --j)
+                state[rng.nextInt(state.length)] = (byte) rng.nextInt(0x100);
+
+            byte[] decoded = new byte[state.length];
+            int keyLength = RewindBuffer.encode(previous, null, out);
+            byte[] key = Arrays.copyOf(out, keyLength);
+            int deltaLength = RewindBuffer.encode(state, previous, out);
+            RewindBuffer.applyDelta(key, decoded);
+            RewindBuffer.applyDelta(Arrays.copyOf(out, deltaLength), decoded);
+            assertArrayEquals(state, decoded);
+            previous = state;
+        }
+    }
+
+    @Test
+    void rewindRestoresRecordedStates() {
+        GameBoy gameBoy = new GameBoy(CartridgeTest.cartridgeWithData(new byte[0x8000]));
+        int capacity = 12, keyframeInterval = 4;
+        RewindBuffer rewind = new RewindBuffer(gameBoy.stateSize(), capacity, keyframeInterval);
+
+        List<ByteBuffer> states = new ArrayList<>();
+        for (int i = 0; i < 30; ++i) {
+            gameBoy.runUntil(gameBoy.cycles() + CYCLES_PER_FRAME);
+            states.add(stateOf(gameBoy));
+            //L'anneau plein oublie un instantané clé et ses différences
+            recordAndWait(rewind, gameBoy,
+                    i < capacity ? i + 1 : capacity - keyframeInterval + 1 + (i - capacity) % keyframeInterval);
+        }
+
+        int size = rewind.size();
+        assertTrue(rewind.rewind(gameBoy, 3));
+        assertEquals(states.get(states.size() - 4), stateOf(gameBoy));
+        assertEquals(size - 3, rewind.size());
+
+        //La suite de l'historique est reprise depuis l'état restauré
+        gameBoy.runUntil(gameBoy.cycles() + CYCLES_PER_FRAME);
+        recordAndWait(rewind, gameBoy, size - 2);
+        assertTrue(rewind.rewind(gameBoy, 1));
+        assertEquals(states.get(states.size() - 4), stateOf(gameBoy));
+        assertTrue(rewind.rewind(gameBoy, 0));
+        assertEquals(states.get(states.size() - 4), stateOf(gameBoy));
+
+        assertTrue(rewind.rewind(gameBoy, 1000));
+        assertEquals(states.get(states.size() - size), stateOf(gameBoy));
+        assertEquals(1, rewind.size());
+        rewind.shutdown();
+    }
+}
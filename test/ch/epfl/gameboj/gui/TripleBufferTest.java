@@ -0,0 +1,76 @@
+package ch.epfl.gameboj.gui;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TripleBufferTest {
+
+    @Test
+    void constructorFailsForNegativeSize() {
+        assertThrows(IllegalArgumentException.class, () -> new TripleBuffer(-1));
+    }
+
+    @Test
+    void updateIsFalseWhenNothingWasPublished() {
+        TripleBuffer b = new TripleBuffer(4);
+        assertFalse(b.update());
+        assertNotSame(b.backBuffer(), b.frontBuffer());
+    }
+
+    @Test
+    void updateReturnsLastPublishedFrame() {
+        TripleBuffer b = new TripleBuffer(1);
+        for (int i = 1; i <= 3; ++i) {
+            b.backBuffer()[0] = (byte) i;
+            b.publish();
+        }
+        assertTrue(b.update());
+        assertEquals(3, b.frontBuffer()[0]);
+        assertFalse(b.update());
+        assertEquals(3, b.frontBuffer()[0]);
+    }
+
+    @Test
+    void buffersAreNeverSharedBetweenProducerAndConsumer() {
+        TripleBuffer b = new TripleBuffer(1);
+        for (int i = 0; i < 100; ++i) {
+            b.backBuffer()[0] = (byte) i;
+            b.publish();
+            assertNotSame(b.backBuffer(), b.frontBuffer());
+            if (i % 3 == 0) {
+                assertTrue(b.update());
+                assertEquals((byte) i, b.frontBuffer()[0]);
+                assertNotSame(b.backBuffer(), b.frontBuffer());
+            }
+        }
+    }
+
+    @Test
+    void consumerSeesCompleteFramesWhileProducerRuns() throws InterruptedException {
+        int size = 64;
+        TripleBuffer b = new TripleBuffer(size);
+        Thread producer = new Thread(() -> {
+            for (int i = 1; i <= 100_000; ++i) {
+                byte[] frame = b.backBuffer();
+                for (int j = 0; j < size; ++j)
+                    frame[j] = (byte) i;
+                b.publish();
+            }
+        });
+        producer.start();
+
+        while (producer.isAlive()) {
+            if (b.update()) {
+                byte[] frame = b.frontBuffer();
+                for (int j = 1; j < size; ++j)
+                    assertEquals(frame[0], frame[j]);
+            }
+        }
+        producer.join();
+    }
+}